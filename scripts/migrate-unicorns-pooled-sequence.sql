@@ -0,0 +1,14 @@
+-- Moves unicorns.id from an IDENTITY or SERIAL column to the pooled sequence the Unicorn entity maps,
+-- for databases whose schema Hibernate does not re-create (hbm2ddl validate or none). Run once per database:
+--   psql -d <db> -f scripts/migrate-unicorns-pooled-sequence.sql
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS unicorns_pooled_seq INCREMENT BY 50;
+-- pooled-lo: every nextval is the first id of a block of 50, so start right after the highest id in use
+SELECT setval('unicorns_pooled_seq', COALESCE((SELECT MAX(id) FROM unicorns), 0) + 1, false);
+
+ALTER TABLE unicorns ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE unicorns ALTER COLUMN id SET DEFAULT nextval('unicorns_pooled_seq');
+DROP SEQUENCE IF EXISTS unicorns_id_seq;
+
+COMMIT;
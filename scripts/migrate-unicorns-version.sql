@@ -0,0 +1,4 @@
+-- Adds the optimistic-locking version column the Unicorn entity maps, for databases whose schema Hibernate
+-- does not re-create (hbm2ddl validate or none). Run once per database:
+--   psql -d <db> -f scripts/migrate-unicorns-version.sql
+ALTER TABLE unicorns ADD COLUMN IF NOT EXISTS version integer NOT NULL DEFAULT 0;
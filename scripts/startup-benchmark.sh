@@ -0,0 +1,35 @@
+#!/usr/bin/env bash
+# Measures the wall-clock startup of the shaded app.jar, with and without the AppCDS archive.
+# Build first with: mvn -Pcds -DskipTests package
+# Usage: scripts/startup-benchmark.sh [runs]
+set -euo pipefail
+
+RUNS=${1:-10}
+JAR=target/app.jar
+ARCHIVE=target/app.jsa
+
+if [[ ! -f "$JAR" ]]; then
+    echo "Missing $JAR, build it with: mvn -Pcds -DskipTests package" >&2
+    exit 1
+fi
+
+measure() {
+    local label=$1
+    shift
+    local total=0
+    for ((i = 0; i < RUNS; i++)); do
+        local start end
+        start=$(date +%s%N)
+        java "$@" -jar "$JAR" > /dev/null 2>&1
+        end=$(date +%s%N)
+        total=$((total + (end - start) / 1000000))
+    done
+    printf "%-10s %6d ms average over %d runs\n" "$label" $((total / RUNS)) "$RUNS"
+}
+
+measure "default"
+if [[ -f "$ARCHIVE" ]]; then
+    measure "appcds" -XX:SharedArchiveFile="$ARCHIVE"
+else
+    echo "No $ARCHIVE, skipping the AppCDS run (build with -Pcds)" >&2
+fi
@@ -0,0 +1,19 @@
+-- Trigger that announces every committed change of unicorns on the unicorns_changes channel, as
+-- '<INSERT|UPDATE|DELETE>:<id>'. PgNotifySource listens on it and installs the same trigger with install(),
+-- this script is for databases where the application user may not create triggers:
+--   psql -d <db> -f scripts/unicorns-change-notify.sql
+CREATE OR REPLACE FUNCTION unicorns_notify_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('unicorns_changes', TG_OP || ':' || OLD.id);
+    ELSE
+        PERFORM pg_notify('unicorns_changes', TG_OP || ':' || NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS unicorns_change_notify ON unicorns;
+CREATE TRIGGER unicorns_change_notify
+    AFTER INSERT OR UPDATE OR DELETE ON unicorns
+    FOR EACH ROW EXECUTE FUNCTION unicorns_notify_change();
@@ -0,0 +1,116 @@
+package dat.benchmarks;
+
+import dat.dao.AsyncCrudDAO;
+import dat.dao.MemoryDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Time per batch of requests that each wait 4 ms on something other than the database, then make a 1 ms DAO call.
+ * A fixed pool of poolSize platform threads holds a thread for the whole request, while AsyncCrudDAO on virtual
+ * threads only queues for the poolSize permits around the DAO call itself, e.g.
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.args="include=AsyncDaoBenchmark threads=1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AsyncDaoBenchmark
+{
+    private static final int REQUESTS = 500;
+
+    @Param({"fixed", "virtual"})
+    public String executor;
+
+    @Param({"10"})
+    public int poolSize;
+
+    private ExecutorService requests;
+    private AsyncCrudDAO<Unicorn> asyncDao;
+    private Callable<Unicorn> call;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        SlowDAO slow = new SlowDAO();
+        if ("virtual".equals(executor))
+        {
+            asyncDao = new AsyncCrudDAO<>(slow, poolSize);
+            requests = Executors.newVirtualThreadPerTaskExecutor();
+            call = () -> asyncDao.getById(1).join();
+        }
+        else
+        {
+            requests = Executors.newFixedThreadPool(poolSize);
+            call = () -> slow.getById(1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        requests.shutdown();
+        if (asyncDao != null)
+        {
+            asyncDao.close();
+        }
+    }
+
+    @Benchmark
+    public List<Unicorn> requests() throws Exception
+    {
+        List<Future<Unicorn>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++)
+        {
+            futures.add(requests.submit(() ->
+            {
+                Thread.sleep(4);
+                return call.call();
+            }));
+        }
+        List<Unicorn> results = new ArrayList<>(REQUESTS);
+        for (Future<Unicorn> future : futures)
+        {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    /***
+     * Stands in for a database call of 1 ms.
+     */
+    private static class SlowDAO extends MemoryDAO<Unicorn>
+    {
+        SlowDAO()
+        {
+            super(Map.of(1, new Unicorn("Sprinkles", 5, "Pink", 10.0)));
+        }
+
+        @Override
+        public Unicorn getById(int id) throws DaoException
+        {
+            try
+            {
+                Thread.sleep(1);
+                return super.getById(id);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new DaoException("Interrupted", e);
+            }
+        }
+    }
+}
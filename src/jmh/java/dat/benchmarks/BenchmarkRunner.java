@@ -0,0 +1,61 @@
+package dat.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/***
+ * Runs the benchmarks once per thread count and writes one JSON result file per run, e.g.
+ * target/jmh/DaoBenchmark-t4.json, for comparison with earlier runs.
+ * Arguments (all optional): include=DaoBenchmark backends=memory,jdbc,jpa sizes=1000,10000 threads=1,4 out=target/jmh prof=gc
+ */
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws RunnerException
+    {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "include", "DaoBenchmark",
+                "threads", "1," + Runtime.getRuntime().availableProcessors(),
+                "out", "target/jmh"));
+        for (String arg : args)
+        {
+            String[] keyValue = arg.split("=", 2);
+            if (keyValue.length != 2)
+            {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            options.put(keyValue[0], keyValue[1]);
+        }
+
+        File outputDir = new File(options.get("out"));
+        outputDir.mkdirs();
+        for (String threads : options.get("threads").split(","))
+        {
+            String include = options.get("include");
+            ChainedOptionsBuilder builder = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(outputDir, include.replaceAll("\\W", "_") + "-t" + threads.trim() + ".json").getPath());
+            if (options.containsKey("backends"))
+            {
+                builder.param("backend", options.get("backends").split(","));
+            }
+            if (options.containsKey("sizes"))
+            {
+                builder.param("datasetSize", options.get("sizes").split(","));
+            }
+            if (options.containsKey("prof"))
+            {
+                builder.addProfiler(options.get("prof")); // e.g. gc for gc.alloc.rate.norm, bytes allocated per operation
+            }
+            new Runner(builder.build()).run();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dat.benchmarks;
+
+import dat.dao.ColumnarUnicornDAO;
+import dat.dao.ICrudDAO;
+import dat.dao.MemoryDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/***
+ * Off-heap columnar store against the object-based MemoryDAO: a full-table aggregate (average power strength
+ * by color), a single-row read, and the heap each store retains, which setUp prints per trial, e.g.
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.args="include=ColumnarBenchmark threads=1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ColumnarBenchmark
+{
+    private static final int CHUNK_SIZE = 10_000;
+    private static final String[] COLORS = {"White", "Black", "Pink", "Blue", "Gold", "Silver", "Green", "Purple"};
+
+    @Param({"memory", "columnar"})
+    public String store;
+
+    @Param({"100000", "1000000"})
+    public int datasetSize;
+
+    private ICrudDAO<Unicorn> dao;
+    private ColumnarUnicornDAO columnar;
+
+    @Setup(Level.Trial)
+    public void setUp() throws DaoException
+    {
+        // Measured before any rows exist, and rows are fed in chunks for both stores, so only what a store keeps counts
+        long heapBefore = usedHeap();
+        if ("columnar".equals(store))
+        {
+            columnar = new ColumnarUnicornDAO();
+            dao = columnar;
+        }
+        else
+        {
+            dao = new MemoryDAO<>();
+        }
+        List<Unicorn> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < datasetSize; i++)
+        {
+            chunk.add(new Unicorn("Unicorn" + (i % 10_000), i % 30, COLORS[i % COLORS.length], i % 1000 / 10.0));
+            if (chunk.size() == CHUNK_SIZE || i == datasetSize - 1)
+            {
+                dao.createAll(chunk);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        chunk = null;
+        long retained = usedHeap() - heapBefore;
+        System.out.printf("%n%s store, %d rows: %,d bytes heap, %,d bytes off-heap%n", store, datasetSize,
+                retained, columnar == null ? 0 : columnar.getOffHeapBytes());
+    }
+
+    @Benchmark
+    public Map<String, Double> averagePowerStrengthByColor() throws DaoException
+    {
+        if (columnar != null)
+        {
+            return columnar.averagePowerStrengthByColor();
+        }
+        return dao.getAll().stream()
+                .collect(Collectors.groupingBy(Unicorn::getColor, Collectors.averagingDouble(Unicorn::getPowerStrength)));
+    }
+
+    @Benchmark
+    public Unicorn getById() throws DaoException
+    {
+        return dao.getById(ThreadLocalRandom.current().nextInt(datasetSize) + 1);
+    }
+
+    private static long usedHeap()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,80 @@
+package dat.benchmarks;
+
+import dat.config.ConnectionPool;
+import dat.config.HibernateConfig;
+import dat.dao.CopyBulkLoader;
+import dat.dao.DatabaseDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Rows per second loaded over JDBC: "batch" is the batched INSERT of DatabaseDAO.createAll below its COPY
+ * threshold, "copy-binary" and "copy-csv" stream the same rows through CopyBulkLoader. Needs Docker, e.g.
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.args="include=CopyLoadBenchmark threads=1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyLoadBenchmark
+{
+    private static final int ROWS = 5000;
+
+    @Param({"batch", "copy-binary", "copy-csv"})
+    public String loadPath;
+
+    private EntityManagerFactory emf;
+    private ConnectionPool pool;
+    private DatabaseDAO dao;
+    private CopyBulkLoader loader;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        // The EMF creates the schema and keeps the shared container alive
+        emf = HibernateConfig.getEntityManagerFactoryForTest();
+        pool = ConnectionPool.getInstance("test", "test", DaoBenchmark.TEST_URL, DaoBenchmark.TEST_DB);
+        dao = new DatabaseDAO(pool);
+        CopyBulkLoader.Format format = "copy-csv".equals(loadPath) ? CopyBulkLoader.Format.CSV : CopyBulkLoader.Format.BINARY;
+        loader = new CopyBulkLoader(pool, format, CopyBulkLoader.DEFAULT_CHUNK_SIZE);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRows()
+    {
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Unicorn").executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        pool.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long loadRows() throws DaoException
+    {
+        List<Unicorn> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+        {
+            rows.add(new Unicorn("Bulk" + i, i % 100, i % 2 == 0 ? "White" : "Black", i / 10.0));
+        }
+        // ROWS stays below DatabaseDAO.COPY_THRESHOLD, so createAll still takes the batched INSERT path
+        return "batch".equals(loadPath) ? dao.createAll(rows).size() : loader.load(rows.iterator());
+    }
+}
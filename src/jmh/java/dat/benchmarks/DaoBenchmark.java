@@ -0,0 +1,156 @@
+package dat.benchmarks;
+
+import dat.config.ConnectionPool;
+import dat.config.HibernateConfig;
+import dat.dao.DatabaseDAO;
+import dat.dao.EntityManagerDAO;
+import dat.dao.ICrudDAO;
+import dat.dao.MemoryDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * CRUD cost per DAO backend. The database backends share one Testcontainers Postgres, the same stand-in
+ * HibernateConfig.setTestProperties uses, so Docker must be available for them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark
+{
+    static final String TEST_URL = "jdbc:tc:postgresql:16.2:///%s";
+    static final String TEST_DB = "test_db";
+
+    @Param({"memory", "jdbc", "jpa"})
+    public String backend;
+
+    @Param({"1000", "10000"})
+    public int datasetSize;
+
+    private ICrudDAO<Unicorn> dao;
+    private EntityManagerFactory emf;
+    private ConnectionPool pool;
+    private int[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws DaoException
+    {
+        dao = createDao(backend);
+        List<Unicorn> dataset = new ArrayList<>(datasetSize);
+        for (int i = 0; i < datasetSize; i++)
+        {
+            dataset.add(randomUnicorn(i));
+        }
+        ids = dao.createAll(dataset).stream().mapToInt(Unicorn::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if (emf != null)
+        {
+            try (EntityManager em = emf.createEntityManager())
+            {
+                em.getTransaction().begin();
+                em.createQuery("DELETE FROM Unicorn").executeUpdate();
+                em.getTransaction().commit();
+            }
+        }
+        if (pool != null)
+        {
+            pool.close();
+        }
+    }
+
+    @Benchmark
+    public Unicorn create() throws DaoException
+    {
+        return dao.create(randomUnicorn(ThreadLocalRandom.current().nextInt()));
+    }
+
+    @Benchmark
+    public Unicorn getById() throws DaoException
+    {
+        return dao.getById(randomId());
+    }
+
+    @Benchmark
+    public List<Unicorn> getAll() throws DaoException
+    {
+        return dao.getAll();
+    }
+
+    @Benchmark
+    public Unicorn update() throws DaoException
+    {
+        Unicorn unicorn = randomUnicorn(ThreadLocalRandom.current().nextInt());
+        unicorn.setId(randomId());
+        return dao.update(unicorn);
+    }
+
+    /***
+     * Nine reads to one update, the read-mostly mix; run with threads=1,N to see how a backend scales with threads.
+     */
+    @Benchmark
+    public Unicorn mixed() throws DaoException
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(10) == 0)
+        {
+            return update();
+        }
+        return dao.getById(randomId());
+    }
+
+    /***
+     * Deletes a row it just created, so the dataset keeps its size; subtract create() for the delete cost.
+     */
+    @Benchmark
+    public void createAndDelete() throws DaoException
+    {
+        dao.delete(dao.create(randomUnicorn(ThreadLocalRandom.current().nextInt())));
+    }
+
+    private ICrudDAO<Unicorn> createDao(String backend)
+    {
+        return switch (backend)
+        {
+            case "memory" -> new MemoryDAO<>();
+            case "jdbc" ->
+            {
+                // The EMF creates the schema and keeps the shared container alive
+                emf = HibernateConfig.getEntityManagerFactoryForTest();
+                pool = ConnectionPool.getInstance("test", "test", TEST_URL, TEST_DB);
+                yield new DatabaseDAO(pool);
+            }
+            case "jpa" ->
+            {
+                emf = HibernateConfig.getEntityManagerFactoryForTest();
+                yield new EntityManagerDAO(emf);
+            }
+            default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+        };
+    }
+
+    private int randomId()
+    {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    private static Unicorn randomUnicorn(int seed)
+    {
+        String[] colors = {"White", "Black", "Pink", "Blue", "Gold"};
+        return new Unicorn("Unicorn" + seed, Math.floorMod(seed, 100), colors[Math.floorMod(seed, colors.length)], Math.floorMod(seed, 1000) / 10.0);
+    }
+}
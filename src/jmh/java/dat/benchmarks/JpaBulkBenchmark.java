@@ -0,0 +1,87 @@
+package dat.benchmarks;
+
+import dat.config.HibernateConfig;
+import dat.dao.EntityManagerDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Rows per second written through JPA. "create" is the path Populator and callers used so far, one create()
+ * and transaction per row; "persist" is a single EntityManager transaction that relies on JDBC batching;
+ * "stateless" is EntityManagerDAO.createAll. Needs Docker for the Testcontainers Postgres, e.g.
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.args="include=JpaBulkBenchmark threads=1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpaBulkBenchmark
+{
+    private static final int ROWS = 1000;
+
+    @Param({"create", "persist", "stateless"})
+    public String writePath;
+
+    private EntityManagerFactory emf;
+    private EntityManagerDAO dao;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        emf = HibernateConfig.getEntityManagerFactoryForTest();
+        dao = new EntityManagerDAO(emf);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteRows()
+    {
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Unicorn").executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int insertRows() throws DaoException
+    {
+        List<Unicorn> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+        {
+            rows.add(new Unicorn("Bulk" + i, i % 100, i % 2 == 0 ? "White" : "Black", i / 10.0));
+        }
+        switch (writePath)
+        {
+            case "create" ->
+            {
+                for (Unicorn unicorn : rows)
+                {
+                    dao.create(unicorn);
+                }
+            }
+            case "persist" ->
+            {
+                try (EntityManager em = emf.createEntityManager())
+                {
+                    em.getTransaction().begin();
+                    rows.forEach(em::persist);
+                    em.getTransaction().commit();
+                }
+            }
+            case "stateless" -> dao.createAll(rows);
+            default -> throw new IllegalArgumentException("Unknown write path: " + writePath);
+        }
+        return rows.size();
+    }
+}
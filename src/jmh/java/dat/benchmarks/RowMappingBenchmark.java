@@ -0,0 +1,107 @@
+package dat.benchmarks;
+
+import dat.config.ConnectionPool;
+import dat.config.HibernateConfig;
+import dat.dao.DatabaseDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Cost per row of reading the table over JDBC: "byName" maps every row by column name into a new Unicorn, as
+ * DatabaseDAO did before UnicornRowMapper; "byIndex" is DatabaseDAO.getAll; "flyweight" is DatabaseDAO.scanAll
+ * with its reused UnicornRow. Run with the gc profiler for gc.alloc.rate.norm (bytes per row), e.g.
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.args="include=RowMappingBenchmark threads=1 prof=gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark
+{
+    private static final int ROWS = 10_000;
+    private static final String SELECT_ALL_SQL = "SELECT id, unicorn_name, age, color, powerstrength, version FROM unicorns";
+
+    @Param({"byName", "byIndex", "flyweight"})
+    public String mapping;
+
+    private EntityManagerFactory emf;
+    private ConnectionPool pool;
+    private DatabaseDAO dao;
+
+    @Setup(Level.Trial)
+    public void setUp() throws DaoException
+    {
+        // The EMF creates the schema and keeps the shared container alive
+        emf = HibernateConfig.getEntityManagerFactoryForTest();
+        pool = ConnectionPool.getInstance("test", "test", DaoBenchmark.TEST_URL, DaoBenchmark.TEST_DB);
+        dao = new DatabaseDAO(pool);
+        List<Unicorn> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+        {
+            rows.add(new Unicorn("Row" + i, i % 100, i % 2 == 0 ? "White" : "Black", i / 10.0));
+        }
+        dao.createAll(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Unicorn").executeUpdate();
+            em.getTransaction().commit();
+        }
+        pool.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void readRows(Blackhole blackhole) throws DaoException, SQLException
+    {
+        switch (mapping)
+        {
+            case "byName" -> readByName(blackhole);
+            case "byIndex" -> dao.getAll().forEach(blackhole::consume);
+            case "flyweight" -> dao.scanAll(row ->
+            {
+                blackhole.consume(row.getId());
+                blackhole.consume(row.getName());
+                blackhole.consume(row.getAge());
+                blackhole.consume(row.getColor());
+                blackhole.consume(row.getPowerStrength());
+            });
+            default -> throw new IllegalArgumentException("Unknown mapping: " + mapping);
+        }
+    }
+
+    private void readByName(Blackhole blackhole) throws SQLException
+    {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SELECT_ALL_SQL);
+             ResultSet rs = ps.executeQuery())
+        {
+            while (rs.next())
+            {
+                Unicorn unicorn = new Unicorn(rs.getString("unicorn_name"), rs.getInt("age"), rs.getString("color"), rs.getDouble("powerstrength"));
+                unicorn.setId(rs.getInt("id"));
+                unicorn.setVersion(rs.getInt("version"));
+                blackhole.consume(unicorn);
+            }
+        }
+    }
+}
@@ -1,29 +1,60 @@
 package dat;
 
+import dat.config.ConnectionPool;
 import dat.config.HibernateConfig;
+import dat.dao.DatabaseDAO;
+import dat.dao.EntityManagerDAO;
 import dat.dao.ICrudDAO;
 import dat.dao.MemoryDAO;
 import dat.entities.Unicorn;
+import dat.load.LoadTest;
 import jakarta.persistence.EntityManagerFactory;
 
+import java.util.Arrays;
 
 public class Main
 {
-    private final static EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
-    private static ICrudDAO<Unicorn> dao;
-
-    public static void main(String[] args)
+    public static void main(String[] args) throws Exception
     {
-        // Initialize the DAO
-        dao = new MemoryDAO<>();
+        // "load key=value ..." runs the load test instead of the demo, see LoadSettings for the options
+        if (args.length > 0 && "load".equals(args[0]))
+        {
+            LoadTest.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
+        // "train" is the AppCDS training run of the cds profile: the demo through Hibernate and through the
+        // Hikari pool against the database from config.properties, so their classes end up in the archive
+        if (args.length > 0 && "train".equals(args[0]))
+        {
+            EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
+            try
+            {
+                demo(new EntityManagerDAO(emf));
+                demo(new DatabaseDAO());
+            }
+            finally
+            {
+                emf.close();
+                ConnectionPool.closeAll();
+            }
+            return;
+        }
+
+        demo(new MemoryDAO<>());
+    }
+
+    private static void demo(ICrudDAO<Unicorn> dao)
+    {
         // Create a new Unicorn
         Unicorn unicorn = new Unicorn("Sprinkles", 5, "Pink", 10.0);
 
         // Save the Unicorn to the database
+        int id = 1;
         try
         {
             Unicorn createdUnicorn = dao.create(unicorn);
+            id = createdUnicorn.getId();
             System.out.println("Created Unicorn: " + createdUnicorn);
         }
         catch (Exception e)
@@ -34,7 +65,7 @@ public class Main
         // Retrieve the Unicorn by ID
         try
         {
-            Unicorn retrievedUnicorn = dao.getById(1);
+            Unicorn retrievedUnicorn = dao.getById(id);
             System.out.println("Retrieved Unicorn: " + retrievedUnicorn);
         }
         catch (Exception e)
@@ -46,7 +77,7 @@ public class Main
         try
         {
             Unicorn unicornToUpdate = new Unicorn("Sparkles", 6, "Blue", 12.0);
-            unicornToUpdate.setId(1); // Set the ID of the Unicorn to update
+            unicornToUpdate.setId(id); // Set the ID of the Unicorn to update
             Unicorn updatedUnicorn = dao.update(unicornToUpdate);
             System.out.println("Updated Unicorn: " + updatedUnicorn);
         }
@@ -58,7 +89,7 @@ public class Main
         // Delete the Unicorn
         try
         {
-            dao.delete(dao.getById(1));
+            dao.delete(dao.getById(id));
             System.out.println("Unicorn deleted successfully.");
         }
         catch (Exception e)
@@ -66,4 +97,4 @@ public class Main
             System.err.println("Error deleting Unicorn: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -1,60 +1,110 @@
 package dat.config;
 
 import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariConfigMXBean;
 import com.zaxxer.hikari.HikariDataSource;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import dat.metrics.HikariPoolMetrics;
+import dat.metrics.MetricsRegistry;
+import dat.utils.ConfigWatcher;
 import dat.utils.PropertyReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /***
- * Singleton pattern applied to handling a Hikari ConnectionPool
+ * Registry of named Hikari ConnectionPools, one instance per name (e.g. separate "read" and "write" pools).
+ * getInstance() without a name returns the default pool, as the singleton did before.
  */
 public class ConnectionPool {
 
-    private static volatile ConnectionPool instance = null;
-    private static HikariDataSource ds = null;
+    private static final Map<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
 
+    private final String name;
+    private volatile HikariDataSource ds;
+    private final PoolAutoTuner autoTuner;
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
     /***
-     * Private constructor to enforce Singleton pattern.
+     * Private constructor, pools are created through getInstance.
      */
-    private ConnectionPool() {
-        // Prevent instantiation
+    private ConnectionPool(String name, HikariDataSource ds, PoolSettings settings) {
+        this.name = name;
+        this.ds = ds;
+        this.autoTuner = settings.adaptive()
+                ? new PoolAutoTuner(ds.getHikariPoolMXBean(), ds.getHikariConfigMXBean(),
+                        settings.adaptiveMinSize(), settings.adaptiveMaxSize(), settings.adaptiveIntervalMs())
+                : null;
     }
 
     /***
-     * Getting a singleton instance of a Hikari Connection Pool with specific credentials
+     * Getting the default Hikari Connection Pool with specific credentials
      * and connection string. If an environment variable "DEPLOYED" exists, then environment variables
      * will be used instead of variables set in the config.properties file.
-     * @return Singleton instance of ConnectionPool
+     * @return Shared instance of the default ConnectionPool
      */
     public static ConnectionPool getInstance() {
-        if (instance == null) {
-            synchronized (ConnectionPool.class) {
-                if (instance == null) {  // Double-checked locking
-                    if (System.getenv("DEPLOYED") != null) {
-                        ds = createHikariConnectionPool(
-                                System.getenv("JDBC_USER"),
-                                System.getenv("JDBC_PASSWORD"),
-                                System.getenv("JDBC_CONNECTION_STRING"),
-                                System.getenv("JDBC_DB"));
-                    } else {
-                        ds = createHikariConnectionPool(
-                                PropertyReader.getPropertyValue("DB_USERNAME", "config.properties"),
-                                PropertyReader.getPropertyValue("DB_PASSWORD", "config.properties"),
-                                PropertyReader.getPropertyValue("DB_URL", "config.properties"),
-                                PropertyReader.getPropertyValue("DB_NAME", "config.properties"));
-                    }
-                    instance = new ConnectionPool();
-                }
+        return getInstance(PoolSettings.DEFAULT_POOL);
+    }
+
+    /***
+     * Getting a named Hikari Connection Pool. Credentials and pool settings are looked up with the pool name
+     * in the key (JDBC_READ_CONNECTION_STRING / DB_READ_URL, DB_READ_POOL_MAX_SIZE, ...) and fall back to
+     * the default pool's keys, see PoolSettings.
+     * @param name Pool name, e.g. "read" or "write"
+     * @return Shared instance of the named ConnectionPool
+     */
+    public static ConnectionPool getInstance(String name) {
+        return POOLS.computeIfAbsent(name, poolName -> {
+            PoolSettings settings = PoolSettings.load(poolName);
+            HikariDataSource ds;
+            if (System.getenv("DEPLOYED") != null) {
+                ds = createHikariConnectionPool(poolName, settings,
+                        env(poolName, "USER"),
+                        env(poolName, "PASSWORD"),
+                        env(poolName, "CONNECTION_STRING"),
+                        env(poolName, "DB"));
+            } else {
+                ds = createHikariConnectionPool(poolName, settings,
+                        property(poolName, "USERNAME"),
+                        property(poolName, "PASSWORD"),
+                        property(poolName, "URL"),
+                        property(poolName, "NAME"));
             }
-        }
-        return instance;
+            return new ConnectionPool(poolName, ds, settings);
+        });
+    }
+
+    /***
+     * Getting the default Hikari Connection Pool with explicit credentials and connection string,
+     * e.g. for tests and benchmarks against a Testcontainers database ("jdbc:tc:postgresql:16.2:///%s").
+     * @param user Database username
+     * @param password Database password
+     * @param url Database connection URL with a %s placeholder for the database name
+     * @param db Database name
+     * @return Shared instance of the default ConnectionPool
+     */
+    public static ConnectionPool getInstance(String user, String password, String url, String db) {
+        return getInstance(PoolSettings.DEFAULT_POOL, PoolSettings.load(PoolSettings.DEFAULT_POOL), user, password, url, db);
+    }
+
+    /***
+     * Getting a named Hikari Connection Pool with explicit settings, credentials and connection string.
+     * If a pool with that name already exists, it is returned unchanged.
+     */
+    public static ConnectionPool getInstance(String name, PoolSettings settings, String user, String password, String url, String db) {
+        return POOLS.computeIfAbsent(name, poolName ->
+                new ConnectionPool(poolName, createHikariConnectionPool(poolName, settings, user, password, url, db), settings));
     }
 
     /***
@@ -63,52 +113,159 @@ public class ConnectionPool {
      * @throws SQLException if connection fails
      */
     public Connection getConnection() throws SQLException {
-        if (ds == null) {
+        HikariDataSource dataSource = ds;
+        if (dataSource == null) {
             throw new SQLException("DataSource is not initialized. Call getInstance() first.");
         }
-        return ds.getConnection();
+        return dataSource.getConnection();
+    }
+
+    /***
+     * @return the maximum number of connections the pool will open, e.g. to size callers' concurrency limits
+     */
+    public int getMaximumPoolSize() {
+        HikariDataSource dataSource = ds;
+        if (dataSource == null) {
+            throw new IllegalStateException("DataSource is not initialized. Call getInstance() first.");
+        }
+        return dataSource.getMaximumPoolSize();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /***
+     * Applying new sizes and timeouts to the running pool through Hikari's config MXBean. The maximum size is
+     * left to the PoolAutoTuner when the pool is adaptive; statement cache settings only apply to new pools.
+     * @param settings New settings, e.g. from PoolSettings.load after config.properties changed
+     */
+    public void applySettings(PoolSettings settings) {
+        HikariDataSource dataSource = ds;
+        if (dataSource == null) {
+            throw new IllegalStateException("DataSource is not initialized. Call getInstance() first.");
+        }
+        HikariConfigMXBean config = dataSource.getHikariConfigMXBean();
+        if (autoTuner == null) {
+            // Keep minimumIdle <= maximumPoolSize in between the two calls
+            if (settings.maximumPoolSize() >= config.getMaximumPoolSize()) {
+                config.setMaximumPoolSize(settings.maximumPoolSize());
+                config.setMinimumIdle(settings.minimumIdle());
+            } else {
+                config.setMinimumIdle(settings.minimumIdle());
+                config.setMaximumPoolSize(settings.maximumPoolSize());
+            }
+        }
+        config.setIdleTimeout(settings.idleTimeoutMs());
+        config.setConnectionTimeout(settings.connectionTimeoutMs());
+        config.setMaxLifetime(settings.maxLifetimeMs());
+        LOGGER.info("Applied new settings to connection pool {}: {}", name, settings);
+    }
+
+    /***
+     * Opt-in hot reload: watches config.properties and applies the new PoolSettings to every open pool
+     * whenever the file changes. Close the returned watcher to stop.
+     * @return the running watcher
+     * @throws IOException if config.properties is not a plain file on disk
+     */
+    public static ConfigWatcher watchConfig() throws IOException {
+        return ConfigWatcher.watch("config.properties", snapshot -> POOLS.values().forEach(pool -> {
+            try {
+                pool.applySettings(PoolSettings.load(pool.name));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Keeping the current settings of connection pool {}: {}", pool.name, e.getMessage());
+            }
+        }));
+    }
+
+    /***
+     * Registering work that must run before the pool closes while it can still hand out connections,
+     * e.g. flushing a write-behind queue. Listeners run in registration order; failures are logged.
+     */
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
     }
 
     /***
-     * Closing the Hikari Connection Pool
+     * Closing the Hikari Connection Pool and removing it from the registry
      */
-    public void close() {
+    public synchronized void close() {
         if (ds != null) {
-            LOGGER.info("Shutting down connection pool...");
+            for (Runnable listener : closeListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Close listener of connection pool {} failed", name, e);
+                }
+            }
+            LOGGER.info("Shutting down connection pool {}...", name);
+            if (autoTuner != null) {
+                autoTuner.close();
+            }
             ds.close();
             ds = null;
-            instance = null;
+            POOLS.remove(name, this);
         }
     }
 
+    /***
+     * Closing every pool, e.g. from a shutdown hook
+     */
+    public static void closeAll() {
+        POOLS.values().forEach(ConnectionPool::close);
+    }
+
+    private static String env(String poolName, String setting) {
+        String value = PoolSettings.DEFAULT_POOL.equals(poolName)
+                ? null
+                : System.getenv("JDBC_" + poolName.toUpperCase(Locale.ROOT) + "_" + setting);
+        return value != null ? value : System.getenv("JDBC_" + setting);
+    }
+
+    private static String property(String poolName, String setting) {
+        String value = PoolSettings.DEFAULT_POOL.equals(poolName)
+                ? null
+                : PropertyReader.getOptionalPropertyValue(PoolSettings.key(poolName, setting), "config.properties");
+        return value != null ? value : PropertyReader.getPropertyValue("DB_" + setting, "config.properties");
+    }
+
     /***
      * Configuring a Hikari DataSource ConnectionPool
+     * @param poolName Name of the pool, used in the Hikari pool name and its metrics
+     * @param settings Pool sizes, timeouts and statement cache settings
      * @param user Database username
      * @param password Database password
      * @param url Database connection URL
      * @param db Database name
      * @return Configured HikariDataSource
      */
-    private static HikariDataSource createHikariConnectionPool(String user, String password, String url, String db) {
-        LOGGER.info("Initializing Connection Pool for database: {}", db);
+    private static HikariDataSource createHikariConnectionPool(String poolName, PoolSettings settings, String user, String password, String url, String db) {
+        LOGGER.info("Initializing Connection Pool {} for database: {}", poolName, db);
 
         HikariConfig config = new HikariConfig();
-        config.setDriverClassName("org.postgresql.Driver");
+        config.setDriverClassName(url.startsWith("jdbc:tc:")
+                ? "org.testcontainers.jdbc.ContainerDatabaseDriver"
+                : "org.postgresql.Driver");
         config.setJdbcUrl(String.format(url, db));
         config.setUsername(user);
         config.setPassword(password);
 
         // Connection Pool Configurations
-        config.setMaximumPoolSize(10); // Default is 10
-        config.setMinimumIdle(2);      // Ensures some connections are always available
-        config.setIdleTimeout(30000);  // 30 seconds idle timeout
-        config.setConnectionTimeout(30000); // Max wait time for a connection
-        config.setPoolName("Postgresql-Pool");
+        config.setMaximumPoolSize(settings.maximumPoolSize());
+        config.setMinimumIdle(settings.minimumIdle());          // Ensures some connections are always available
+        config.setIdleTimeout(settings.idleTimeoutMs());
+        config.setConnectionTimeout(settings.connectionTimeoutMs()); // Max wait time for a connection
+        config.setMaxLifetime(settings.maxLifetimeMs());
+        config.setPoolName(PoolSettings.DEFAULT_POOL.equals(poolName) ? "Postgresql-Pool" : "Postgresql-Pool-" + poolName);
+        config.setMetricsTrackerFactory(new HikariPoolMetrics(MetricsRegistry.getInstance())); // acquire times and pool gauges
 
         // Optimizations
-        config.addDataSourceProperty("cachePrepStmts", "true");
-        config.addDataSourceProperty("prepStmtCacheSize", "250");
-        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // pgjdbc keeps a per-connection cache of parsed statements keyed by SQL, so a PreparedStatement closed with
+        // its pooled connection is reused by the next prepareStatement of the same SQL on that connection; from
+        // prepareThreshold executions on it is a named server-side statement and switches to binary transfer
+        config.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(settings.prepStmtCacheSize()));
+        config.addDataSourceProperty("prepareThreshold", "1");
+        config.addDataSourceProperty("reWriteBatchedInserts", "true"); // Collapses batched INSERTs into multi-row statements
 
         return new HikariDataSource(config);
     }
@@ -1,20 +1,39 @@
 package dat.config;
 
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
 import dat.entities.*;
+import dat.metrics.MetricsRegistry;
+import dat.utils.ConfigSnapshot;
 import dat.utils.PropertyReader;
 import jakarta.persistence.EntityManagerFactory;
 import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cache.jcache.ConfigSettings;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.Statistics;
 
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class HibernateConfig
 {
-    private static EntityManagerFactory emf;
-    private static EntityManagerFactory emfTest;
-    private static Boolean isTest = false;
+    public static final String UNICORN_CACHE_REGION = "unicorns";
+    public static final String QUERY_CACHE_REGION = "default-query-results-region";
+    public static final String TIMESTAMPS_CACHE_REGION = "default-update-timestamps-region";
+
+    private static final AtomicInteger CACHE_MANAGERS = new AtomicInteger();
+    private static volatile EntityManagerFactory emf;
+    private static volatile EntityManagerFactory emfTest;
+    private static volatile EntityManagerFactory emfReadOnly;
+    private static volatile Boolean isTest = false;
 
     public static void setTest(Boolean test) {
         isTest = test;
@@ -24,18 +43,75 @@ public class HibernateConfig
         return isTest;
     }
 
+    /***
+     * The EntityManagerFactory is built on first use, so code paths without a JPA DAO never pay for the
+     * Hibernate bootstrap. Creation is synchronized, so concurrent first callers share one factory.
+     */
     public static EntityManagerFactory getEntityManagerFactory() {
-        if (emf == null)
-            emf = createEMF(getTest());
-        return emf;
+        EntityManagerFactory result = emf;
+        if (result == null) {
+            synchronized (HibernateConfig.class) {
+                result = emf;
+                if (result == null) {
+                    emf = result = createEMF(getTest(), PropertyReader.getConfig("config.properties"));
+                }
+            }
+        }
+        return result;
     }
 
     public static EntityManagerFactory getEntityManagerFactoryForTest() {
-        if (emfTest == null){
-            setTest(true);
-            emfTest = createEMF(getTest());  // No DB needed for test
+        EntityManagerFactory result = emfTest;
+        if (result == null) {
+            synchronized (HibernateConfig.class) {
+                result = emfTest;
+                if (result == null) {
+                    setTest(true);
+                    emfTest = result = createEMF(getTest(), PropertyReader.getConfig("config.properties"));  // No DB needed for test
+                }
+            }
+        }
+        return result;
+    }
+
+    /***
+     * A new, unshared Testcontainers EntityManagerFactory with cache settings from the given snapshot instead of
+     * config.properties, e.g. ConfigSnapshot.of("test", Map.of("DB_L2_CACHE", "true")). The caller closes it.
+     */
+    public static EntityManagerFactory createEntityManagerFactoryForTest(ConfigSnapshot cacheConfig) {
+        return createEMF(true, cacheConfig);
+    }
+
+    /***
+     * Hibernate statistics of a factory, e.g. getSecondLevelCacheHitCount() or getPrepareStatementCount().
+     * They are only collected while the second-level cache is enabled.
+     */
+    public static Statistics getStatistics(EntityManagerFactory emf) {
+        return emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /***
+     * EntityManagerFactory for read-only work against a replica. The replica URL comes from REPLICA_CONNECTION_STR
+     * when deployed and from DB_REPLICA_URL in config.properties otherwise, both with a %s placeholder for the
+     * database name. Without a replica URL this is the primary EntityManagerFactory.
+     */
+    public static EntityManagerFactory getReadOnlyEntityManagerFactory() {
+        EntityManagerFactory result = emfReadOnly;
+        if (result == null) {
+            String replicaUrl = System.getenv("DEPLOYED") != null
+                    ? System.getenv("REPLICA_CONNECTION_STR")
+                    : PropertyReader.getOptionalPropertyValue("DB_REPLICA_URL", "config.properties");
+            if (replicaUrl == null) {
+                return getEntityManagerFactory();
+            }
+            synchronized (HibernateConfig.class) {
+                result = emfReadOnly;
+                if (result == null) {
+                    emfReadOnly = result = createReadOnlyEMF(replicaUrl);
+                }
+            }
         }
-        return emfTest;
+        return result;
     }
 
     // TODO: IMPORTANT: Add Entity classes here for them to be registered with Hibernate
@@ -44,21 +120,60 @@ public class HibernateConfig
 
     }
 
-    private static EntityManagerFactory createEMF(boolean forTest) {
+    private static EntityManagerFactory createEMF(boolean forTest, ConfigSnapshot config) {
+        Properties props = new Properties();
+        // Set the properties
+        setBaseProperties(props);
+        if (forTest) {
+            props = setTestProperties(props);
+        } else if (System.getenv("DEPLOYED") != null) {
+            setDeployedProperties(props);
+        } else {
+            props = setDevProperties(props);
+        }
+        if (!config.getBoolean("DB_L2_CACHE", false)) {
+            return buildEMF(props, null);
+        }
+        int number = CACHE_MANAGERS.incrementAndGet();
+        CacheManager cacheManager = createCacheManager(number, config);
+        setCacheProperties(props, config, cacheManager);
+        try {
+            return buildEMF(props, new CacheLifecycle(cacheManager, "hibernate.emf-" + number, MetricsRegistry.getInstance()));
+        }
+        catch (RuntimeException | Error ex) {
+            cacheManager.close();
+            throw ex;
+        }
+    }
+
+    private static EntityManagerFactory createReadOnlyEMF(String replicaUrl) {
+        Properties props = new Properties();
+        setBaseProperties(props);
+        if (System.getenv("DEPLOYED") != null) {
+            setDeployedProperties(props);
+        } else {
+            props = setDevProperties(props);
+        }
+        String DBName = System.getenv("DEPLOYED") != null
+                ? System.getenv("DB_NAME")
+                : PropertyReader.getPropertyValue("DB_NAME", "config.properties");
+        props.setProperty("hibernate.connection.url", String.format(replicaUrl, DBName));
+        if (replicaUrl.startsWith("jdbc:tc:")) {
+            props.setProperty("hibernate.connection.driver_class", "org.testcontainers.jdbc.ContainerDatabaseDriver");
+        }
+        props.setProperty("hibernate.hbm2ddl.auto", "none");  // the schema is owned by the primary
+        // No second-level cache here: writes go through the primary factory and would never evict its entries
+        return buildEMF(props, null);
+    }
+
+    private static EntityManagerFactory buildEMF(Properties props, SessionFactoryObserver observer) {
         try {
             Configuration configuration = new Configuration();
-            Properties props = new Properties();
-            // Set the properties
-            setBaseProperties(props);
-            if (forTest) {
-                props = setTestProperties(props);
-            } else if (System.getenv("DEPLOYED") != null) {
-                setDeployedProperties(props);
-            } else {
-                props = setDevProperties(props);
-            }
             configuration.setProperties(props);
             getAnnotationConfiguration(configuration);
+            if (observer != null) {
+                configuration.setSessionFactoryObserver(observer);
+            }
 
             ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
                     .applySettings(configuration.getProperties())
@@ -74,14 +189,125 @@ public class HibernateConfig
 
     private static Properties setBaseProperties(Properties props) {
         props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
-        props.put("hibernate.hbm2ddl.auto", "create");  // set to "update" when in production
+        props.put("hibernate.hbm2ddl.auto", schemaAction());
         props.put("hibernate.current_session_context_class", "thread");
         props.put("hibernate.show_sql", "false");
         props.put("hibernate.format_sql", "false");
         props.put("hibernate.use_sql_comments", "false");
+        setBatchProperties(props, PropertyReader.getConfig("config.properties"));
         return props;
     }
 
+    /***
+     * JDBC batching for inserts and updates, sized by DB_JPA_BATCH_SIZE, with statements ordered by entity so
+     * batches are not broken up. Sequence blocks are handed out pooled-lo, see the id mapping of Unicorn.
+     */
+    private static Properties setBatchProperties(Properties props, ConfigSnapshot config) {
+        props.put("hibernate.jdbc.batch_size", String.valueOf(config.getInt("DB_JPA_BATCH_SIZE", 50)));
+        props.put("hibernate.jdbc.fetch_size", String.valueOf(config.getInt("DB_JPA_FETCH_SIZE", 500)));
+        props.put("hibernate.order_inserts", "true");
+        props.put("hibernate.order_updates", "true");
+        props.put("hibernate.jdbc.batch_versioned_data", "true");
+        props.put("hibernate.id.optimizer.pooled.preferred", "pooled-lo");
+        return props;
+    }
+
+    /***
+     * Schema handling from HBM2DDL_AUTO (env) or DB_HBM2DDL_AUTO (config.properties). Deployed instances only
+     * validate the existing schema by default, instead of dropping and re-creating it on every start.
+     */
+    private static String schemaAction() {
+        String action = System.getenv("HBM2DDL_AUTO");
+        if (action == null && System.getenv("DEPLOYED") == null) {
+            action = PropertyReader.getOptionalPropertyValue("DB_HBM2DDL_AUTO", "config.properties");
+        }
+        if (action != null) {
+            return action;
+        }
+        return System.getenv("DEPLOYED") != null ? "validate" : "create";
+    }
+
+    /***
+     * Second-level cache for @Cacheable entities and, with DB_QUERY_CACHE, the query cache, both in a local
+     * Caffeine JCache, see createCacheManager.
+     */
+    private static Properties setCacheProperties(Properties props, ConfigSnapshot config, CacheManager cacheManager) {
+        boolean queryCache = config.getBoolean("DB_QUERY_CACHE", false);
+        props.put("hibernate.cache.use_second_level_cache", "true");
+        props.put("hibernate.cache.use_query_cache", String.valueOf(queryCache));
+        props.put("hibernate.cache.region.factory_class", "jcache");
+        props.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        props.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create");
+        props.put("jakarta.persistence.sharedCache.mode", "ENABLE_SELECTIVE");
+        props.put("hibernate.generate_statistics", "true");
+        return props;
+    }
+
+    /***
+     * Each factory gets its own CacheManager, closed together with the factory by CacheLifecycle, with the regions
+     * sized and expired from DB_CACHE_UNICORNS_MAX_SIZE/_TTL_SECONDS and DB_CACHE_QUERY_MAX_SIZE/_TTL_SECONDS.
+     */
+    private static CacheManager createCacheManager(int number, ConfigSnapshot config) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hibernate-l2-" + number), HibernateConfig.class.getClassLoader());
+        cacheManager.createCache(UNICORN_CACHE_REGION, cacheRegion(
+                config.getLong("DB_CACHE_UNICORNS_MAX_SIZE", 10_000), config.getLong("DB_CACHE_UNICORNS_TTL_SECONDS", 600)));
+        if (config.getBoolean("DB_QUERY_CACHE", false)) {
+            cacheManager.createCache(QUERY_CACHE_REGION, cacheRegion(
+                    config.getLong("DB_CACHE_QUERY_MAX_SIZE", 1_000), config.getLong("DB_CACHE_QUERY_TTL_SECONDS", 60)));
+            // Must outlive every cached query result, so it is neither bounded nor expired
+            cacheManager.createCache(TIMESTAMPS_CACHE_REGION, new CaffeineConfiguration<Object, Object>());
+        }
+        return cacheManager;
+    }
+
+    private static CaffeineConfiguration<Object, Object> cacheRegion(long maxSize, long ttlSeconds) {
+        CaffeineConfiguration<Object, Object> region = new CaffeineConfiguration<>();
+        region.setMaximumSize(OptionalLong.of(maxSize));
+        if (ttlSeconds > 0) {
+            region.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        }
+        region.setStatisticsEnabled(true);
+        return region;
+    }
+
+    /***
+     * Registers the cache gauges of a factory under its own prefix, e.g. "hibernate.emf-1.l2.hits", and removes
+     * them and closes its CacheManager once the factory is closed.
+     */
+    private static class CacheLifecycle implements SessionFactoryObserver {
+        private static final String[] GAUGES = {"l2.hits", "l2.misses", "l2.puts", "query_cache.hits", "query_cache.misses", "statements.prepared"};
+
+        private final transient CacheManager cacheManager;
+        private final String prefix;
+        private final transient MetricsRegistry metrics;
+
+        CacheLifecycle(CacheManager cacheManager, String prefix, MetricsRegistry metrics) {
+            this.cacheManager = cacheManager;
+            this.prefix = prefix;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void sessionFactoryCreated(SessionFactory factory) {
+            Statistics statistics = factory.getStatistics();
+            metrics.gauge(prefix + ".l2.hits", statistics::getSecondLevelCacheHitCount);
+            metrics.gauge(prefix + ".l2.misses", statistics::getSecondLevelCacheMissCount);
+            metrics.gauge(prefix + ".l2.puts", statistics::getSecondLevelCachePutCount);
+            metrics.gauge(prefix + ".query_cache.hits", statistics::getQueryCacheHitCount);
+            metrics.gauge(prefix + ".query_cache.misses", statistics::getQueryCacheMissCount);
+            metrics.gauge(prefix + ".statements.prepared", statistics::getPrepareStatementCount);
+        }
+
+        @Override
+        public void sessionFactoryClosed(SessionFactory factory) {
+            for (String gauge : GAUGES) {
+                metrics.remove(prefix + "." + gauge);
+            }
+            cacheManager.close();
+        }
+    }
+
     private static Properties setDeployedProperties(Properties props) {
         String DBName = System.getenv("DB_NAME");
         props.setProperty("hibernate.connection.url", String.format(System.getenv("CONNECTION_STR"), DBName));
@@ -0,0 +1,79 @@
+package dat.config;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Resizes a Hikari pool within fixed bounds from what its MXBean reports. Threads waiting for a
+ * connection grow the pool by a quarter at a time; a pool that stayed under half busy with nobody
+ * waiting for several samples in a row shrinks by one connection.
+ */
+public class PoolAutoTuner implements AutoCloseable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(PoolAutoTuner.class);
+    private static final int IDLE_SAMPLES_BEFORE_SHRINK = 3;
+
+    private final HikariPoolMXBean pool;
+    private final HikariConfigMXBean config;
+    private final int minSize;
+    private final int maxSize;
+    private final ScheduledExecutorService scheduler;
+    private int idleSamples;
+
+    public PoolAutoTuner(HikariPoolMXBean pool, HikariConfigMXBean config, int minSize, int maxSize, long intervalMs) {
+        this.pool = pool;
+        this.config = config;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, config.getPoolName() + "-autotuner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tune, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Takes one sample and resizes if needed. Called by the scheduler; public so it can be driven directly.
+     * @return the maximum pool size after the sample
+     */
+    public synchronized int tune() {
+        int current = config.getMaximumPoolSize();
+        int waiting = pool.getThreadsAwaitingConnection();
+        int active = pool.getActiveConnections();
+        int target = current;
+
+        if (waiting > 0) {
+            idleSamples = 0;
+            target = Math.min(maxSize, current + Math.max(1, Math.max(waiting, current / 4)));
+        } else if (active * 2 < current) {
+            if (++idleSamples >= IDLE_SAMPLES_BEFORE_SHRINK) {
+                idleSamples = 0;
+                target = Math.max(minSize, current - 1);
+            }
+        } else {
+            idleSamples = 0;
+        }
+
+        if (target != current) {
+            LOGGER.info("Resizing pool {} from {} to {} connections (active={}, waiting={})",
+                    config.getPoolName(), current, target, active, waiting);
+            if (target < config.getMinimumIdle()) {
+                config.setMinimumIdle(target);
+            }
+            config.setMaximumPoolSize(target);
+        }
+        return target;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
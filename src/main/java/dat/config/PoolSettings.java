@@ -0,0 +1,96 @@
+package dat.config;
+
+import dat.utils.PropertyReader;
+
+import java.util.Locale;
+
+/***
+ * Hikari pool settings for one named pool. Every value is looked up as an environment variable first,
+ * then in config.properties, then under the default pool's key, and finally falls back to defaults().
+ * The default pool uses keys like DB_POOL_MAX_SIZE, a pool named "read"
+ * uses DB_READ_POOL_MAX_SIZE.
+ * @param prepStmtCacheSize statements per connection in the driver's prepared statement cache
+ * @param adaptive let a PoolAutoTuner resize the pool between adaptiveMinSize and adaptiveMaxSize
+ */
+public record PoolSettings(int maximumPoolSize, int minimumIdle, long idleTimeoutMs, long connectionTimeoutMs,
+                           long maxLifetimeMs, int prepStmtCacheSize, boolean adaptive,
+                           int adaptiveMinSize, int adaptiveMaxSize, long adaptiveIntervalMs)
+{
+    public static final String DEFAULT_POOL = "default";
+    public static final int DEFAULT_MAX_SIZE = 10;
+
+    public PoolSettings
+    {
+        if (maximumPoolSize < 1 || minimumIdle < 0 || minimumIdle > maximumPoolSize)
+        {
+            throw new IllegalArgumentException(String.format("Invalid pool size: maximumPoolSize=%d, minimumIdle=%d", maximumPoolSize, minimumIdle));
+        }
+        if (adaptive && (adaptiveMinSize < 1 || adaptiveMinSize > adaptiveMaxSize))
+        {
+            throw new IllegalArgumentException(String.format("Invalid adaptive bounds: %d..%d", adaptiveMinSize, adaptiveMaxSize));
+        }
+    }
+
+    /***
+     * The sizes and timeouts used so far. The HikariCP guideline of (cores * 2) + 1 counts the database server's
+     * cores, which this process can't see, so deployments size their pools with DB_POOL_MAX_SIZE.
+     */
+    public static PoolSettings defaults()
+    {
+        int size = DEFAULT_MAX_SIZE;
+        return new PoolSettings(size, Math.min(2, size), 30_000, 30_000, 1_800_000, 250,
+                false, Math.min(2, size), size * 2, 10_000);
+    }
+
+    public static PoolSettings load(String poolName)
+    {
+        PoolSettings defaults = defaults();
+        int maximumPoolSize = getInt(poolName, "POOL_MAX_SIZE", defaults.maximumPoolSize());
+        return new PoolSettings(
+                maximumPoolSize,
+                getInt(poolName, "POOL_MIN_IDLE", Math.min(defaults.minimumIdle(), maximumPoolSize)),
+                getLong(poolName, "POOL_IDLE_TIMEOUT_MS", defaults.idleTimeoutMs()),
+                getLong(poolName, "POOL_CONNECTION_TIMEOUT_MS", defaults.connectionTimeoutMs()),
+                getLong(poolName, "POOL_MAX_LIFETIME_MS", defaults.maxLifetimeMs()),
+                getInt(poolName, "POOL_PREP_STMT_CACHE_SIZE", defaults.prepStmtCacheSize()),
+                Boolean.parseBoolean(get(poolName, "POOL_ADAPTIVE", "false")),
+                getInt(poolName, "POOL_ADAPTIVE_MIN_SIZE", Math.min(defaults.adaptiveMinSize(), maximumPoolSize)),
+                getInt(poolName, "POOL_ADAPTIVE_MAX_SIZE", Math.max(defaults.adaptiveMaxSize(), maximumPoolSize)),
+                getLong(poolName, "POOL_ADAPTIVE_INTERVAL_MS", defaults.adaptiveIntervalMs()));
+    }
+
+    /***
+     * @return the setting key for the given pool, e.g. key("read", "POOL_MAX_SIZE") is DB_READ_POOL_MAX_SIZE
+     */
+    public static String key(String poolName, String setting)
+    {
+        return DEFAULT_POOL.equals(poolName)
+                ? "DB_" + setting
+                : "DB_" + poolName.toUpperCase(Locale.ROOT) + "_" + setting;
+    }
+
+    static String get(String poolName, String setting, String fallback)
+    {
+        String value = lookup(key(poolName, setting));
+        if (value == null && !DEFAULT_POOL.equals(poolName))
+        {
+            value = lookup(key(DEFAULT_POOL, setting));
+        }
+        return value == null ? fallback : value;
+    }
+
+    private static int getInt(String poolName, String setting, int fallback)
+    {
+        return Integer.parseInt(get(poolName, setting, String.valueOf(fallback)));
+    }
+
+    private static long getLong(String poolName, String setting, long fallback)
+    {
+        return Long.parseLong(get(poolName, setting, String.valueOf(fallback)));
+    }
+
+    private static String lookup(String key)
+    {
+        return PropertyReader.getConfig("config.properties").get(key);
+    }
+}
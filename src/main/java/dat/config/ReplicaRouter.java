@@ -0,0 +1,144 @@
+package dat.config;
+
+import dat.utils.PropertyReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/***
+ * Routes read-only work to replica pools round-robin and everything else to the primary pool.
+ * A background health check validates every replica; unhealthy replicas are skipped, and when no
+ * replica is healthy, reads fall back to the primary. Without the background check (an interval of 0)
+ * a read tries an unhealthy replica again once RETRY_UNHEALTHY_MS have passed, so replicas still recover.
+ */
+public class ReplicaRouter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRouter.class);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    static final long RETRY_UNHEALTHY_MS = 5_000;
+
+    private final ConnectionPool primary;
+    private final List<ConnectionPool> replicas;
+    // Per replica: 0 while healthy, else when it was last found unhealthy (epoch ms)
+    private final AtomicLongArray unhealthySince;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    public ReplicaRouter(ConnectionPool primary, List<ConnectionPool> replicas, long healthCheckIntervalMs) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.unhealthySince = new AtomicLongArray(replicas.size());
+        if (replicas.isEmpty() || healthCheckIntervalMs <= 0) {
+            this.healthChecker = null;
+        } else {
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMs, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /***
+     * Builds a router from the comma-separated pool names in DB_REPLICAS (env var or config.properties),
+     * e.g. DB_REPLICAS=replica1,replica2 with DB_REPLICA1_URL etc. Without DB_REPLICAS all reads use the primary.
+     */
+    public static ReplicaRouter fromConfig(ConnectionPool primary) {
+        String names = System.getenv("DB_REPLICAS");
+        if (names == null) {
+            names = PropertyReader.getOptionalPropertyValue("DB_REPLICAS", "config.properties");
+        }
+        List<ConnectionPool> replicas = new ArrayList<>();
+        if (names != null && !names.isBlank()) {
+            for (String name : names.split(",")) {
+                replicas.add(ConnectionPool.getInstance(name.trim()));
+            }
+        }
+        String interval = PoolSettings.get(PoolSettings.DEFAULT_POOL, "REPLICA_HEALTH_CHECK_MS", "5000");
+        return new ReplicaRouter(primary, replicas, Long.parseLong(interval));
+    }
+
+    public ConnectionPool getPrimary() {
+        return primary;
+    }
+
+    public Connection getWriteConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    /***
+     * @return a read-only connection from the next healthy replica, or from the primary if there is none
+     */
+    public Connection getReadConnection() throws SQLException {
+        int count = replicas.size();
+        for (int attempt = 0; attempt < count; attempt++) {
+            int index = Math.floorMod(next.getAndIncrement(), count);
+            long since = unhealthySince.get(index);
+            if (since != 0 && !claimRetry(index, since)) {
+                continue;
+            }
+            try {
+                Connection connection = replicas.get(index).getConnection();
+                connection.setReadOnly(true);
+                if (since != 0) {
+                    markHealth(index, true, null);
+                }
+                return connection;
+            } catch (SQLException e) {
+                markHealth(index, false, e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    public boolean isHealthy(int replicaIndex) {
+        return unhealthySince.get(replicaIndex) == 0;
+    }
+
+    /***
+     * Validates every replica once. Called by the scheduler; public so it can be driven directly.
+     */
+    public void checkHealth() {
+        for (int i = 0; i < replicas.size(); i++) {
+            try (Connection connection = replicas.get(i).getConnection()) {
+                markHealth(i, connection.isValid(VALIDATION_TIMEOUT_SECONDS), null);
+            } catch (SQLException e) {
+                markHealth(i, false, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+    }
+
+    // Lets one read at a time try an unhealthy replica again, and only when no background check does
+    private boolean claimRetry(int index, long since) {
+        long now = System.currentTimeMillis();
+        return healthChecker == null && now - since >= RETRY_UNHEALTHY_MS && unhealthySince.compareAndSet(index, since, now);
+    }
+
+    private synchronized void markHealth(int index, boolean isHealthy, Exception cause) {
+        if (isHealthy(index) != isHealthy) {
+            if (isHealthy) {
+                LOGGER.info("Replica {} is healthy again", replicas.get(index).getName());
+            } else {
+                LOGGER.warn("Replica {} is unhealthy, routing its reads elsewhere", replicas.get(index).getName(), cause);
+            }
+        }
+        unhealthySince.set(index, isHealthy ? 0 : System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,150 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.dao.query.Query;
+import dat.exceptions.DaoException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/***
+ * Asynchronous view of any ICrudDAO. Every call runs on its own virtual thread, and a fair semaphore
+ * caps how many of them are inside the delegate at once. Sized to the connection pool, callers wait
+ * for a permit on a cheap, unmounted virtual thread instead of holding a platform thread while they
+ * queue inside Hikari. Futures complete exceptionally with the delegate's DaoException.
+ */
+public class AsyncCrudDAO<T> implements AutoCloseable
+{
+    private final ICrudDAO<T> delegate;
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AsyncCrudDAO(ICrudDAO<T> delegate, int maxConcurrentCalls)
+    {
+        if (maxConcurrentCalls < 1)
+        {
+            throw new IllegalArgumentException("Concurrency limit must be positive: " + maxConcurrentCalls);
+        }
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    /***
+     * Gates the delegate by the size of the pool it draws its connections from.
+     */
+    public AsyncCrudDAO(ICrudDAO<T> delegate, ConnectionPool connectionPool)
+    {
+        this(delegate, connectionPool.getMaximumPoolSize());
+    }
+
+    public CompletableFuture<T> create(T entity)
+    {
+        return submit(() -> delegate.create(entity));
+    }
+
+    public CompletableFuture<T> getById(int id)
+    {
+        return submit(() -> delegate.getById(id));
+    }
+
+    public CompletableFuture<List<T>> getAll()
+    {
+        return submit(delegate::getAll);
+    }
+
+    public CompletableFuture<List<T>> find(Query<T> query)
+    {
+        return submit(() -> delegate.find(query));
+    }
+
+    public CompletableFuture<T> update(T entity)
+    {
+        return submit(() -> delegate.update(entity));
+    }
+
+    public CompletableFuture<Void> delete(T entity)
+    {
+        return submit(() ->
+        {
+            delegate.delete(entity);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<T>> createAll(Collection<T> entities)
+    {
+        return submit(() -> delegate.createAll(entities));
+    }
+
+    public CompletableFuture<List<T>> updateAll(Collection<T> entities)
+    {
+        return submit(() -> delegate.updateAll(entities));
+    }
+
+    public CompletableFuture<Void> deleteAll(Collection<T> entities)
+    {
+        return submit(() ->
+        {
+            delegate.deleteAll(entities);
+            return null;
+        });
+    }
+
+    /***
+     * @return the number of calls currently waiting for a permit
+     */
+    public int getQueueLength()
+    {
+        return permits.getQueueLength();
+    }
+
+    /***
+     * Stops accepting calls and waits for the running ones to finish.
+     */
+    @Override
+    public void close()
+    {
+        executor.close();
+    }
+
+    private <R> CompletableFuture<R> submit(DaoCall<R> call)
+    {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        executor.execute(() ->
+        {
+            try
+            {
+                permits.acquire();
+                try
+                {
+                    future.complete(call.execute());
+                }
+                finally
+                {
+                    permits.release();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(new DaoException("Error executing DAO call: interrupted", e));
+            }
+            catch (Throwable e)
+            {
+                // Errors as well, or the caller would wait forever on a future nobody completes
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface DaoCall<R>
+    {
+        R execute() throws DaoException;
+    }
+}
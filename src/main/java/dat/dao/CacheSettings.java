@@ -0,0 +1,55 @@
+package dat.dao;
+
+import java.time.Duration;
+
+/***
+ * Settings for a CachingDAO.
+ * @param maxSize maximum number of cached entities, the ones least likely to be read again are evicted first
+ * @param ttl time an entity stays cached after it was loaded or written
+ * @param negativeTtl time a missing ID stays cached, Duration.ZERO disables negative caching
+ * @param writeBehindInterval flush interval for coalesced updates, Duration.ZERO writes through
+ * @param writeBehindBatchSize maximum number of updates sent to the delegate per flush batch
+ */
+public record CacheSettings(int maxSize, Duration ttl, Duration negativeTtl, Duration writeBehindInterval, int writeBehindBatchSize)
+{
+    public CacheSettings
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        if (ttl.isNegative() || ttl.isZero() || negativeTtl.isNegative() || writeBehindInterval.isNegative())
+        {
+            throw new IllegalArgumentException("Cache durations must not be negative and ttl must be positive");
+        }
+        if (writeBehindBatchSize < 1)
+        {
+            throw new IllegalArgumentException("Write-behind batch size must be positive: " + writeBehindBatchSize);
+        }
+    }
+
+    public static CacheSettings of(int maxSize, Duration ttl)
+    {
+        return new CacheSettings(maxSize, ttl, Duration.ZERO, Duration.ZERO, DatabaseDAO.DEFAULT_BATCH_SIZE);
+    }
+
+    public CacheSettings withNegativeCaching(Duration negativeTtl)
+    {
+        return new CacheSettings(maxSize, ttl, negativeTtl, writeBehindInterval, writeBehindBatchSize);
+    }
+
+    public CacheSettings withWriteBehind(Duration interval, int batchSize)
+    {
+        return new CacheSettings(maxSize, ttl, negativeTtl, interval, batchSize);
+    }
+
+    public boolean isNegativeCaching()
+    {
+        return !negativeTtl.isZero();
+    }
+
+    public boolean isWriteBehind()
+    {
+        return !writeBehindInterval.isZero();
+    }
+}
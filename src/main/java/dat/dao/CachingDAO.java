@@ -0,0 +1,460 @@
+package dat.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import dat.dao.query.Query;
+import dat.exceptions.DaoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/***
+ * Read-through cache decorator for any ICrudDAO. getById is served from a bounded Caffeine cache with a TTL,
+ * so hits take no lock; writes go to the delegate and update the cache. With write-behind enabled, updates are coalesced per ID
+ * and flushed to the delegate in batches; every other operation flushes first, so reads never overtake
+ * pending writes.
+ * Negative caching only remembers IDs whose lookup failed with a DaoException without a cause, which is
+ * how the DAOs in this package report a missing entity; database errors are never cached.
+ * A load only caches its result if no write of the same ID happened while it ran, tracked by a token per ID
+ * that is being loaded.
+ */
+public class CachingDAO<T> implements ICrudDAO<T>, AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(CachingDAO.class);
+
+    private final ICrudDAO<T> delegate;
+    private final Function<T, Integer> idOf;
+    private final CacheSettings settings;
+
+    private final ReentrantLock lock = new ReentrantLock(); // guards pendingUpdates
+    private final ReentrantLock flushLock = new ReentrantLock(); // one flush at a time keeps per-ID write order
+    private final Cache<Integer, Entry<T>> cache;
+    private final LinkedHashMap<Integer, T> pendingUpdates = new LinkedHashMap<>();
+    // Token of the latest load per ID in flight; writes of the ID remove it, so that load does not cache a stale value
+    private final ConcurrentHashMap<Integer, Object> loads = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    // Counted from removals rather than the cache stats, which miss an expired entry a load replaces
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingDAO(ICrudDAO<T> delegate, Function<T, Integer> idOf, CacheSettings settings)
+    {
+        this.delegate = delegate;
+        this.idOf = idOf;
+        this.settings = settings;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(settings.maxSize())
+                .expireAfter(new EntryExpiry<T>())
+                .executor(Runnable::run)  // evictions happen on the writing thread, not in the common pool
+                .removalListener((Integer id, Entry<T> entry, RemovalCause cause) ->
+                {
+                    if (cause.wasEvicted())
+                    {
+                        evictions.increment();
+                    }
+                })
+                .recordStats()
+                .build();
+        if (settings.isWriteBehind())
+        {
+            long intervalMs = settings.writeBehindInterval().toMillis();
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable ->
+            {
+                Thread thread = new Thread(runnable, "CachingDAO-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+        else
+        {
+            this.flusher = null;
+        }
+    }
+
+    @Override
+    public T create(T entity) throws DaoException
+    {
+        T created = delegate.create(entity);
+        cache(created);
+        return created;
+    }
+
+    @Override
+    public T getById(int id) throws DaoException
+    {
+        Entry<T> entry = lookup(id);
+        if (entry != null)
+        {
+            if (entry.value == null)
+            {
+                throw new DaoException("Error fetching entity by ID: Entity with this ID does not exist");
+            }
+            return entry.value;
+        }
+        Object token = new Object();
+        loads.put(id, token);
+        try
+        {
+            T loaded = delegate.getById(id);
+            store(id, new Entry<>(loaded, settings.ttl().toNanos()), token);
+            return loaded;
+        }
+        catch (DaoException e)
+        {
+            if (settings.isNegativeCaching() && e.getCause() == null)
+            {
+                store(id, new Entry<>(null, settings.negativeTtl().toNanos()), token);
+            }
+            else
+            {
+                loads.remove(id, token);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<T> getAll() throws DaoException
+    {
+        flush();
+        return delegate.getAll();
+    }
+
+    @Override
+    public Stream<T> streamAll() throws DaoException
+    {
+        flush();
+        return delegate.streamAll();
+    }
+
+    @Override
+    public List<T> find(Query<T> query) throws DaoException
+    {
+        flush();
+        return delegate.find(query);
+    }
+
+    @Override
+    public T update(T entity) throws DaoException
+    {
+        if (!settings.isWriteBehind())
+        {
+            invalidate(idOf.apply(entity));
+            T updated = delegate.update(entity);
+            cache(updated);
+            return updated;
+        }
+        Integer id = idOf.apply(entity);
+        if (id == null)
+        {
+            throw new DaoException("Error updating entity: Entity has no ID");
+        }
+        lock.lock();
+        try
+        {
+            pendingUpdates.remove(id); // re-insert so the flush order follows the latest write
+            pendingUpdates.put(id, entity);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        cache(entity);
+        return entity;
+    }
+
+    @Override
+    public void delete(T entity) throws DaoException
+    {
+        flush();
+        invalidate(idOf.apply(entity));
+        delegate.delete(entity);
+    }
+
+    @Override
+    public List<T> createAll(Collection<T> entities) throws DaoException
+    {
+        List<T> created = delegate.createAll(entities);
+        created.forEach(this::cache);
+        return created;
+    }
+
+    @Override
+    public List<T> updateAll(Collection<T> entities) throws DaoException
+    {
+        flush();
+        entities.forEach(entity -> invalidate(idOf.apply(entity)));
+        List<T> updated = delegate.updateAll(entities);
+        updated.forEach(this::cache);
+        return updated;
+    }
+
+    @Override
+    public void deleteAll(Collection<T> entities) throws DaoException
+    {
+        flush();
+        entities.forEach(entity -> invalidate(idOf.apply(entity)));
+        delegate.deleteAll(entities);
+    }
+
+    /***
+     * Sends all pending write-behind updates to the delegate, at most writeBehindBatchSize per call.
+     * Updates that fail with a database error stay pending and are retried by the next flush; updates the
+     * delegate rejects (e.g. for an entity deleted meanwhile) are logged and dropped.
+     */
+    public void flush() throws DaoException
+    {
+        flushLock.lock();
+        try
+        {
+            flushPending();
+        }
+        finally
+        {
+            flushLock.unlock();
+        }
+    }
+
+    // Entries stay pending until the delegate accepted them, so reads of expired entries still see them
+    private void flushPending() throws DaoException
+    {
+        while (true)
+        {
+            List<T> batch = new ArrayList<>();
+            lock.lock();
+            try
+            {
+                Iterator<T> pending = pendingUpdates.values().iterator();
+                while (pending.hasNext() && batch.size() < settings.writeBehindBatchSize())
+                {
+                    batch.add(pending.next());
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+            if (batch.isEmpty())
+            {
+                return;
+            }
+            try
+            {
+                delegate.updateAll(batch);
+            }
+            catch (DaoException e)
+            {
+                if (e.getCause() != null)
+                {
+                    throw e;
+                }
+                // A rejected entity (e.g. deleted meanwhile) must not block the queue forever
+                for (T entity : batch)
+                {
+                    try
+                    {
+                        delegate.update(entity);
+                    }
+                    catch (DaoException rejected)
+                    {
+                        logger.warn("Dropping write-behind update for ID {}: {}", idOf.apply(entity), rejected.getMessage());
+                        invalidate(idOf.apply(entity));
+                    }
+                }
+            }
+            lock.lock();
+            try
+            {
+                for (T entity : batch)
+                {
+                    Integer id = idOf.apply(entity);
+                    if (pendingUpdates.get(id) == entity)
+                    {
+                        pendingUpdates.remove(id);
+                    }
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    public int size()
+    {
+        cache.cleanUp();
+        return (int) cache.estimatedSize();
+    }
+
+    public int pendingWrites()
+    {
+        lock.lock();
+        try
+        {
+            return pendingUpdates.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    /***
+     * @return entries removed because the cache was full or their TTL ran out
+     */
+    public long getEvictionCount()
+    {
+        cache.cleanUp();
+        return evictions.sum();
+    }
+
+    public double getHitRatio()
+    {
+        CacheStats stats = cache.stats();
+        return stats.requestCount() == 0 ? 0.0 : stats.hitRate();
+    }
+
+    /***
+     * Flushes pending writes and stops the write-behind thread.
+     */
+    @Override
+    public void close() throws DaoException
+    {
+        if (flusher != null)
+        {
+            flusher.shutdown();
+        }
+        flush();
+    }
+
+    private Entry<T> lookup(int id)
+    {
+        Entry<T> entry = cache.getIfPresent(id);
+        if (entry != null || !settings.isWriteBehind())
+        {
+            return entry;
+        }
+        T pending;
+        lock.lock();
+        try
+        {
+            pending = pendingUpdates.get(id);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        if (pending == null)
+        {
+            return null;
+        }
+        // An expired or evicted entry must not fall through to the older state in the delegate
+        entry = new Entry<>(pending, settings.ttl().toNanos());
+        cache.put(id, entry);
+        return entry;
+    }
+
+    // Caches the loaded entry only if the token is still the ID's latest load, i.e. no write of the ID came in between
+    private void store(int id, Entry<T> entry, Object token)
+    {
+        loads.computeIfPresent(id, (key, current) ->
+        {
+            if (current == token)
+            {
+                cache.put(id, entry);
+                return null;
+            }
+            return current;
+        });
+    }
+
+    private void cache(T entity)
+    {
+        Integer id = idOf.apply(entity);
+        if (id != null)
+        {
+            loads.compute(id, (key, load) ->
+            {
+                cache.put(id, new Entry<>(entity, settings.ttl().toNanos()));
+                return null;
+            });
+        }
+    }
+
+    private void invalidate(Integer id)
+    {
+        if (id != null)
+        {
+            loads.compute(id, (key, load) ->
+            {
+                cache.invalidate(id);
+                return null;
+            });
+        }
+    }
+
+    private void flushQuietly()
+    {
+        try
+        {
+            flush();
+        }
+        catch (DaoException e)
+        {
+            logger.error("Write-behind flush failed, {} updates still pending", pendingWrites(), e);
+        }
+    }
+
+    // Found entities and missing IDs have different TTLs, so every entry carries its own
+    private record Entry<T>(T value, long ttlNanos)
+    {
+    }
+
+    private static final class EntryExpiry<T> implements Expiry<Integer, Entry<T>>
+    {
+        @Override
+        public long expireAfterCreate(Integer id, Entry<T> entry, long currentTime)
+        {
+            return entry.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Integer id, Entry<T> entry, long currentTime, long currentDuration)
+        {
+            return entry.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(Integer id, Entry<T> entry, long currentTime, long currentDuration)
+        {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/***
+ * In-memory DAO that keeps Unicorns in off-heap columns instead of as objects: one direct ByteBuffer per
+ * field, indexed by row, where a row's ID is its row number + 1. Colors are dictionary-encoded to int codes,
+ * names are interned into an off-heap string arena, and Unicorn objects are only built by getById/getAll.
+ * <p>
+ * The aggregate helpers scan the primitive columns in tight counted loops without materializing entities.
+ * Deleted rows stay as tombstones, so IDs are never reused. Reads share a read lock, writes take the write lock.
+ */
+public class ColumnarUnicornDAO implements ICrudDAO<Unicorn>
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Per-row flags
+    private static final byte LIVE = 1;
+    private static final byte NAME_NULL = 2;
+    private static final byte AGE_NULL = 4;
+    private static final byte COLOR_NULL = 8;
+    private static final byte POWER_NULL = 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<String> colorDictionary = new ArrayList<>();
+    private final Map<String, Integer> colorCodes = new HashMap<>();
+    private final NameArena names = new NameArena();
+    private ByteBuffer flags;
+    private ByteBuffer ages;
+    private ByteBuffer powerStrengths;
+    private ByteBuffer colors;
+    private ByteBuffer nameOffsets;
+    private int capacity;
+    private int rows;
+    private int liveRows;
+
+    public ColumnarUnicornDAO()
+    {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public Unicorn create(Unicorn unicorn) throws DaoException
+    {
+        if (unicorn == null)
+        {
+            throw new DaoException("Error creating entity: Entity is null");
+        }
+        lock.writeLock().lock();
+        try
+        {
+            return append(unicorn);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /***
+     * Appends all rows under one write lock.
+     */
+    @Override
+    public List<Unicorn> createAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        List<Unicorn> created = new ArrayList<>(unicorns.size());
+        lock.writeLock().lock();
+        try
+        {
+            for (Unicorn unicorn : unicorns)
+            {
+                if (unicorn == null)
+                {
+                    throw new DaoException("Error creating entity: Entity is null");
+                }
+                created.add(append(unicorn));
+            }
+            return created;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Unicorn getById(int id) throws DaoException
+    {
+        lock.readLock().lock();
+        try
+        {
+            int row = id - 1;
+            if (!isLive(row))
+            {
+                throw new DaoException("Error fetching entity by ID: Entity with this ID does not exist");
+            }
+            return materialize(row);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Unicorn> getAll() throws DaoException
+    {
+        lock.readLock().lock();
+        try
+        {
+            List<Unicorn> unicorns = new ArrayList<>(liveRows);
+            for (int row = 0; row < rows; row++)
+            {
+                if ((flags.get(row) & LIVE) != 0)
+                {
+                    unicorns.add(materialize(row));
+                }
+            }
+            return unicorns;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Unicorn update(Unicorn unicorn) throws DaoException
+    {
+        if (unicorn == null || unicorn.getId() == null)
+        {
+            throw new DaoException("Error updating entity: Entity has no ID");
+        }
+        lock.writeLock().lock();
+        try
+        {
+            int row = unicorn.getId() - 1;
+            if (!isLive(row))
+            {
+                throw new DaoException("Error updating entity: Entity with this ID does not exist");
+            }
+            write(row, unicorn, "Error updating entity: ");
+            return unicorn;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Unicorn unicorn) throws DaoException
+    {
+        if (unicorn == null || unicorn.getId() == null)
+        {
+            throw new DaoException("Error deleting entity: Entity has no ID");
+        }
+        lock.writeLock().lock();
+        try
+        {
+            int row = unicorn.getId() - 1;
+            if (!isLive(row))
+            {
+                throw new DaoException("Error deleting entity: Entity with this ID does not exist");
+            }
+            flags.put(row, (byte) 0);
+            liveRows--;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /***
+     * @return the average power strength over all rows that have one, or NaN if there are none
+     */
+    public double averagePowerStrength()
+    {
+        lock.readLock().lock();
+        try
+        {
+            double sum = 0;
+            long count = 0;
+            for (int row = 0; row < rows; row++)
+            {
+                if ((flags.get(row) & (LIVE | POWER_NULL)) == LIVE)
+                {
+                    sum += powerStrengths.getDouble(row * Double.BYTES);
+                    count++;
+                }
+            }
+            return count == 0 ? Double.NaN : sum / count;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /***
+     * Groups by the dictionary code, so the scan only touches the flag, color and power strength columns
+     * and accumulates into arrays; color strings are only looked up for the result.
+     * @return average power strength per color, in the order the colors were first stored
+     */
+    public Map<String, Double> averagePowerStrengthByColor()
+    {
+        lock.readLock().lock();
+        try
+        {
+            double[] sums = new double[colorDictionary.size()];
+            long[] counts = new long[colorDictionary.size()];
+            for (int row = 0; row < rows; row++)
+            {
+                if ((flags.get(row) & (LIVE | COLOR_NULL | POWER_NULL)) == LIVE)
+                {
+                    int code = colors.getInt(row * Integer.BYTES);
+                    sums[code] += powerStrengths.getDouble(row * Double.BYTES);
+                    counts[code]++;
+                }
+            }
+            Map<String, Double> averages = new LinkedHashMap<>();
+            for (int code = 0; code < sums.length; code++)
+            {
+                if (counts[code] > 0)
+                {
+                    averages.put(colorDictionary.get(code), sums[code] / counts[code]);
+                }
+            }
+            return averages;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /***
+     * @return the number of unicorns with minAge <= age <= maxAge
+     */
+    public long countByAgeBetween(int minAge, int maxAge)
+    {
+        lock.readLock().lock();
+        try
+        {
+            long count = 0;
+            for (int row = 0; row < rows; row++)
+            {
+                int age = ages.getInt(row * Integer.BYTES);
+                if ((flags.get(row) & (LIVE | AGE_NULL)) == LIVE && age >= minAge && age <= maxAge)
+                {
+                    count++;
+                }
+            }
+            return count;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return liveRows;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /***
+     * @return bytes reserved off-heap by the columns and the name arena
+     */
+    public long getOffHeapBytes()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return (long) capacity * (1 + Integer.BYTES + Double.BYTES + Integer.BYTES + Integer.BYTES) + names.capacity();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Unicorn append(Unicorn unicorn) throws DaoException
+    {
+        if (rows == capacity)
+        {
+            allocate(capacity * 2);
+        }
+        int row = rows;
+        write(row, unicorn, "Error creating entity: ");
+        rows++;
+        liveRows++;
+        unicorn.setId(row + 1);
+        return unicorn;
+    }
+
+    private void write(int row, Unicorn unicorn, String errorPrefix) throws DaoException
+    {
+        int nameOffset;
+        try
+        {
+            nameOffset = unicorn.getName() == null ? 0 : names.intern(unicorn.getName());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new DaoException(errorPrefix + e.getMessage(), e);
+        }
+        byte rowFlags = LIVE;
+        if (unicorn.getName() == null)
+        {
+            rowFlags |= NAME_NULL;
+        }
+        if (unicorn.getAge() == null)
+        {
+            rowFlags |= AGE_NULL;
+        }
+        if (unicorn.getColor() == null)
+        {
+            rowFlags |= COLOR_NULL;
+        }
+        if (unicorn.getPowerStrength() == null)
+        {
+            rowFlags |= POWER_NULL;
+        }
+        flags.put(row, rowFlags);
+        nameOffsets.putInt(row * Integer.BYTES, nameOffset);
+        ages.putInt(row * Integer.BYTES, unicorn.getAge() == null ? 0 : unicorn.getAge());
+        colors.putInt(row * Integer.BYTES, unicorn.getColor() == null ? 0 : colorCode(unicorn.getColor()));
+        powerStrengths.putDouble(row * Double.BYTES, unicorn.getPowerStrength() == null ? 0 : unicorn.getPowerStrength());
+    }
+
+    private Unicorn materialize(int row)
+    {
+        byte rowFlags = flags.get(row);
+        Unicorn unicorn = new Unicorn();
+        unicorn.setId(row + 1);
+        unicorn.setName((rowFlags & NAME_NULL) != 0 ? null : names.get(nameOffsets.getInt(row * Integer.BYTES)));
+        unicorn.setAge((rowFlags & AGE_NULL) != 0 ? null : ages.getInt(row * Integer.BYTES));
+        unicorn.setColor((rowFlags & COLOR_NULL) != 0 ? null : colorDictionary.get(colors.getInt(row * Integer.BYTES)));
+        unicorn.setPowerStrength((rowFlags & POWER_NULL) != 0 ? null : powerStrengths.getDouble(row * Double.BYTES));
+        return unicorn;
+    }
+
+    private boolean isLive(int row)
+    {
+        return row >= 0 && row < rows && (flags.get(row) & LIVE) != 0;
+    }
+
+    private int colorCode(String color)
+    {
+        return colorCodes.computeIfAbsent(color, newColor ->
+        {
+            colorDictionary.add(newColor);
+            return colorDictionary.size() - 1;
+        });
+    }
+
+    private void allocate(int newCapacity)
+    {
+        flags = grow(flags, newCapacity);
+        ages = grow(ages, newCapacity * Integer.BYTES);
+        powerStrengths = grow(powerStrengths, newCapacity * Double.BYTES);
+        colors = grow(colors, newCapacity * Integer.BYTES);
+        nameOffsets = grow(nameOffsets, newCapacity * Integer.BYTES);
+        capacity = newCapacity;
+    }
+
+    private static ByteBuffer grow(ByteBuffer column, int bytes)
+    {
+        ByteBuffer grown = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        if (column != null)
+        {
+            grown.put(0, column, 0, column.capacity());
+        }
+        return grown;
+    }
+
+    /***
+     * Append-only off-heap arena of length-prefixed UTF-8 strings with an off-heap open-addressing table,
+     * so every distinct name is stored once. A name is referenced by its offset in the arena.
+     */
+    private static final class NameArena
+    {
+        private ByteBuffer bytes = ByteBuffer.allocateDirect(16 * 1024);
+        private ByteBuffer table = ByteBuffer.allocateDirect(1024 * Integer.BYTES).order(ByteOrder.nativeOrder());
+        private int slots = 1024;
+        private int size;
+
+        int intern(String name)
+        {
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > 0xFFFF)
+            {
+                throw new IllegalArgumentException("Name too long: " + encoded.length + " bytes");
+            }
+            ByteBuffer key = ByteBuffer.wrap(encoded);
+            int slot = hash(key) & (slots - 1);
+            while (true)
+            {
+                int entry = table.getInt(slot * Integer.BYTES);
+                if (entry == 0)
+                {
+                    int offset = store(encoded);
+                    table.putInt(slot * Integer.BYTES, offset + 1);
+                    if (++size * 2 > slots)
+                    {
+                        rehash();
+                    }
+                    return offset;
+                }
+                if (contents(entry - 1).equals(key))
+                {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & (slots - 1);
+            }
+        }
+
+        String get(int offset)
+        {
+            return StandardCharsets.UTF_8.decode(contents(offset)).toString();
+        }
+
+        int capacity()
+        {
+            return bytes.capacity() + table.capacity();
+        }
+
+        private ByteBuffer contents(int offset)
+        {
+            return bytes.slice(offset + Short.BYTES, Short.toUnsignedInt(bytes.getShort(offset)));
+        }
+
+        private int store(byte[] encoded)
+        {
+            int needed = Short.BYTES + encoded.length;
+            if (bytes.remaining() < needed)
+            {
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(bytes.capacity() * 2, bytes.position() + needed));
+                grown.put(0, bytes, 0, bytes.position());
+                grown.position(bytes.position());
+                bytes = grown;
+            }
+            int offset = bytes.position();
+            bytes.putShort((short) encoded.length).put(encoded);
+            return offset;
+        }
+
+        private void rehash()
+        {
+            int newSlots = slots * 2;
+            ByteBuffer newTable = ByteBuffer.allocateDirect(newSlots * Integer.BYTES).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < slots; i++)
+            {
+                int entry = table.getInt(i * Integer.BYTES);
+                if (entry != 0)
+                {
+                    int slot = hash(contents(entry - 1)) & (newSlots - 1);
+                    while (newTable.getInt(slot * Integer.BYTES) != 0)
+                    {
+                        slot = (slot + 1) & (newSlots - 1);
+                    }
+                    newTable.putInt(slot * Integer.BYTES, entry);
+                }
+            }
+            table = newTable;
+            slots = newSlots;
+        }
+
+        // ByteBuffer.hashCode only depends on the remaining bytes, so heap keys and arena slices hash alike
+        private static int hash(ByteBuffer contents)
+        {
+            int h = contents.hashCode();
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/***
+ * Bulk load and export of the unicorns table through the PostgreSQL COPY protocol, which streams rows without
+ * a statement, bind or round trip per row. Loads run in one transaction and stream as they go: the rows of
+ * only chunkSize entities are built at a time, however many the iterator yields.
+ * <p>
+ * load(Iterator) reserves the IDs of every chunk from the sequence behind unicorns.id with one nextval query
+ * per chunk and sends them with the rows. Once the transaction commits they are assigned to the entities
+ * (version 0), so callers get the same IDs back as from createAll and a failed load leaves the entities alone. A connection can't run a query during a COPY, so every chunk is sent in a COPY of
+ * its own after its reservation, all on one connection; a load never holds two pooled connections at once.
+ * The sequence increment is honoured, so the pooled-lo blocks of the Unicorn entity stay intact.
+ * <p>
+ * load(InputStream) and export use the column layout (id, unicorn_name, age, color, powerstrength, version),
+ * so an export loads back as it is, e.g. to restore a dump; the sequence is moved past the highest loaded ID.
+ */
+public class CopyBulkLoader
+{
+    public enum Format
+    {
+        BINARY("(FORMAT binary)"),
+        CSV("(FORMAT csv)");
+
+        private final String options;
+
+        Format(String options)
+        {
+            this.options = options;
+        }
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    private static final String COLUMNS = "unicorns (id, unicorn_name, age, color, powerstrength, version)";
+    private static final String ID_SEQUENCE_SQL = "SELECT COALESCE(pg_get_serial_sequence('unicorns', 'id'), "
+            + "substring(column_default from 'nextval\\(''([^'']+)''')) FROM information_schema.columns "
+            + "WHERE table_schema = current_schema() AND table_name = 'unicorns' AND column_name = 'id'";
+    private static final String INCREMENT_SQL = "SELECT seqincrement FROM pg_sequence WHERE seqrelid = ?::regclass";
+    private static final String RESERVE_IDS_SQL = "SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+    // nextval keeps the sequence from moving back if it is already past the loaded IDs
+    private static final String ADVANCE_SEQUENCE_SQL = "SELECT setval(?::regclass, GREATEST((SELECT COALESCE(MAX(id), 0) FROM unicorns) + 1, nextval(?::regclass)), false)";
+    private static final byte[] BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ConnectionPool connectionPool;
+    private final Format format;
+    private final int chunkSize;
+
+    public CopyBulkLoader(ConnectionPool connectionPool)
+    {
+        this(connectionPool, Format.BINARY, DEFAULT_CHUNK_SIZE);
+    }
+
+    public CopyBulkLoader(ConnectionPool connectionPool, Format format, int chunkSize)
+    {
+        if (chunkSize < 1)
+        {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.connectionPool = connectionPool;
+        this.format = format;
+        this.chunkSize = chunkSize;
+    }
+
+    /***
+     * Inserts all entities, setting their IDs and version 0 once all of them are in.
+     * @return the number of rows inserted
+     */
+    public long load(Iterator<Unicorn> unicorns) throws DaoException
+    {
+        try (Connection connection = connectionPool.getConnection())
+        {
+            String sequence = idSequence(connection);
+            int increment = increment(connection, sequence);
+            connection.setAutoCommit(false);
+            PGCopyOutputStream copy = null;
+            try
+            {
+                long rows = 0;
+                List<Unicorn> loaded = new ArrayList<>();
+                List<int[]> reserved = new ArrayList<>();
+                int chunkStart = 0;
+                while (unicorns.hasNext())
+                {
+                    loaded.add(unicorns.next());
+                    if (loaded.size() - chunkStart == chunkSize || !unicorns.hasNext())
+                    {
+                        List<Unicorn> chunk = loaded.subList(chunkStart, loaded.size());
+                        int[] ids = reserveIds(connection, sequence, increment, chunk.size());
+                        copy = new PGCopyOutputStream(connection.unwrap(PGConnection.class), copySql("FROM STDIN"), BUFFER_SIZE);
+                        RowWriter writer = format == Format.BINARY ? new BinaryRowWriter(copy) : new CsvRowWriter(copy);
+                        for (int i = 0; i < ids.length; i++)
+                        {
+                            writer.write(ids[i], chunk.get(i));
+                        }
+                        writer.finish();
+                        rows += copy.endCopy();
+                        reserved.add(ids);
+                        chunkStart = loaded.size();
+                    }
+                }
+                connection.commit();
+                Iterator<Unicorn> entities = loaded.iterator();
+                for (int[] ids : reserved)
+                {
+                    for (int id : ids)
+                    {
+                        Unicorn unicorn = entities.next();
+                        unicorn.setId(id);
+                        unicorn.setVersion(0);
+                    }
+                }
+                return rows;
+            }
+            catch (SQLException | IOException | DaoException e)
+            {
+                if (copy != null && copy.isActive())
+                {
+                    copy.cancelCopy();
+                }
+                connection.rollback();
+                throw e;
+            }
+        }
+        catch (SQLException | IOException e)
+        {
+            throw new DaoException("Error loading entities: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Streams rows in this loader's format and the export column layout into the table, keeping their IDs.
+     * @return the number of rows inserted
+     */
+    public long load(InputStream rows) throws DaoException
+    {
+        try (Connection connection = connectionPool.getConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                long count = copyApi(connection).copyIn(copySql("FROM STDIN"), rows, BUFFER_SIZE);
+                String sequence = idSequence(connection);
+                try (PreparedStatement ps = connection.prepareStatement(ADVANCE_SEQUENCE_SQL))
+                {
+                    ps.setString(1, sequence);
+                    ps.setString(2, sequence);
+                    ps.execute();
+                }
+                connection.commit();
+                return count;
+            }
+            catch (SQLException | IOException | DaoException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        }
+        catch (SQLException | IOException e)
+        {
+            throw new DaoException("Error loading entities: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Writes the whole table to the file, replacing it.
+     * @return the number of rows exported
+     */
+    public long export(Path file) throws DaoException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            return export(channel);
+        }
+        catch (IOException e)
+        {
+            throw new DaoException("Error exporting entities: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Writes the whole table to the channel as the server sends it, one COPY data message at a time.
+     * @return the number of rows exported
+     */
+    public long export(WritableByteChannel channel) throws DaoException
+    {
+        try (Connection connection = connectionPool.getConnection())
+        {
+            CopyOut copy = copyApi(connection).copyOut(copySql("TO STDOUT"));
+            try
+            {
+                byte[] data;
+                while ((data = copy.readFromCopy()) != null)
+                {
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    while (buffer.hasRemaining())
+                    {
+                        channel.write(buffer);
+                    }
+                }
+                return copy.getHandledRowCount();
+            }
+            finally
+            {
+                if (copy.isActive())
+                {
+                    copy.cancelCopy();
+                }
+            }
+        }
+        catch (SQLException | IOException e)
+        {
+            throw new DaoException("Error exporting entities: " + e.getMessage(), e);
+        }
+    }
+
+    public Format getFormat()
+    {
+        return format;
+    }
+
+    private String copySql(String direction)
+    {
+        return "COPY " + COLUMNS + " " + direction + " WITH " + format.options;
+    }
+
+    private static CopyManager copyApi(Connection connection) throws SQLException
+    {
+        return connection.unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    private static String idSequence(Connection connection) throws SQLException, DaoException
+    {
+        try (PreparedStatement ps = connection.prepareStatement(ID_SEQUENCE_SQL);
+             ResultSet rs = ps.executeQuery())
+        {
+            if (!rs.next() || rs.getString(1) == null)
+            {
+                throw new DaoException("Error loading entities: unicorns.id is not backed by a sequence");
+            }
+            return rs.getString(1);
+        }
+    }
+
+    private static int increment(Connection connection, String sequence) throws SQLException
+    {
+        try (PreparedStatement ps = connection.prepareStatement(INCREMENT_SQL))
+        {
+            ps.setString(1, sequence);
+            try (ResultSet rs = ps.executeQuery())
+            {
+                rs.next();
+                return Math.max(1, (int) rs.getLong(1));
+            }
+        }
+    }
+
+    // Every nextval hands out the block [value, value + increment), as for Hibernate's pooled-lo optimizer
+    private static int[] reserveIds(Connection connection, String sequence, int increment, int count) throws SQLException, DaoException
+    {
+        int[] ids = new int[count];
+        int blocks = (count + increment - 1) / increment;
+        try (PreparedStatement ps = connection.prepareStatement(RESERVE_IDS_SQL))
+        {
+            ps.setString(1, sequence);
+            ps.setInt(2, blocks);
+            try (ResultSet rs = ps.executeQuery())
+            {
+                int next = 0;
+                while (next < count)
+                {
+                    if (!rs.next())
+                    {
+                        throw new DaoException("Error loading entities: Expected " + blocks + " ID blocks from " + sequence);
+                    }
+                    long first = rs.getLong(1);
+                    for (int i = 0; i < increment && next < count; i++)
+                    {
+                        ids[next++] = Math.toIntExact(first + i);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private interface RowWriter
+    {
+        // Rows are loaded with version 0
+        void write(int id, Unicorn unicorn) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /***
+     * PGCOPY binary: a signature and two empty int32 header fields, per row an int16 field count and every field
+     * as int32 length (-1 for null) plus its big-endian value, and an int16 -1 as trailer.
+     */
+    private static final class BinaryRowWriter implements RowWriter
+    {
+        private final DataOutputStream out;
+
+        BinaryRowWriter(PGCopyOutputStream copy) throws IOException
+        {
+            this.out = new DataOutputStream(copy);
+            out.write(BINARY_SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+        }
+
+        @Override
+        public void write(int id, Unicorn unicorn) throws IOException
+        {
+            out.writeShort(6);
+            writeInt(id);
+            writeText(unicorn.getName());
+            writeInt(unicorn.getAge());
+            writeText(unicorn.getColor());
+            if (unicorn.getPowerStrength() == null)
+            {
+                out.writeInt(-1);
+            }
+            else
+            {
+                out.writeInt(8);
+                out.writeDouble(unicorn.getPowerStrength());
+            }
+            writeInt(0);
+        }
+
+        @Override
+        public void finish() throws IOException
+        {
+            out.writeShort(-1);
+            out.flush();
+        }
+
+        private void writeInt(Integer value) throws IOException
+        {
+            if (value == null)
+            {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(4);
+            out.writeInt(value);
+        }
+
+        private void writeText(String value) throws IOException
+        {
+            if (value == null)
+            {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /***
+     * CSV with every string quoted, so an empty string stays distinct from null (an empty unquoted field).
+     */
+    private static final class CsvRowWriter implements RowWriter
+    {
+        private final Writer out;
+
+        CsvRowWriter(PGCopyOutputStream copy)
+        {
+            this.out = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        @Override
+        public void write(int id, Unicorn unicorn) throws IOException
+        {
+            writeValue(id);
+            out.write(',');
+            writeText(unicorn.getName());
+            out.write(',');
+            writeValue(unicorn.getAge());
+            out.write(',');
+            writeText(unicorn.getColor());
+            out.write(',');
+            writeValue(unicorn.getPowerStrength());
+            out.write(',');
+            writeValue(0);
+            out.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException
+        {
+            out.flush();
+        }
+
+        private void writeValue(Object value) throws IOException
+        {
+            if (value != null)
+            {
+                out.write(value.toString());
+            }
+        }
+
+        private void writeText(String value) throws IOException
+        {
+            if (value == null)
+            {
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+}
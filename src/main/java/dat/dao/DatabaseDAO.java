@@ -0,0 +1,658 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.config.ReplicaRouter;
+import dat.dao.query.Query;
+import dat.dao.query.QueryField;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/***
+ * JDBC implementation of the DAO, backed by the unicorns table through the Hikari ConnectionPool.
+ * The bulk methods send their statements in JDBC batches of batchSize rows, all inside one transaction;
+ * createAll switches to COPY through a CopyBulkLoader from COPY_THRESHOLD entities on.
+ * New rows get IDs from a SequenceIdAllocator, which takes a whole block of the pooled sequence per nextval,
+ * so plain inserts use up the sequence no faster than Hibernate does.
+ * streamAll() reads through a server-side cursor, fetchSize rows per round trip.
+ * With a ReplicaRouter, getById, getAll, streamAll and find are served by the replicas and all writes by
+ * the primary; reads within the read-your-writes window after a write of the same row go to the primary.
+ * Updates only match the row if its version is still the one the entity carries (or the entity has none) and
+ * increment it in the same statement; a stale version fails with OptimisticLockDaoException.
+ */
+public class DatabaseDAO implements ICrudDAO<Unicorn>, IPatchDAO<Unicorn>, IKeyedDAO<Unicorn>, IVersionedDAO<Unicorn>
+{
+    private static final String INSERT_WITH_ID_SQL = "INSERT INTO unicorns (unicorn_name, age, color, powerstrength, id) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_ID_SQL = "SELECT id, unicorn_name, age, color, powerstrength, version FROM unicorns WHERE id = ?";
+    private static final String SELECT_ALL_SQL = "SELECT id, unicorn_name, age, color, powerstrength, version FROM unicorns";
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM unicorns WHERE id = ?";
+    private static final String UPDATE_SQL = "UPDATE unicorns SET unicorn_name = ?, age = ?, color = ?, powerstrength = ?, version = version + 1 "
+            + "WHERE id = ? AND version = COALESCE(?, version)";
+    private static final String UPDATE_RETURNING_SQL = UPDATE_SQL + " RETURNING version";
+    private static final String WRITE_VERSIONED_SQL = "UPDATE unicorns SET unicorn_name = ?, age = ?, color = ?, powerstrength = ?, version = ? "
+            + "WHERE id = ? AND version <= ?";
+    private static final String ADD_POWER_STRENGTH_SQL = "UPDATE unicorns SET powerstrength = COALESCE(powerstrength, 0) + ?, version = version + 1 "
+            + "WHERE id = ? RETURNING id, unicorn_name, age, color, powerstrength, version";
+    private static final String DELETE_SQL = "DELETE FROM unicorns WHERE id = ?";
+
+    // Column indexes per statement; find() adds one shape per distinct query, as the driver's statement cache does
+    private static final UnicornRowMapper ROW_MAPPER = new UnicornRowMapper();
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    // Below this, the batched INSERT is as fast and reserves its IDs in blocks of the sequence increment as well
+    public static final int COPY_THRESHOLD = 10_000;
+
+    private final ConnectionPool connectionPool;
+    private final ReplicaRouter replicaRouter;
+    private final ReadYourWrites recentWrites;
+    private final CopyBulkLoader copyLoader;
+    private final IdAllocator ids;
+    private final int batchSize;
+    private final int fetchSize;
+
+    public DatabaseDAO()
+    {
+        this(ConnectionPool.getInstance());
+    }
+
+    public DatabaseDAO(ConnectionPool connectionPool)
+    {
+        this(connectionPool, DEFAULT_BATCH_SIZE);
+    }
+
+    public DatabaseDAO(ConnectionPool connectionPool, int batchSize)
+    {
+        this(connectionPool, batchSize, DEFAULT_FETCH_SIZE);
+    }
+
+    public DatabaseDAO(ConnectionPool connectionPool, int batchSize, int fetchSize)
+    {
+        this(new ReplicaRouter(connectionPool, List.of(), 0), Duration.ZERO, batchSize, fetchSize);
+    }
+
+    /***
+     * @param replicaRouter Routes reads to the replicas and writes to its primary pool
+     * @param readYourWrites How long reads of a written row stay on the primary, Duration.ZERO to always use replicas
+     */
+    public DatabaseDAO(ReplicaRouter replicaRouter, Duration readYourWrites)
+    {
+        this(replicaRouter, readYourWrites, DEFAULT_BATCH_SIZE, DEFAULT_FETCH_SIZE);
+    }
+
+    public DatabaseDAO(ReplicaRouter replicaRouter, Duration readYourWrites, int batchSize, int fetchSize)
+    {
+        if (batchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (fetchSize < 1)
+        {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.connectionPool = replicaRouter.getPrimary();
+        this.replicaRouter = replicaRouter;
+        this.recentWrites = new ReadYourWrites(readYourWrites);
+        this.copyLoader = new CopyBulkLoader(connectionPool);
+        this.ids = new SequenceIdAllocator(connectionPool);
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public Unicorn create(Unicorn unicorn) throws DaoException
+    {
+        if (unicorn == null)
+        {
+            throw new DaoException("Error creating entity: Entity is null");
+        }
+        // Reserved before the insert takes its connection, so a create never holds two
+        int id = ids.nextId();
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(INSERT_WITH_ID_SQL))
+        {
+            setValues(ps, unicorn);
+            ps.setInt(5, id);
+            ps.executeUpdate();
+            unicorn.setId(id);
+            unicorn.setVersion(0);
+            recentWrites.markWritten(unicorn.getId());
+            return unicorn;
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error creating entity: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Unicorn insert(Unicorn unicorn) throws DaoException
+    {
+        insertAll(List.of(requireId(unicorn)));
+        return unicorn;
+    }
+
+    @Override
+    public List<Unicorn> insertAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        for (Unicorn unicorn : unicorns)
+        {
+            requireId(unicorn);
+        }
+        executeInBatches(INSERT_WITH_ID_SQL, unicorns, (ps, unicorn) ->
+        {
+            setValues(ps, unicorn);
+            ps.setInt(5, unicorn.getId());
+        }, null, "Error creating entities: ");
+        unicorns.forEach(unicorn -> unicorn.setVersion(0));
+        return new ArrayList<>(unicorns);
+    }
+
+    @Override
+    public Unicorn getById(int id) throws DaoException
+    {
+        try (Connection connection = readConnection(recentWrites.isSticky(id));
+             PreparedStatement ps = connection.prepareStatement(SELECT_BY_ID_SQL))
+        {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery())
+            {
+                if (rs.next())
+                {
+                    return UnicornRowMapper.map(rs, ROW_MAPPER.columns(SELECT_BY_ID_SQL, rs));
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error fetching entity by ID: " + e.getMessage(), e);
+        }
+        throw new DaoException("Error fetching entity by ID: Entity with this ID does not exist");
+    }
+
+    @Override
+    public List<Unicorn> getAll() throws DaoException
+    {
+        List<Unicorn> unicorns = new ArrayList<>();
+        try (Connection connection = readConnection(recentWrites.isAnySticky());
+             PreparedStatement ps = connection.prepareStatement(SELECT_ALL_SQL);
+             ResultSet rs = ps.executeQuery())
+        {
+            UnicornRowMapper.Columns columns = ROW_MAPPER.columns(SELECT_ALL_SQL, rs);
+            while (rs.next())
+            {
+                unicorns.add(UnicornRowMapper.map(rs, columns));
+            }
+            return unicorns;
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error fetching all entities: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * PostgreSQL only uses a cursor when autocommit is off and a fetch size is set, otherwise the driver
+     * buffers the whole result. The connection stays borrowed until the returned stream is closed.
+     */
+    @Override
+    public Stream<Unicorn> streamAll() throws DaoException
+    {
+        Connection connection = null;
+        PreparedStatement ps = null;
+        try
+        {
+            connection = readConnection(recentWrites.isAnySticky());
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            ps = connection.prepareStatement(SELECT_ALL_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ResultSet rs = ps.executeQuery();
+            Connection streamConnection = connection;
+            PreparedStatement streamStatement = ps;
+            return StreamSupport.stream(new ResultSetSpliterator(rs, ROW_MAPPER.columns(SELECT_ALL_SQL, rs)), false)
+                    .onClose(() -> closeCursor(streamConnection, streamStatement, rs));
+        }
+        catch (SQLException e)
+        {
+            closeCursor(connection, ps, null);
+            throw new DaoException("Error streaming entities: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Visits every row through one reused UnicornRow, over the same cursor as streamAll(), so a scan allocates
+     * nothing per row but the name and color strings. Rows must not be kept beyond the visit, see UnicornRow.
+     * @return the number of rows visited
+     */
+    public long scanAll(Consumer<? super UnicornRow> visitor) throws DaoException
+    {
+        Connection connection = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try
+        {
+            connection = readConnection(recentWrites.isAnySticky());
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            ps = connection.prepareStatement(SELECT_ALL_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            rs = ps.executeQuery();
+            UnicornRowMapper.Columns columns = ROW_MAPPER.columns(SELECT_ALL_SQL, rs);
+            UnicornRow row = new UnicornRow();
+            long rows = 0;
+            while (rs.next())
+            {
+                UnicornRowMapper.mapInto(rs, columns, row);
+                visitor.accept(row);
+                rows++;
+            }
+            return rows;
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error scanning entities: " + e.getMessage(), e);
+        }
+        finally
+        {
+            closeCursor(connection, ps, rs);
+        }
+    }
+
+    @Override
+    public List<Unicorn> find(Query<Unicorn> query) throws DaoException
+    {
+        List<Object> params = new ArrayList<>();
+        String sql = SELECT_ALL_SQL + query.render(QueryField::column, position -> "?", params, true);
+        List<Unicorn> unicorns = new ArrayList<>();
+        try (Connection connection = readConnection(recentWrites.isAnySticky());
+             PreparedStatement ps = connection.prepareStatement(sql))
+        {
+            for (int i = 0; i < params.size(); i++)
+            {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery())
+            {
+                UnicornRowMapper.Columns columns = ROW_MAPPER.columns(sql, rs);
+                while (rs.next())
+                {
+                    unicorns.add(UnicornRowMapper.map(rs, columns));
+                }
+            }
+            return unicorns;
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error querying entities: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Unicorn update(Unicorn unicorn) throws DaoException
+    {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(UPDATE_RETURNING_SQL))
+        {
+            bindUpdate(ps, unicorn);
+            try (ResultSet rs = ps.executeQuery())
+            {
+                if (!rs.next())
+                {
+                    throw noRowUpdated(connection, unicorn, "Error updating entity: ");
+                }
+                unicorn.setVersion(rs.getInt(1));
+            }
+            recentWrites.markWritten(unicorn.getId());
+            return unicorn;
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error updating entity: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * A single UPDATE ... SET powerstrength = powerstrength + ?, so concurrent patches add up.
+     */
+    @Override
+    public Unicorn updatePowerStrength(int id, double delta) throws DaoException
+    {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(ADD_POWER_STRENGTH_SQL))
+        {
+            ps.setDouble(1, delta);
+            ps.setInt(2, id);
+            try (ResultSet rs = ps.executeQuery())
+            {
+                if (!rs.next())
+                {
+                    throw new DaoException("Error updating entity: Entity with this ID does not exist");
+                }
+                recentWrites.markWritten(id);
+                return UnicornRowMapper.map(rs, ROW_MAPPER.columns(ADD_POWER_STRENGTH_SQL, rs));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error updating entity: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(Unicorn unicorn) throws DaoException
+    {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(DELETE_SQL))
+        {
+            ps.setInt(1, unicorn.getId());
+            if (ps.executeUpdate() == 0)
+            {
+                throw new DaoException("Error deleting entity: Entity with this ID does not exist");
+            }
+            recentWrites.markWritten(unicorn.getId());
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error deleting entity: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<Unicorn> createAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        if (unicorns.size() >= COPY_THRESHOLD)
+        {
+            copyLoader.load(unicorns.iterator());
+            recentWrites.markAllWritten();
+            return new ArrayList<>(unicorns);
+        }
+        // Rows go in as copies carrying the reserved IDs, so entities of a rolled back call keep no ID that is not in the table
+        List<Unicorn> rows = new ArrayList<>(unicorns.size());
+        for (Unicorn unicorn : unicorns)
+        {
+            Unicorn row = new Unicorn(unicorn);
+            row.setId(ids.nextId());
+            rows.add(row);
+        }
+        executeInBatches(INSERT_WITH_ID_SQL, rows, (ps, row) ->
+        {
+            setValues(ps, row);
+            ps.setInt(5, row.getId());
+        }, null, "Error creating entities: ");
+        Iterator<Unicorn> row = rows.iterator();
+        for (Unicorn unicorn : unicorns)
+        {
+            unicorn.setId(row.next().getId());
+            unicorn.setVersion(0);
+        }
+        return new ArrayList<>(unicorns);
+    }
+
+    @Override
+    public List<Unicorn> updateAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        executeInBatches(UPDATE_SQL, unicorns, DatabaseDAO::bindUpdate, DatabaseDAO::checkUpdated, "Error updating entities: ");
+        // The batch cannot return the new versions; unversioned entities stay unversioned
+        unicorns.stream()
+                .filter(unicorn -> unicorn.getVersion() != null)
+                .forEach(unicorn -> unicorn.setVersion(unicorn.getVersion() + 1));
+        return new ArrayList<>(unicorns);
+    }
+
+    @Override
+    public void deleteAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        executeInBatches(DELETE_SQL, unicorns, (ps, unicorn) -> ps.setInt(1, unicorn.getId()), (connection, unicorn, count, errorPrefix) ->
+        {
+            if (count == 0)
+            {
+                throw new DaoException(errorPrefix + "Entity with this ID does not exist");
+            }
+        }, "Error deleting entities: ");
+    }
+
+    /***
+     * Writes all entities in one transaction; a missing row or a newer stored version rolls back the whole call.
+     */
+    @Override
+    public void writeAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        for (Unicorn unicorn : unicorns)
+        {
+            if (unicorn == null || unicorn.getId() == null || unicorn.getVersion() == null)
+            {
+                throw new DaoException("Error writing entities: Entity has no ID or version");
+            }
+        }
+        executeInBatches(WRITE_VERSIONED_SQL, unicorns, (ps, unicorn) ->
+        {
+            setValues(ps, unicorn);
+            ps.setInt(5, unicorn.getVersion());
+            ps.setInt(6, unicorn.getId());
+            ps.setInt(7, unicorn.getVersion());
+        }, (connection, unicorn, count, errorPrefix) ->
+        {
+            if (count == 0)
+            {
+                throw noRowUpdated(connection, unicorn, errorPrefix);
+            }
+        }, "Error writing entities: ");
+    }
+
+    /***
+     * @return the COPY loader and exporter for this DAO's primary pool, e.g. for feeds too large for a collection
+     */
+    public CopyBulkLoader getCopyLoader()
+    {
+        return copyLoader;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public int getFetchSize()
+    {
+        return fetchSize;
+    }
+
+    private static Unicorn requireId(Unicorn unicorn) throws DaoException
+    {
+        if (unicorn == null || unicorn.getId() == null)
+        {
+            throw new DaoException("Error creating entity: Entity has no ID");
+        }
+        return unicorn;
+    }
+
+    private Connection readConnection(boolean sticky) throws SQLException
+    {
+        return sticky ? connectionPool.getConnection() : replicaRouter.getReadConnection();
+    }
+
+    private static void closeCursor(Connection connection, PreparedStatement ps, ResultSet rs)
+    {
+        try (connection; ps; rs)
+        {
+            if (connection != null && !connection.getAutoCommit())
+            {
+                connection.commit();
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new IllegalStateException("Error closing entity stream: " + e.getMessage(), e);
+        }
+    }
+
+    private static class ResultSetSpliterator extends Spliterators.AbstractSpliterator<Unicorn>
+    {
+        private final ResultSet rs;
+        private final UnicornRowMapper.Columns columns;
+
+        ResultSetSpliterator(ResultSet rs, UnicornRowMapper.Columns columns)
+        {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.rs = rs;
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Unicorn> action)
+        {
+            try
+            {
+                if (!rs.next())
+                {
+                    return false;
+                }
+                action.accept(UnicornRowMapper.map(rs, columns));
+                return true;
+            }
+            catch (SQLException e)
+            {
+                throw new IllegalStateException("Error streaming entities: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /***
+     * @param check Called with the update count of every row, may throw to roll the whole transaction back; null to skip
+     */
+    private void executeInBatches(String sql, Collection<Unicorn> unicorns, StatementBinder binder, RowCountCheck check, String errorPrefix) throws DaoException
+    {
+        try (Connection connection = connectionPool.getConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(sql))
+            {
+                List<Unicorn> batch = new ArrayList<>(Math.min(batchSize, unicorns.size()));
+                for (Unicorn unicorn : unicorns)
+                {
+                    binder.bind(ps, unicorn);
+                    ps.addBatch();
+                    batch.add(unicorn);
+                    if (batch.size() == batchSize)
+                    {
+                        executeBatch(connection, ps, batch, check, errorPrefix);
+                    }
+                }
+                if (!batch.isEmpty())
+                {
+                    executeBatch(connection, ps, batch, check, errorPrefix);
+                }
+                connection.commit();
+                unicorns.forEach(unicorn -> recentWrites.markWritten(unicorn.getId()));
+            }
+            catch (SQLException | DaoException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException(errorPrefix + e.getMessage(), e);
+        }
+    }
+
+    private static void executeBatch(Connection connection, PreparedStatement ps, List<Unicorn> batch, RowCountCheck check, String errorPrefix) throws SQLException, DaoException
+    {
+        int[] counts = ps.executeBatch();
+        if (check != null)
+        {
+            for (int i = 0; i < counts.length; i++)
+            {
+                check.check(connection, batch.get(i), counts[i], errorPrefix);
+            }
+        }
+        batch.clear();
+    }
+
+    // An unversioned update only matches no row when the row is gone
+    private static void checkUpdated(Connection connection, Unicorn unicorn, int count, String errorPrefix) throws SQLException, DaoException
+    {
+        if (count == 0)
+        {
+            throw noRowUpdated(connection, unicorn, errorPrefix);
+        }
+    }
+
+    // The update matched no row: either the row is gone or its version moved on
+    private static DaoException noRowUpdated(Connection connection, Unicorn unicorn, String errorPrefix) throws SQLException
+    {
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_VERSION_SQL))
+        {
+            ps.setInt(1, unicorn.getId());
+            try (ResultSet rs = ps.executeQuery())
+            {
+                if (!rs.next())
+                {
+                    return new DaoException(errorPrefix + "Entity with this ID does not exist");
+                }
+                return new OptimisticLockDaoException(String.format(
+                        "%sEntity %d was changed concurrently, version %d is now %d", errorPrefix, unicorn.getId(), unicorn.getVersion(), rs.getInt(1)));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder
+    {
+        void bind(PreparedStatement ps, Unicorn unicorn) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowCountCheck
+    {
+        void check(Connection connection, Unicorn unicorn, int count, String errorPrefix) throws SQLException, DaoException;
+    }
+
+    private static void bindUpdate(PreparedStatement ps, Unicorn unicorn) throws SQLException
+    {
+        setValues(ps, unicorn);
+        ps.setInt(5, unicorn.getId());
+        ps.setObject(6, unicorn.getVersion(), Types.INTEGER);
+    }
+
+    // Nulls are bound as such, so they round-trip through UnicornRowMapper
+    private static void setValues(PreparedStatement ps, Unicorn unicorn) throws SQLException
+    {
+        ps.setString(1, unicorn.getName());
+        if (unicorn.getAge() != null)
+        {
+            ps.setInt(2, unicorn.getAge());
+        }
+        else
+        {
+            ps.setNull(2, Types.INTEGER);
+        }
+        ps.setString(3, unicorn.getColor());
+        if (unicorn.getPowerStrength() != null)
+        {
+            ps.setDouble(4, unicorn.getPowerStrength());
+        }
+        else
+        {
+            ps.setNull(4, Types.DOUBLE);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dat.dao;
+
+import java.time.Duration;
+
+/***
+ * Settings for a DurableMemoryDAO.
+ * @param fsyncPolicy when appended log records are forced to disk
+ * @param fsyncBatchSize number of records per force with FsyncPolicy.BATCHED
+ * @param fsyncInterval time between forces with FsyncPolicy.INTERVAL
+ * @param logSizeBytes size of the memory-mapped log file; a full log is compacted into a snapshot
+ * @param snapshotEveryRecords compact after this many log records, 0 only compacts when the log is full
+ */
+public record DurabilitySettings(FsyncPolicy fsyncPolicy, int fsyncBatchSize, Duration fsyncInterval, int logSizeBytes, int snapshotEveryRecords)
+{
+    public static final int DEFAULT_LOG_SIZE_BYTES = 64 * 1024 * 1024;
+
+    /***
+     * EVERY_WRITE forces each record before the call returns, BATCHED forces every fsyncBatchSize records
+     * and INTERVAL forces from a background thread, so a crash loses at most that much of the tail.
+     */
+    public enum FsyncPolicy
+    {
+        EVERY_WRITE, BATCHED, INTERVAL
+    }
+
+    public DurabilitySettings
+    {
+        if (fsyncBatchSize < 1)
+        {
+            throw new IllegalArgumentException("Fsync batch size must be positive: " + fsyncBatchSize);
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL && (fsyncInterval.isNegative() || fsyncInterval.isZero()))
+        {
+            throw new IllegalArgumentException("Fsync interval must be positive: " + fsyncInterval);
+        }
+        if (logSizeBytes < 4096 || snapshotEveryRecords < 0)
+        {
+            throw new IllegalArgumentException(String.format("Invalid log settings: logSizeBytes=%d, snapshotEveryRecords=%d", logSizeBytes, snapshotEveryRecords));
+        }
+    }
+
+    public static DurabilitySettings everyWrite()
+    {
+        return new DurabilitySettings(FsyncPolicy.EVERY_WRITE, 1, Duration.ZERO, DEFAULT_LOG_SIZE_BYTES, 0);
+    }
+
+    public static DurabilitySettings batched(int records)
+    {
+        return new DurabilitySettings(FsyncPolicy.BATCHED, records, Duration.ZERO, DEFAULT_LOG_SIZE_BYTES, 0);
+    }
+
+    public static DurabilitySettings interval(Duration interval)
+    {
+        return new DurabilitySettings(FsyncPolicy.INTERVAL, 1, interval, DEFAULT_LOG_SIZE_BYTES, 0);
+    }
+
+    public DurabilitySettings withLogSize(int logSizeBytes)
+    {
+        return new DurabilitySettings(fsyncPolicy, fsyncBatchSize, fsyncInterval, logSizeBytes, snapshotEveryRecords);
+    }
+
+    public DurabilitySettings withSnapshotEvery(int records)
+    {
+        return new DurabilitySettings(fsyncPolicy, fsyncBatchSize, fsyncInterval, logSizeBytes, records);
+    }
+}
@@ -0,0 +1,551 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/***
+ * MemoryDAO that survives restarts. Every create, update and delete is appended to a memory-mapped log
+ * before the call returns, in the compact UnicornCodec encoding, and the log is forced to disk according
+ * to the FsyncPolicy. When the log is full (or after snapshotEveryRecords records) the whole map is
+ * compacted into a snapshot file and the log starts over under a new generation number.
+ * <p>
+ * Recovery maps the snapshot and the log read-only and decodes the records straight from the mappings.
+ * Each log record carries a CRC32C over its body and the log generation, so a torn tail write or a stale
+ * record from the previous generation ends the replay.
+ * <p>
+ * Reads are lock-free as in MemoryDAO; writes are serialized, since the log is a single append point.
+ */
+public class DurableMemoryDAO extends MemoryDAO<Unicorn> implements AutoCloseable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DurableMemoryDAO.class);
+
+    static final String LOG_FILE = "unicorns.log";
+    static final String SNAPSHOT_FILE = "unicorns.snapshot";
+    private static final int LOG_MAGIC = 0x554E4C47;       // "UNLG"
+    private static final int SNAPSHOT_MAGIC = 0x554E5350;  // "UNSP"
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER_BYTES = 16;        // magic, version, generation
+    private static final int SNAPSHOT_HEADER_BYTES = 24;   // magic, version, generation, lastId, count
+    private static final int SNAPSHOT_CRC_OFFSET = 8;      // the crc covers everything after magic and version
+    private static final int RECORD_HEADER_BYTES = 8;      // body length, crc
+    private static final int RECORD_BODY_HEADER_BYTES = 5; // op, id
+
+    private static final byte OP_CREATE = 1;
+    private static final byte OP_UPDATE = 2;
+    private static final byte OP_DELETE = 3;
+
+    private final Path directory;
+    private final DurabilitySettings settings;
+    private final FileChannel logChannel;
+    private final MappedByteBuffer log;
+    private final CRC32C checksum = new CRC32C();
+    private final ScheduledExecutorService fsyncScheduler;
+    private long generation;
+    private int recordsSinceSnapshot;
+    private int unforcedRecords;
+    private int forcedPosition;
+    private boolean closed;
+
+    /***
+     * Opens the store in the directory, recovering whatever an earlier instance left there.
+     * @throws DaoException if the files can't be opened or the snapshot is corrupt
+     */
+    public DurableMemoryDAO(Path directory, DurabilitySettings settings) throws DaoException
+    {
+        this(directory, settings, Recovery.load(directory, settings));
+    }
+
+    private DurableMemoryDAO(Path directory, DurabilitySettings settings, Recovery recovery) throws DaoException
+    {
+        super(recovery.entities, recovery.lastId);
+        this.directory = directory;
+        this.settings = settings;
+        this.generation = recovery.generation;
+        try
+        {
+            this.logChannel = FileChannel.open(directory.resolve(LOG_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, settings.logSizeBytes());
+        }
+        catch (IOException e)
+        {
+            throw new DaoException("Error opening durable store: " + e.getMessage(), e);
+        }
+        if (recovery.logPosition < 0)
+        {
+            resetLog(generation);
+        }
+        else
+        {
+            log.position(recovery.logPosition);
+            forcedPosition = recovery.logPosition;
+            recordsSinceSnapshot = recovery.replayedRecords;
+        }
+        LOGGER.info("Recovered {} unicorns from {} (generation {}, {} log records replayed)",
+                recovery.entities.size(), directory, generation, recovery.replayedRecords);
+
+        if (settings.fsyncPolicy() == DurabilitySettings.FsyncPolicy.INTERVAL)
+        {
+            this.fsyncScheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+            {
+                Thread thread = new Thread(runnable, "durable-memory-dao-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMs = settings.fsyncInterval().toMillis();
+            fsyncScheduler.scheduleWithFixedDelay(this::forceQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+        else
+        {
+            this.fsyncScheduler = null;
+        }
+    }
+
+    @Override
+    public Unicorn create(Unicorn entity) throws DaoException
+    {
+        if (entity == null)
+        {
+            throw new DaoException("Error creating entity: Entity is null");
+        }
+        synchronized (this)
+        {
+            ensureCapacity(storedSize(entity), "Error creating entity: ");
+            Unicorn created = super.create(entity);
+            append(OP_CREATE, created.getId(), created);
+            return created;
+        }
+    }
+
+    @Override
+    public Unicorn insert(Unicorn entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error creating entity: Entity has no ID");
+        }
+        synchronized (this)
+        {
+            ensureCapacity(storedSize(entity), "Error creating entity: ");
+            Unicorn inserted = super.insert(entity);
+            append(OP_CREATE, inserted.getId(), inserted);
+            return inserted;
+        }
+    }
+
+    @Override
+    public Unicorn put(Unicorn entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error storing entity: Entity has no ID");
+        }
+        synchronized (this)
+        {
+            ensureCapacity(UnicornCodec.encodedSize(entity), "Error storing entity: ");
+            Unicorn stored = super.put(entity);
+            append(OP_CREATE, stored.getId(), stored);  // replays like a create, so the ID is not handed out again
+            return stored;
+        }
+    }
+
+    @Override
+    public Unicorn evict(int id)
+    {
+        synchronized (this)
+        {
+            if (getIfPresent(id) == null)
+            {
+                return null;
+            }
+            try
+            {
+                ensureCapacity(0, "Error evicting entity: ");
+            }
+            catch (DaoException e)
+            {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            Unicorn evicted = super.evict(id);
+            append(OP_DELETE, id, null);
+            return evicted;
+        }
+    }
+
+    @Override
+    public Unicorn update(Unicorn entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error updating entity: Entity has no ID");
+        }
+        synchronized (this)
+        {
+            ensureCapacity(storedSize(entity), "Error updating entity: ");
+            Unicorn updated = super.update(entity);
+            append(OP_UPDATE, updated.getId(), updated);
+            return updated;
+        }
+    }
+
+    @Override
+    public void writeAll(Collection<Unicorn> entities) throws DaoException
+    {
+        synchronized (this)
+        {
+            for (Unicorn entity : entities)
+            {
+                if (entity == null)
+                {
+                    throw new DaoException("Error writing entities: Entity is null");
+                }
+                ensureCapacity(UnicornCodec.encodedSize(entity), "Error writing entities: ");
+                super.writeAll(List.of(entity));
+                append(OP_UPDATE, entity.getId(), entity);
+            }
+        }
+    }
+
+    @Override
+    public Unicorn updatePowerStrength(int id, double delta) throws DaoException
+    {
+        synchronized (this)
+        {
+            // The patch may add a power strength the stored entity did not have yet
+            Unicorn current = getById(id);
+            ensureCapacity(storedSize(current) + (current.getPowerStrength() == null ? 8 : 0), "Error updating entity: ");
+            Unicorn patched = super.updatePowerStrength(id, delta);
+            append(OP_UPDATE, id, patched);
+            return patched;
+        }
+    }
+
+    @Override
+    public void delete(Unicorn entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error deleting entity: Entity has no ID");
+        }
+        synchronized (this)
+        {
+            ensureCapacity(0, "Error deleting entity: ");
+            super.delete(entity);
+            append(OP_DELETE, entity.getId(), null);
+        }
+    }
+
+    /***
+     * Writes a compacted snapshot of the current state and starts a new, empty log generation.
+     */
+    public synchronized void snapshot() throws DaoException
+    {
+        checkOpen("Error writing snapshot: ");
+        List<Unicorn> unicorns = getAll();
+        long nextGeneration = generation + 1;
+        int size = SNAPSHOT_HEADER_BYTES + 4;
+        for (Unicorn unicorn : unicorns)
+        {
+            size += 8 + UnicornCodec.encodedSize(unicorn);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(nextGeneration).putInt(getLastId()).putInt(unicorns.size());
+        for (Unicorn unicorn : unicorns)
+        {
+            buffer.putInt(4 + UnicornCodec.encodedSize(unicorn)).putInt(unicorn.getId());
+            UnicornCodec.encode(buffer, unicorn);
+        }
+        checksum.reset();
+        checksum.update(buffer.array(), SNAPSHOT_CRC_OFFSET, buffer.position() - SNAPSHOT_CRC_OFFSET);
+        buffer.putInt((int) checksum.getValue());
+        buffer.flip();
+
+        Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        catch (IOException e)
+        {
+            throw new DaoException("Error writing snapshot: " + e.getMessage(), e);
+        }
+        try
+        {
+            Files.move(tmp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            throw new DaoException("Error writing snapshot: " + e.getMessage(), e);
+        }
+        // A crash before the new log header is forced leaves an older log generation, which recovery ignores
+        resetLog(nextGeneration);
+        LOGGER.debug("Wrote snapshot of {} unicorns, log generation {}", unicorns.size(), nextGeneration);
+    }
+
+    /***
+     * Forces all appended records to disk, whatever the FsyncPolicy.
+     */
+    public synchronized void force()
+    {
+        if (closed || log.position() == forcedPosition)
+        {
+            return;
+        }
+        log.force(forcedPosition, log.position() - forcedPosition);
+        forcedPosition = log.position();
+        unforcedRecords = 0;
+    }
+
+    /***
+     * Compacts into a snapshot and releases the log, so the next start only has to read the snapshot.
+     */
+    @Override
+    public synchronized void close() throws DaoException
+    {
+        if (closed)
+        {
+            return;
+        }
+        if (fsyncScheduler != null)
+        {
+            fsyncScheduler.shutdownNow();
+        }
+        try
+        {
+            snapshot();
+        }
+        finally
+        {
+            closed = true;
+            try
+            {
+                logChannel.close();
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Error closing durable store log", e);
+            }
+        }
+    }
+
+    // Room is made before the map changes, so a compaction never includes the change and appending can't fail
+    // Encoded size once MemoryDAO has set the version, which callers may not have yet
+    private static int storedSize(Unicorn entity)
+    {
+        return UnicornCodec.encodedSize(entity) + (entity.getVersion() == null ? 4 : 0);
+    }
+
+    private void ensureCapacity(int encodedSize, String errorPrefix) throws DaoException
+    {
+        checkOpen(errorPrefix);
+        int recordSize = RECORD_HEADER_BYTES + RECORD_BODY_HEADER_BYTES + encodedSize;
+        if (recordSize > settings.logSizeBytes() - LOG_HEADER_BYTES)
+        {
+            throw new DaoException(errorPrefix + "Entity does not fit in the log");
+        }
+        boolean snapshotDue = settings.snapshotEveryRecords() > 0 && recordsSinceSnapshot >= settings.snapshotEveryRecords();
+        if (snapshotDue || log.remaining() < recordSize)
+        {
+            snapshot();
+        }
+    }
+
+    private void append(byte op, int id, Unicorn unicorn)
+    {
+        int start = log.position();
+        log.position(start + RECORD_HEADER_BYTES);
+        log.put(op).putInt(id);
+        if (unicorn != null)
+        {
+            UnicornCodec.encode(log, unicorn);
+        }
+        int bodyLength = log.position() - start - RECORD_HEADER_BYTES;
+        log.putInt(start, bodyLength);
+        log.putInt(start + 4, crc(checksum, log, start + RECORD_HEADER_BYTES, bodyLength, generation));
+        recordsSinceSnapshot++;
+
+        switch (settings.fsyncPolicy())
+        {
+            case EVERY_WRITE -> force();
+            case BATCHED ->
+            {
+                if (++unforcedRecords >= settings.fsyncBatchSize())
+                {
+                    force();
+                }
+            }
+            case INTERVAL ->
+            {
+                // Forced by the scheduler
+            }
+        }
+    }
+
+    private void resetLog(long newGeneration)
+    {
+        log.putInt(0, LOG_MAGIC).putInt(4, VERSION).putLong(8, newGeneration);
+        log.force(0, LOG_HEADER_BYTES);
+        log.position(LOG_HEADER_BYTES);
+        generation = newGeneration;
+        forcedPosition = LOG_HEADER_BYTES;
+        recordsSinceSnapshot = 0;
+        unforcedRecords = 0;
+    }
+
+    private void checkOpen(String errorPrefix) throws DaoException
+    {
+        if (closed)
+        {
+            throw new DaoException(errorPrefix + "Store is closed");
+        }
+    }
+
+    private void forceQuietly()
+    {
+        try
+        {
+            force();
+        }
+        catch (UncheckedIOException e)
+        {
+            LOGGER.error("Error forcing durable store log to disk", e);
+        }
+    }
+
+    // The generation is part of the checksum, so records left over from an earlier generation never match
+    private static int crc(CRC32C crc, ByteBuffer buffer, int offset, int length, long generation)
+    {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8)
+        {
+            crc.update((int) (generation >>> shift));
+        }
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /***
+     * State read back from the snapshot and the log tail. logPosition is -1 when the log has to be reset.
+     */
+    private record Recovery(Map<Integer, Unicorn> entities, int lastId, long generation, int logPosition, int replayedRecords)
+    {
+        static Recovery load(Path directory, DurabilitySettings settings) throws DaoException
+        {
+            try
+            {
+                Files.createDirectories(directory);
+                Map<Integer, Unicorn> entities = new HashMap<>();
+                int lastId = 0;
+                long generation = 0;
+
+                Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+                if (Files.exists(snapshotFile))
+                {
+                    try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ))
+                    {
+                        MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                        if (snapshot.getInt() != SNAPSHOT_MAGIC || snapshot.getInt() != VERSION)
+                        {
+                            throw new DaoException("Error recovering durable store: " + snapshotFile + " is not a snapshot");
+                        }
+                        // Check the header fields against the crc before trusting any of them
+                        boolean intact = snapshot.limit() >= SNAPSHOT_HEADER_BYTES + 4;
+                        if (intact)
+                        {
+                            CRC32C snapshotCrc = new CRC32C();
+                            snapshotCrc.update(snapshot.slice(SNAPSHOT_CRC_OFFSET, snapshot.limit() - SNAPSHOT_CRC_OFFSET - 4));
+                            intact = (int) snapshotCrc.getValue() == snapshot.getInt(snapshot.limit() - 4);
+                        }
+                        int count = intact ? snapshot.getInt(SNAPSHOT_HEADER_BYTES - 4) : -1;
+                        // Every entry takes at least its body length and ID
+                        if (count < 0 || count > (snapshot.limit() - SNAPSHOT_HEADER_BYTES - 4) / 8)
+                        {
+                            throw new DaoException("Error recovering durable store: " + snapshotFile + " is corrupt");
+                        }
+                        generation = snapshot.getLong();
+                        lastId = snapshot.getInt();
+                        snapshot.getInt(); // count
+                        for (int i = 0; i < count; i++)
+                        {
+                            snapshot.getInt(); // body length
+                            int id = snapshot.getInt();
+                            entities.put(id, UnicornCodec.decode(snapshot, id));
+                        }
+                    }
+                }
+
+                Path logFile = directory.resolve(LOG_FILE);
+                if (!Files.exists(logFile) || Files.size(logFile) < LOG_HEADER_BYTES)
+                {
+                    return new Recovery(entities, lastId, generation, -1, 0);
+                }
+                try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ))
+                {
+                    MappedByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), settings.logSizeBytes()));
+                    if (log.getInt() != LOG_MAGIC || log.getInt() != VERSION || log.getLong() != generation)
+                    {
+                        // Unformatted, or older than the snapshot, which already contains its records
+                        return new Recovery(entities, lastId, generation, -1, 0);
+                    }
+                    CRC32C crc = new CRC32C();
+                    int replayed = 0;
+                    while (log.remaining() >= RECORD_HEADER_BYTES + RECORD_BODY_HEADER_BYTES)
+                    {
+                        int start = log.position();
+                        int bodyLength = log.getInt();
+                        int expectedCrc = log.getInt();
+                        if (bodyLength < RECORD_BODY_HEADER_BYTES || bodyLength > log.remaining()
+                                || crc(crc, log, start + RECORD_HEADER_BYTES, bodyLength, generation) != expectedCrc)
+                        {
+                            log.position(start);
+                            break;
+                        }
+                        byte op = log.get();
+                        int id = log.getInt();
+                        switch (op)
+                        {
+                            case OP_CREATE, OP_UPDATE -> entities.put(id, UnicornCodec.decode(log, id));
+                            case OP_DELETE -> entities.remove(id);
+                            default -> throw new DaoException("Error recovering durable store: Unknown log record type " + op);
+                        }
+                        if (op == OP_CREATE)
+                        {
+                            lastId = Math.max(lastId, id);
+                        }
+                        log.position(start + RECORD_HEADER_BYTES + bodyLength);
+                        replayed++;
+                    }
+                    return new Recovery(entities, lastId, generation, log.position(), replayed);
+                }
+            }
+            catch (IOException e)
+            {
+                throw new DaoException("Error recovering durable store: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package dat.dao;
+
+import dat.config.HibernateConfig;
+import dat.dao.query.Query;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.jpa.AvailableHints;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/***
+ * JPA implementation of the DAO, using an EntityManager per operation from the injected EntityManagerFactory.
+ * Reads can use a separate read-only EntityManagerFactory, e.g. HibernateConfig.getReadOnlyEntityManagerFactory(),
+ * except within the read-your-writes window after a write, when they stay on the primary.
+ * getAll() and find() mark their queries cacheable; that only takes effect when HibernateConfig enables the query cache.
+ * The bulk operations (createAll, updateAll, deleteAll) run in one StatelessSession and transaction each, so they are
+ * sent in JDBC batches of hibernate.jdbc.batch_size and never grow a persistence context.
+ * Updates are checked against the @Version of Unicorn; entities without a version take the stored one, so
+ * they overwrite whatever is there.
+ */
+public class EntityManagerDAO implements ICrudDAO<Unicorn>, IPatchDAO<Unicorn>, IVersionedDAO<Unicorn>
+{
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    private final EntityManagerFactory emf;
+    private final EntityManagerFactory readEmf;
+    private final ReadYourWrites recentWrites;
+    private final int fetchSize;
+
+    public EntityManagerDAO()
+    {
+        this(HibernateConfig.getEntityManagerFactory());
+    }
+
+    public EntityManagerDAO(EntityManagerFactory emf)
+    {
+        this(emf, DEFAULT_FETCH_SIZE);
+    }
+
+    public EntityManagerDAO(EntityManagerFactory emf, int fetchSize)
+    {
+        this(emf, emf, Duration.ZERO, fetchSize);
+    }
+
+    /***
+     * @param emf EntityManagerFactory for writes, against the primary
+     * @param readEmf EntityManagerFactory for reads, against a replica
+     * @param readYourWrites How long reads after a write stay on the primary, Duration.ZERO to always use readEmf
+     */
+    public EntityManagerDAO(EntityManagerFactory emf, EntityManagerFactory readEmf, Duration readYourWrites, int fetchSize)
+    {
+        if (fetchSize < 1)
+        {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.emf = emf;
+        this.readEmf = readEmf;
+        this.recentWrites = new ReadYourWrites(readYourWrites);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public Unicorn create(Unicorn unicorn) throws DaoException
+    {
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.persist(unicorn);
+            em.getTransaction().commit();
+            recentWrites.markWritten(unicorn.getId());
+            return unicorn;
+        }
+        catch (PersistenceException e)
+        {
+            throw new DaoException("Error creating entity: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Unicorn getById(int id) throws DaoException
+    {
+        Unicorn unicorn;
+        try (EntityManager em = readFactory(recentWrites.isSticky(id)).createEntityManager())
+        {
+            unicorn = em.find(Unicorn.class, id);
+        }
+        catch (PersistenceException e)
+        {
+            throw new DaoException("Error fetching entity by ID: " + e.getMessage(), e);
+        }
+        if (unicorn == null)
+        {
+            throw new DaoException("Error fetching entity by ID: Entity with this ID does not exist");
+        }
+        return unicorn;
+    }
+
+    @Override
+    public List<Unicorn> getAll() throws DaoException
+    {
+        try (EntityManager em = readFactory(recentWrites.isAnySticky()).createEntityManager())
+        {
+            return em.createQuery("SELECT u FROM Unicorn u", Unicorn.class)
+                    .setHint(AvailableHints.HINT_CACHEABLE, true)
+                    .getResultList();
+        }
+        catch (PersistenceException e)
+        {
+            throw new DaoException("Error fetching all entities: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * Streams through a scrollable cursor. Entities are read-only and never enter the persistence context,
+     * so memory stays flat; the EntityManager and its connection are released when the stream is closed.
+     */
+    @Override
+    public Stream<Unicorn> streamAll() throws DaoException
+    {
+        EntityManager em = readFactory(recentWrites.isAnySticky()).createEntityManager();
+        try
+        {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            return em.createQuery("SELECT u FROM Unicorn u", Unicorn.class)
+                    .setHint(AvailableHints.HINT_FETCH_SIZE, fetchSize)
+                    .setHint(AvailableHints.HINT_READ_ONLY, true)
+                    .getResultStream()
+                    .peek(em::detach)
+                    .onClose(() ->
+                    {
+                        try (em)
+                        {
+                            if (tx.isActive())
+                            {
+                                tx.rollback();
+                            }
+                        }
+                    });
+        }
+        catch (PersistenceException e)
+        {
+            em.close();
+            throw new DaoException("Error streaming entities: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<Unicorn> find(Query<Unicorn> query) throws DaoException
+    {
+        List<Object> params = new ArrayList<>();
+        String jpql = "SELECT u FROM Unicorn u" + query.render(field -> "u." + field.attribute(), position -> "?" + position, params, false);
+        try (EntityManager em = readFactory(recentWrites.isAnySticky()).createEntityManager())
+        {
+            TypedQuery<Unicorn> typedQuery = em.createQuery(jpql, Unicorn.class)
+                    .setHint(AvailableHints.HINT_CACHEABLE, true);
+            for (int i = 0; i < params.size(); i++)
+            {
+                typedQuery.setParameter(i + 1, params.get(i));
+            }
+            if (query.getLimit() > 0)
+            {
+                typedQuery.setMaxResults(query.getLimit());
+            }
+            return typedQuery.getResultList();
+        }
+        catch (PersistenceException e)
+        {
+            throw new DaoException("Error querying entities: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Unicorn update(Unicorn unicorn) throws DaoException
+    {
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            Unicorn managed = unicorn.getId() == null ? null : em.find(Unicorn.class, unicorn.getId());
+            if (managed == null)
+            {
+                em.getTransaction().rollback();
+                throw new DaoException("Error updating entity: Entity with this ID does not exist");
+            }
+            if (unicorn.getVersion() != null && !unicorn.getVersion().equals(managed.getVersion()))
+            {
+                em.getTransaction().rollback();
+                throw new OptimisticLockDaoException(String.format(
+                        "Error updating entity: Entity was changed concurrently, version %d is now %d", unicorn.getVersion(), managed.getVersion()));
+            }
+            // Copied onto the managed entity, so the caller's entity only changes once the commit went through
+            managed.setName(unicorn.getName());
+            managed.setAge(unicorn.getAge());
+            managed.setColor(unicorn.getColor());
+            managed.setPowerStrength(unicorn.getPowerStrength());
+            em.getTransaction().commit();
+            unicorn.setVersion(managed.getVersion());
+            recentWrites.markWritten(managed.getId());
+            return managed;
+        }
+        catch (OptimisticLockException e)
+        {
+            throw new OptimisticLockDaoException("Error updating entity: Entity was changed concurrently", e);
+        }
+        catch (PersistenceException e)
+        {
+            throw new DaoException("Error updating entity: " + e.getMessage(), e);
+        }
+    }
+
+    /***
+     * A JPQL bulk UPDATE adding delta in the database, so concurrent patches add up; Hibernate evicts
+     * the second-level cache region for it.
+     */
+    @Override
+    public Unicorn updatePowerStrength(int id, double delta) throws DaoException
+    {
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            int updated = em.createQuery("UPDATE Unicorn u SET u.powerStrength = COALESCE(u.powerStrength, 0) + :delta, u.version = u.version + 1 WHERE u.id = :id")
+                    .setParameter("delta", delta)
+                    .setParameter("id", id)
+                    .executeUpdate();
+            if (updated == 0)
+            {
+                em.getTransaction().rollback();
+                throw new DaoException("Error updating entity: Entity with this ID does not exist");
+            }
+            Unicorn patched = em.find(Unicorn.class, id);
+            em.getTransaction().commit();
+            recentWrites.markWritten(id);
+            return patched;
+        }
+        catch (PersistenceException e)
+        {
+            throw new DaoException("Error updating entity: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(Unicorn unicorn) throws DaoException
+    {
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            Unicorn managed = unicorn.getId() == null ? null : em.find(Unicorn.class, unicorn.getId());
+            if (managed == null)
+            {
+                em.getTransaction().rollback();
+                throw new DaoException("Error deleting entity: Entity with this ID does not exist");
+            }
+            em.remove(managed);
+            em.getTransaction().commit();
+            recentWrites.markWritten(managed.getId());
+        }
+        catch (PersistenceException e)
+        {
+            throw new DaoException("Error deleting entity: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<Unicorn> createAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        inStatelessSession(unicorns, session -> unicorns.forEach(session::insert), "Error creating entities: ");
+        return new ArrayList<>(unicorns);
+    }
+
+    /***
+     * Versioned entities are checked like update(); the stateless session writes the incremented versions back
+     * into the entities and restores them if the transaction rolls back.
+     */
+    @Override
+    public List<Unicorn> updateAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        requireIds(unicorns, "Error updating entities: ");
+        List<Integer> versions = unicorns.stream().map(Unicorn::getVersion).toList();
+        try
+        {
+            inStatelessSession(unicorns, session ->
+            {
+                fillMissingVersions(session, unicorns, "Error updating entities: ");
+                unicorns.forEach(session::update);
+            }, "Error updating entities: ");
+        }
+        catch (DaoException e)
+        {
+            Iterator<Integer> previous = versions.iterator();
+            unicorns.forEach(unicorn -> unicorn.setVersion(previous.next()));
+            throw e;
+        }
+        return new ArrayList<>(unicorns);
+    }
+
+    @Override
+    public void deleteAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        requireIds(unicorns, "Error deleting entities: ");
+        inStatelessSession(unicorns, session ->
+        {
+            fillMissingVersions(session, unicorns, "Error deleting entities: ");
+            unicorns.forEach(session::delete);
+        }, "Error deleting entities: ");
+    }
+
+    /***
+     * A JPQL bulk UPDATE per entity in one transaction, which sets the given version instead of letting
+     * Hibernate increment it; a missing row or a newer stored version rolls back the whole call.
+     */
+    @Override
+    public void writeAll(Collection<Unicorn> unicorns) throws DaoException
+    {
+        requireIds(unicorns, "Error writing entities: ");
+        if (unicorns.stream().anyMatch(unicorn -> unicorn.getVersion() == null))
+        {
+            throw new DaoException("Error writing entities: Entity has no version");
+        }
+        inStatelessSession(unicorns, session ->
+        {
+            for (Unicorn unicorn : unicorns)
+            {
+                int updated = session.createMutationQuery("UPDATE Unicorn u SET u.name = :name, u.age = :age, u.color = :color, "
+                                + "u.powerStrength = :powerStrength, u.version = :version WHERE u.id = :id AND u.version <= :version")
+                        .setParameter("name", unicorn.getName())
+                        .setParameter("age", unicorn.getAge())
+                        .setParameter("color", unicorn.getColor())
+                        .setParameter("powerStrength", unicorn.getPowerStrength())
+                        .setParameter("version", unicorn.getVersion())
+                        .setParameter("id", unicorn.getId())
+                        .executeUpdate();
+                if (updated == 0)
+                {
+                    Integer stored = session.createQuery("SELECT u.version FROM Unicorn u WHERE u.id = :id", Integer.class)
+                            .setParameter("id", unicorn.getId())
+                            .uniqueResult();
+                    if (stored == null)
+                    {
+                        throw new DaoException("Error writing entities: Entity with this ID does not exist");
+                    }
+                    throw new OptimisticLockDaoException(String.format(
+                            "Error writing entities: Entity %d has newer version %d than %d", unicorn.getId(), stored, unicorn.getVersion()));
+                }
+            }
+        }, "Error writing entities: ");
+    }
+
+    /***
+     * Runs the work in one transaction of a StatelessSession, which bypasses the second-level cache; the written
+     * entities and cached query results are evicted after the commit instead.
+     */
+    private void inStatelessSession(Collection<Unicorn> unicorns, StatelessWork work, String errorPrefix) throws DaoException
+    {
+        try (StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession())
+        {
+            Transaction tx = session.beginTransaction();
+            try
+            {
+                work.run(session);
+                tx.commit();
+            }
+            catch (RuntimeException | DaoException e)
+            {
+                if (tx.isActive())
+                {
+                    tx.rollback();
+                }
+                throw e;
+            }
+        }
+        catch (StaleStateException | OptimisticLockException e)
+        {
+            throw new OptimisticLockDaoException(errorPrefix + "Entity was changed or deleted concurrently", e);
+        }
+        catch (PersistenceException e)
+        {
+            throw new DaoException(errorPrefix + e.getMessage(), e);
+        }
+        finally
+        {
+            unicorns.stream()
+                    .filter(unicorn -> unicorn.getId() != null)
+                    .forEach(unicorn -> emf.getCache().evict(Unicorn.class, unicorn.getId()));
+            emf.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+        }
+        unicorns.forEach(unicorn -> recentWrites.markWritten(unicorn.getId()));
+    }
+
+    // Unversioned entities take the stored version, so the stateless session's version check passes for them
+    private static void fillMissingVersions(StatelessSession session, Collection<Unicorn> unicorns, String errorPrefix) throws DaoException
+    {
+        List<Integer> ids = unicorns.stream().filter(unicorn -> unicorn.getVersion() == null).map(Unicorn::getId).toList();
+        if (ids.isEmpty())
+        {
+            return;
+        }
+        Map<Integer, Integer> versions = new HashMap<>();
+        session.createQuery("SELECT u.id, u.version FROM Unicorn u WHERE u.id IN :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> versions.put((Integer) row[0], (Integer) row[1]));
+        for (Unicorn unicorn : unicorns)
+        {
+            if (unicorn.getVersion() == null)
+            {
+                Integer version = versions.get(unicorn.getId());
+                if (version == null)
+                {
+                    throw new DaoException(errorPrefix + "Entity with this ID does not exist");
+                }
+                unicorn.setVersion(version);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatelessWork
+    {
+        void run(StatelessSession session) throws DaoException;
+    }
+
+    private static void requireIds(Collection<Unicorn> unicorns, String errorPrefix) throws DaoException
+    {
+        for (Unicorn unicorn : unicorns)
+        {
+            if (unicorn.getId() == null)
+            {
+                throw new DaoException(errorPrefix + "Entity has no ID");
+            }
+        }
+    }
+
+    private EntityManagerFactory readFactory(boolean sticky)
+    {
+        return sticky ? emf : readEmf;
+    }
+}
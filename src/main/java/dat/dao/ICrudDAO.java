@@ -0,0 +1,76 @@
+package dat.dao;
+
+import dat.dao.query.Query;
+import dat.exceptions.DaoException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ICrudDAO<T>
+{
+    T create(T entity) throws DaoException;
+
+    T getById(int id) throws DaoException;
+
+    List<T> getAll() throws DaoException;
+
+    T update(T entity) throws DaoException;
+
+    void delete(T entity) throws DaoException;
+
+    /***
+     * Streams all entities without requiring the whole table on the heap at once.
+     * The stream holds backend resources (connections, cursors) and must be closed, e.g. with try-with-resources.
+     * The default falls back to getAll() for backends that already hold everything in memory.
+     */
+    default Stream<T> streamAll() throws DaoException
+    {
+        return getAll().stream();
+    }
+
+    /***
+     * Returns one page of entities matching the query, in the query's sort order.
+     * Database backends push the query down to SQL; the default evaluates it in memory over streamAll().
+     */
+    default List<T> find(Query<T> query) throws DaoException
+    {
+        try (Stream<T> entities = streamAll())
+        {
+            return query.apply(entities);
+        }
+    }
+
+    /***
+     * Creates all entities, assigning their IDs in iteration order.
+     * Backends that can batch writes should override this; the default falls back to create() per entity.
+     */
+    default List<T> createAll(Collection<T> entities) throws DaoException
+    {
+        List<T> created = new ArrayList<>(entities.size());
+        for (T entity : entities)
+        {
+            created.add(create(entity));
+        }
+        return created;
+    }
+
+    default List<T> updateAll(Collection<T> entities) throws DaoException
+    {
+        List<T> updated = new ArrayList<>(entities.size());
+        for (T entity : entities)
+        {
+            updated.add(update(entity));
+        }
+        return updated;
+    }
+
+    default void deleteAll(Collection<T> entities) throws DaoException
+    {
+        for (T entity : entities)
+        {
+            delete(entity);
+        }
+    }
+}
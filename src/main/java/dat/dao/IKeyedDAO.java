@@ -0,0 +1,34 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/***
+ * Creates entities under IDs assigned outside the backend, e.g. by the IdAllocator of a ShardedDAO,
+ * instead of letting the backend generate them.
+ */
+public interface IKeyedDAO<T extends Unicorn>
+{
+    /***
+     * Creates the entity under the ID it carries, with version 0.
+     * @throws DaoException if the entity has no ID or the ID is taken
+     */
+    T insert(T entity) throws DaoException;
+
+    /***
+     * Backends that can batch writes should override this; the default falls back to insert() per entity.
+     */
+    default List<T> insertAll(Collection<T> entities) throws DaoException
+    {
+        List<T> inserted = new ArrayList<>(entities.size());
+        for (T entity : entities)
+        {
+            inserted.add(insert(entity));
+        }
+        return inserted;
+    }
+}
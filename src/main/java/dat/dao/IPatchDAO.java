@@ -0,0 +1,17 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+
+/***
+ * Field-level patches that the backend applies atomically, without the read-modify-write of update(),
+ * so concurrent patches of the same entity never conflict or get lost.
+ */
+public interface IPatchDAO<T extends Unicorn>
+{
+    /***
+     * Adds delta to the power strength and increments the version.
+     * @return the entity as it is after the patch
+     */
+    T updatePowerStrength(int id, double delta) throws DaoException;
+}
@@ -0,0 +1,22 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+
+import java.util.Collection;
+
+/***
+ * Writes entities with the version they carry instead of incrementing the stored one, for tiers that assign
+ * versions themselves, e.g. TieredDAO, so the backend's version stays that of the tier. A write only applies
+ * while the stored version is not newer than the entity's: a retried write is harmless, and an older state
+ * never overwrites a newer one.
+ */
+public interface IVersionedDAO<T extends Unicorn>
+{
+    /***
+     * @throws OptimisticLockDaoException if a stored version is newer
+     * @throws DaoException if an entity has no ID or version, or its ID does not exist
+     */
+    void writeAll(Collection<T> entities) throws DaoException;
+}
@@ -0,0 +1,25 @@
+package dat.dao;
+
+import dat.exceptions.DaoException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Hands out IDs that are unique across all shards of a ShardedDAO, so no shard generates its own.
+ * Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface IdAllocator
+{
+    int nextId() throws DaoException;
+
+    /***
+     * In-process counter, for shards that are only written through this JVM, e.g. MemoryDAOs in tests.
+     * @param lastId the highest ID in use so far
+     */
+    static IdAllocator local(int lastId)
+    {
+        AtomicInteger next = new AtomicInteger(lastId);
+        return next::incrementAndGet;
+    }
+}
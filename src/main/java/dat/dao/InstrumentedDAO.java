@@ -0,0 +1,253 @@
+package dat.dao;
+
+import dat.dao.query.Query;
+import dat.exceptions.DaoException;
+import dat.metrics.LatencyHistogram;
+import dat.metrics.MetricsRegistry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/***
+ * Decorator that records the latency of every DAO call in a histogram named "<prefix>.<operation>" and
+ * counts failed calls in "<prefix>.<operation>.errors". Metrics are resolved once in the constructor,
+ * so a call only adds two nanoTime reads and a few atomic increments.
+ */
+public class InstrumentedDAO<T> implements ICrudDAO<T>
+{
+    private final ICrudDAO<T> delegate;
+    private final Operation create;
+    private final Operation getById;
+    private final Operation getAll;
+    private final Operation streamAll;
+    private final Operation find;
+    private final Operation update;
+    private final Operation delete;
+    private final Operation createAll;
+    private final Operation updateAll;
+    private final Operation deleteAll;
+
+    public InstrumentedDAO(ICrudDAO<T> delegate, String prefix)
+    {
+        this(delegate, prefix, MetricsRegistry.getInstance());
+    }
+
+    public InstrumentedDAO(ICrudDAO<T> delegate, String prefix, MetricsRegistry registry)
+    {
+        this.delegate = delegate;
+        this.create = new Operation(registry, prefix + ".create");
+        this.getById = new Operation(registry, prefix + ".getById");
+        this.getAll = new Operation(registry, prefix + ".getAll");
+        this.streamAll = new Operation(registry, prefix + ".streamAll");
+        this.find = new Operation(registry, prefix + ".find");
+        this.update = new Operation(registry, prefix + ".update");
+        this.delete = new Operation(registry, prefix + ".delete");
+        this.createAll = new Operation(registry, prefix + ".createAll");
+        this.updateAll = new Operation(registry, prefix + ".updateAll");
+        this.deleteAll = new Operation(registry, prefix + ".deleteAll");
+    }
+
+    @Override
+    public T create(T entity) throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return delegate.create(entity);
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            create.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            create.latency.recordSince(start);
+        }
+    }
+
+    @Override
+    public T getById(int id) throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return delegate.getById(id);
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            getById.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            getById.latency.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<T> getAll() throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return delegate.getAll();
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            getAll.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            getAll.latency.recordSince(start);
+        }
+    }
+
+    /***
+     * Records the time until the stream is closed, which includes the time the caller spends consuming it.
+     */
+    @Override
+    public Stream<T> streamAll() throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return delegate.streamAll().onClose(() -> streamAll.latency.recordSince(start));
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            streamAll.errors.increment();
+            streamAll.latency.recordSince(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<T> find(Query<T> query) throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return delegate.find(query);
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            find.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            find.latency.recordSince(start);
+        }
+    }
+
+    @Override
+    public T update(T entity) throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return delegate.update(entity);
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            update.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            update.latency.recordSince(start);
+        }
+    }
+
+    @Override
+    public void delete(T entity) throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            delegate.delete(entity);
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            delete.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            delete.latency.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<T> createAll(Collection<T> entities) throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return delegate.createAll(entities);
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            createAll.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            createAll.latency.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<T> updateAll(Collection<T> entities) throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return delegate.updateAll(entities);
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            updateAll.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            updateAll.latency.recordSince(start);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<T> entities) throws DaoException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            delegate.deleteAll(entities);
+        }
+        catch (DaoException | RuntimeException e)
+        {
+            deleteAll.errors.increment();
+            throw e;
+        }
+        finally
+        {
+            deleteAll.latency.recordSince(start);
+        }
+    }
+
+    private static final class Operation
+    {
+        final LatencyHistogram latency;
+        final LongAdder errors;
+
+        Operation(MetricsRegistry registry, String name)
+        {
+            this.latency = registry.histogram(name);
+            this.errors = registry.counter(name + ".errors");
+        }
+    }
+}
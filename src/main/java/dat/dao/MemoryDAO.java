@@ -0,0 +1,331 @@
+package dat.dao;
+
+import dat.dao.index.SecondaryIndex;
+import dat.dao.query.Query;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+import dat.utils.ConcurrentIntObjectMap;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/***
+ * Thread-safe in-memory DAO. Entities live in a primitive-keyed concurrent map, so reads never lock
+ * and writes only contend when they hit the same segment. IDs come from an atomic sequence.
+ * Optional secondary indexes (withIndex) are updated under the same segment lock as the entity and
+ * let find() start from the matching ids instead of scanning every entity.
+ * The map only holds copies: writes store a copy of the caller's entity and reads hand out copies, so two
+ * callers that read the same entity never share an instance. Updates compare-and-set on the entity version
+ * under the segment lock, so a stale update fails instead of overwriting a newer one.
+ */
+public class MemoryDAO<T extends Unicorn> implements ICrudDAO<T>, IPatchDAO<T>, IKeyedDAO<T>, IVersionedDAO<T>
+{
+    private final ConcurrentIntObjectMap<T> memoryDB = new ConcurrentIntObjectMap<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
+    private final UnaryOperator<T> copier;
+    private final List<SecondaryIndex<T, ?>> indexes = new CopyOnWriteArrayList<>();
+    private final ConcurrentIntObjectMap.ChangeListener<T> indexUpdater = (id, oldEntity, newEntity) ->
+    {
+        for (SecondaryIndex<T, ?> index : indexes)
+        {
+            index.update(id, newEntity);
+        }
+    };
+
+    public MemoryDAO()
+    {
+        this(Map.of());
+    }
+
+    /***
+     * @param copier copies an entity including ID and version, e.g. the copy constructor of a Unicorn subtype
+     */
+    public MemoryDAO(UnaryOperator<T> copier)
+    {
+        this(Map.of(), 0, copier);
+    }
+
+    public MemoryDAO(Map<Integer, T> memoryDB)
+    {
+        this(memoryDB, 0);
+    }
+
+    /***
+     * @param lastId highest ID handed out so far, so IDs of deleted entities are not reused
+     */
+    protected MemoryDAO(Map<Integer, T> memoryDB, int lastId)
+    {
+        this(memoryDB, lastId, unicornCopier());
+    }
+
+    protected MemoryDAO(Map<Integer, T> memoryDB, int lastId, UnaryOperator<T> copier)
+    {
+        this.copier = copier;
+        memoryDB.forEach((id, entity) -> this.memoryDB.put(id, copier.apply(entity)));
+        int maxId = memoryDB.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        idSequence.accumulateAndGet(Math.max(maxId, lastId), Math::max);
+    }
+
+    /***
+     * @return the highest ID handed out so far
+     */
+    protected int getLastId()
+    {
+        return idSequence.get();
+    }
+
+    /***
+     * Adds a secondary index and fills it from the current entities. Declare indexes before the DAO is
+     * shared between threads, e.g. {@code new MemoryDAO<Unicorn>().withIndex(SecondaryIndex.hash(UnicornFields.COLOR))}.
+     */
+    public MemoryDAO<T> withIndex(SecondaryIndex<T, ?> index)
+    {
+        memoryDB.forEach(index::update);
+        indexes.add(index);
+        return this;
+    }
+
+    @Override
+    public T create(T entity) throws DaoException
+    {
+        if (entity == null)
+        {
+            throw new DaoException("Error creating entity: Entity is null");
+        }
+        int id = idSequence.incrementAndGet();
+        entity.setId(id);
+        entity.setVersion(0);
+        memoryDB.put(id, copier.apply(entity), indexUpdater);
+        return entity;
+    }
+
+    @Override
+    public T insert(T entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error creating entity: Entity has no ID");
+        }
+        idSequence.accumulateAndGet(entity.getId(), Math::max);
+        // The caller's entity only gets its version once the ID turned out to be free
+        T stored = copier.apply(entity);
+        stored.setVersion(0);
+        if (memoryDB.putIfAbsent(entity.getId(), stored, indexUpdater) != null)
+        {
+            throw new DaoException("Error creating entity: Entity with ID " + entity.getId() + " already exists");
+        }
+        entity.setVersion(0);
+        return entity;
+    }
+
+    /***
+     * Stores the entity under the ID it already has, replacing any entity with that ID, e.g. for entities loaded
+     * from another store. create() never hands out that ID afterwards.
+     */
+    public T put(T entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error storing entity: Entity has no ID");
+        }
+        idSequence.accumulateAndGet(entity.getId(), Math::max);
+        memoryDB.put(entity.getId(), copier.apply(entity), indexUpdater);
+        return entity;
+    }
+
+    /***
+     * @return a copy of the entity, or null instead of an exception if there is none
+     */
+    public T getIfPresent(int id)
+    {
+        T entity = memoryDB.get(id);
+        return entity != null ? copier.apply(entity) : null;
+    }
+
+    /***
+     * Removes the entity if present, without the checks of delete(), e.g. to drop it from a cache tier.
+     * @return the removed entity, or null
+     */
+    public T evict(int id)
+    {
+        return memoryDB.remove(id, indexUpdater);
+    }
+
+    public int size()
+    {
+        return memoryDB.size();
+    }
+
+    @Override
+    public T getById(int id) throws DaoException
+    {
+        T entity = memoryDB.get(id);
+        if (entity == null)
+        {
+            throw new DaoException("Error fetching entity by ID: Entity with this ID does not exist");
+        }
+        return copier.apply(entity);
+    }
+
+    @Override
+    public List<T> getAll() throws DaoException
+    {
+        return memoryDB.values().stream().map(copier).toList();
+    }
+
+    @Override
+    public T update(T entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error updating entity: Entity has no ID");
+        }
+        Integer expectedVersion = entity.getVersion();
+        T replacement = copier.apply(entity);
+        T stored = memoryDB.computeIfPresent(entity.getId(), current ->
+        {
+            int currentVersion = versionOf(current);
+            if (expectedVersion != null && expectedVersion != currentVersion)
+            {
+                return current;
+            }
+            replacement.setVersion(currentVersion + 1);
+            return replacement;
+        }, indexUpdater);
+        if (stored == null)
+        {
+            throw new DaoException("Error updating entity: Entity with this ID does not exist");
+        }
+        if (stored != replacement)
+        {
+            throw new OptimisticLockDaoException(String.format(
+                    "Error updating entity: Entity was changed concurrently, version %d is now %d", expectedVersion, versionOf(stored)));
+        }
+        entity.setVersion(replacement.getVersion());
+        return entity;
+    }
+
+    /***
+     * Stores each entity as given, under its segment lock; unlike the database backends, entities before a
+     * rejected one stay written.
+     */
+    @Override
+    public void writeAll(Collection<T> entities) throws DaoException
+    {
+        for (T entity : entities)
+        {
+            if (entity == null || entity.getId() == null || entity.getVersion() == null)
+            {
+                throw new DaoException("Error writing entities: Entity has no ID or version");
+            }
+            int version = entity.getVersion();
+            T replacement = copier.apply(entity);
+            T stored = memoryDB.computeIfPresent(entity.getId(), current -> versionOf(current) <= version ? replacement : current, indexUpdater);
+            if (stored == null)
+            {
+                throw new DaoException("Error writing entities: Entity with this ID does not exist");
+            }
+            if (stored != replacement)
+            {
+                throw new OptimisticLockDaoException(String.format(
+                        "Error writing entities: Entity %d has newer version %d than %d", entity.getId(), versionOf(stored), version));
+            }
+        }
+    }
+
+    @Override
+    public T updatePowerStrength(int id, double delta) throws DaoException
+    {
+        T patched = memoryDB.computeIfPresent(id, current ->
+        {
+            T copy = copier.apply(current);
+            // A missing power strength counts as 0, as in the SQL backends
+            copy.setPowerStrength((current.getPowerStrength() != null ? current.getPowerStrength() : 0.0) + delta);
+            copy.setVersion(versionOf(current) + 1);
+            return copy;
+        }, indexUpdater);
+        if (patched == null)
+        {
+            throw new DaoException("Error updating entity: Entity with this ID does not exist");
+        }
+        return copier.apply(patched);
+    }
+
+    @Override
+    public void delete(T entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error deleting entity: Entity has no ID");
+        }
+        if (memoryDB.remove(entity.getId(), indexUpdater) == null)
+        {
+            throw new DaoException("Error deleting entity: Entity with this ID does not exist");
+        }
+    }
+
+    /***
+     * Uses an index for the first condition one can answer, equality before ranges, and evaluates the
+     * full query over the current version of those entities only. Without a usable index it scans.
+     */
+    @Override
+    public List<T> find(Query<T> query) throws DaoException
+    {
+        Stream<Integer> candidates = null;
+        for (int pass = 0; pass < 2 && candidates == null; pass++)
+        {
+            for (Query.Condition<T> condition : query.getConditions())
+            {
+                boolean equality = condition.operator() == Query.Operator.EQ;
+                if ((pass == 0) != equality)
+                {
+                    continue;
+                }
+                candidates = lookup(condition);
+                if (candidates != null)
+                {
+                    break;
+                }
+            }
+        }
+        if (candidates == null)
+        {
+            return ICrudDAO.super.find(query);
+        }
+        // distinct: an entity moving between index keys can be listed under both for a moment
+        return query.apply(candidates.distinct().map(memoryDB::get).filter(Objects::nonNull)).stream().map(copier).toList();
+    }
+
+    // The default copier, for a MemoryDAO<Unicorn>; a DAO of a subtype passes the subtype's copy constructor
+    @SuppressWarnings("unchecked")
+    private static <T extends Unicorn> UnaryOperator<T> unicornCopier()
+    {
+        return entity -> (T) new Unicorn(entity);
+    }
+
+    // Entities handed to the constructor may carry no version yet
+    private static int versionOf(Unicorn entity)
+    {
+        return entity.getVersion() != null ? entity.getVersion() : 0;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Stream<Integer> lookup(Query.Condition<T> condition)
+    {
+        for (SecondaryIndex<T, ?> index : indexes)
+        {
+            if (index.getField().equals(condition.field()) && index.supports(condition.operator()))
+            {
+                return ((SecondaryIndex) index).lookup(condition.operator(), (Comparable) condition.value());
+            }
+        }
+        return null;
+    }
+}
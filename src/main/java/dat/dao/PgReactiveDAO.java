@@ -0,0 +1,414 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.file.FileSystemOptions;
+import io.vertx.pgclient.PgBuilder;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * ReactiveCrudDAO on the Vert.x Postgres client, which speaks the wire protocol on a few event-loop threads
+ * instead of holding a thread per call. Single-row calls share a small set of connections and are pipelined:
+ * each connection carries up to pipeliningLimit queries before their results are back, so thousands of calls
+ * can be in flight on a handful of connections. Calls beyond that wait in a bounded queue.
+ * <p>
+ * streamAll() reads through a server-side cursor on a connection of its own, fetching only as many rows as
+ * the subscriber has requested. Uses the same table and version semantics as DatabaseDAO, but no ConnectionPool:
+ * JDBC connections are blocking and cannot be shared with this client. New rows get their IDs from blocks of the
+ * pooled sequence, as SequenceIdAllocator hands them out for DatabaseDAO, one nextval per block.
+ */
+public class PgReactiveDAO implements ReactiveCrudDAO<Unicorn>, AutoCloseable
+{
+    private static final String INSERT_SQL = "INSERT INTO unicorns (unicorn_name, age, color, powerstrength, id) VALUES ($1, $2, $3, $4, $5)";
+    private static final String RESERVE_IDS_SQL = "SELECT nextval('unicorns_pooled_seq'), seqincrement FROM pg_sequence WHERE seqrelid = 'unicorns_pooled_seq'::regclass";
+    private static final String SELECT_BY_ID_SQL = "SELECT id, unicorn_name, age, color, powerstrength, version FROM unicorns WHERE id = $1";
+    private static final String SELECT_ALL_SQL = "SELECT id, unicorn_name, age, color, powerstrength, version FROM unicorns";
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM unicorns WHERE id = $1";
+    private static final String UPDATE_SQL = "UPDATE unicorns SET unicorn_name = $1, age = $2, color = $3, powerstrength = $4, version = version + 1 "
+            + "WHERE id = $5 AND version = COALESCE($6, version) RETURNING version";
+    private static final String DELETE_SQL = "DELETE FROM unicorns WHERE id = $1";
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final Vertx vertx;
+    private final SqlClient client;
+    private final Pool streamPool;
+    private final int fetchSize;
+    // Rest of the ID block reserved last, guarded by this
+    private int nextId;
+    private int idLimit;
+
+    public PgReactiveDAO(PgConnectOptions connectOptions, ReactiveSettings settings)
+    {
+        // No file caching: the DAO reads no files, and Vert.x would otherwise create a .vertx directory
+        this.vertx = Vertx.vertx(new VertxOptions().setFileSystemOptions(
+                new FileSystemOptions().setFileCachingEnabled(false).setClassPathResolvingEnabled(false)));
+        PgConnectOptions options = new PgConnectOptions(connectOptions)
+                .setPipeliningLimit(settings.pipeliningLimit())
+                .setCachePreparedStatements(true);
+        this.client = PgBuilder.client()
+                .with(new PoolOptions().setMaxSize(settings.connections()).setMaxWaitQueueSize(settings.maxWaitQueue()))
+                .connectingTo(options)
+                .using(vertx)
+                .build();
+        this.streamPool = PgBuilder.pool()
+                .with(new PoolOptions().setMaxSize(settings.streamConnections()).setMaxWaitQueueSize(settings.maxWaitQueue()))
+                .connectingTo(options)
+                .using(vertx)
+                .build();
+        this.fetchSize = settings.fetchSize();
+    }
+
+    @Override
+    public CompletionStage<Unicorn> create(Unicorn unicorn)
+    {
+        if (unicorn == null)
+        {
+            return Future.<Unicorn>failedFuture(new DaoException("Error creating entity: Entity is null")).toCompletionStage();
+        }
+        return complete(nextId().compose(id -> client.preparedQuery(INSERT_SQL)
+                .execute(Tuple.of(unicorn.getName(), unicorn.getAge(), unicorn.getColor(), unicorn.getPowerStrength(), id))
+                .map(rows ->
+                {
+                    unicorn.setId(id);
+                    unicorn.setVersion(0);
+                    return unicorn;
+                })), "Error creating entity: ");
+    }
+
+    @Override
+    public CompletionStage<Unicorn> getById(int id)
+    {
+        return complete(client.preparedQuery(SELECT_BY_ID_SQL).execute(Tuple.of(id)).compose(rows -> rows.size() == 0
+                ? Future.failedFuture(new DaoException("Error fetching entity by ID: Entity with this ID does not exist"))
+                : Future.succeededFuture(toUnicorn(rows.iterator().next()))), "Error fetching entity by ID: ");
+    }
+
+    @Override
+    public CompletionStage<List<Unicorn>> getAll()
+    {
+        return complete(client.preparedQuery(SELECT_ALL_SQL).execute().map(rows ->
+        {
+            List<Unicorn> unicorns = new ArrayList<>(rows.size());
+            rows.forEach(row -> unicorns.add(toUnicorn(row)));
+            return unicorns;
+        }), "Error fetching all entities: ");
+    }
+
+    @Override
+    public Flow.Publisher<Unicorn> streamAll()
+    {
+        return subscriber ->
+        {
+            RowSubscription subscription = new RowSubscription(subscriber);
+            subscriber.onSubscribe(subscription);
+            subscription.open();
+        };
+    }
+
+    @Override
+    public CompletionStage<Unicorn> update(Unicorn unicorn)
+    {
+        if (unicorn == null || unicorn.getId() == null)
+        {
+            return Future.<Unicorn>failedFuture(new DaoException("Error updating entity: Entity has no ID")).toCompletionStage();
+        }
+        Tuple values = Tuple.of(unicorn.getName(), unicorn.getAge(), unicorn.getColor(), unicorn.getPowerStrength(),
+                unicorn.getId(), unicorn.getVersion());
+        return complete(client.preparedQuery(UPDATE_SQL).execute(values).compose(rows ->
+        {
+            if (rows.size() == 0)
+            {
+                return noRowUpdated(unicorn);
+            }
+            unicorn.setVersion(rows.iterator().next().getInteger(0));
+            return Future.succeededFuture(unicorn);
+        }), "Error updating entity: ");
+    }
+
+    @Override
+    public CompletionStage<Void> delete(Unicorn unicorn)
+    {
+        if (unicorn == null || unicorn.getId() == null)
+        {
+            return Future.<Void>failedFuture(new DaoException("Error deleting entity: Entity has no ID")).toCompletionStage();
+        }
+        return complete(client.preparedQuery(DELETE_SQL).execute(Tuple.of(unicorn.getId())).compose(rows -> rows.rowCount() == 0
+                ? Future.<Void>failedFuture(new DaoException("Error deleting entity: Entity with this ID does not exist"))
+                : Future.<Void>succeededFuture()), "Error deleting entity: ");
+    }
+
+    /***
+     * Closes the connections and stops the event loops, waiting up to CLOSE_TIMEOUT_SECONDS.
+     */
+    @Override
+    public void close()
+    {
+        Future.join(client.close(), streamPool.close())
+                .eventually(() -> vertx.close())
+                .toCompletionStage().toCompletableFuture()
+                .completeOnTimeout(null, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .join();
+    }
+
+    // Every nextval reserves the block [value, value + increment), as for Hibernate's pooled-lo optimizer
+    private Future<Integer> nextId()
+    {
+        synchronized (this)
+        {
+            if (nextId < idLimit)
+            {
+                return Future.succeededFuture(nextId++);
+            }
+        }
+        return client.preparedQuery(RESERVE_IDS_SQL).execute().compose(rows ->
+        {
+            if (rows.size() == 0)
+            {
+                return Future.failedFuture(new DaoException("Error creating entity: Sequence unicorns_pooled_seq does not exist"));
+            }
+            Row row = rows.iterator().next();
+            int first = Math.toIntExact(row.getLong(0));
+            int increment = (int) Math.max(1, row.getLong(1));
+            synchronized (this)
+            {
+                // A concurrent create may have refilled the block meanwhile; the rest of this one then goes unused
+                if (nextId == idLimit)
+                {
+                    nextId = first + 1;
+                    idLimit = Math.addExact(first, increment);
+                }
+            }
+            return Future.succeededFuture(first);
+        });
+    }
+
+    private Future<Unicorn> noRowUpdated(Unicorn unicorn)
+    {
+        return client.preparedQuery(SELECT_VERSION_SQL).execute(Tuple.of(unicorn.getId())).compose(rows -> Future.failedFuture(rows.size() == 0
+                ? new DaoException("Error updating entity: Entity with this ID does not exist")
+                : new OptimisticLockDaoException(String.format("Error updating entity: Entity %d was changed concurrently, version %d is now %d",
+                        unicorn.getId(), unicorn.getVersion(), rows.iterator().next().getInteger(0)))));
+    }
+
+    // Rejections are DaoExceptions already; anything else is a database or connection error and becomes the cause
+    private static <R> CompletionStage<R> complete(Future<R> future, String errorPrefix)
+    {
+        return future.recover(e -> Future.failedFuture(toDaoException(e, errorPrefix))).toCompletionStage();
+    }
+
+    private static DaoException toDaoException(Throwable e, String errorPrefix)
+    {
+        if (e instanceof DaoException daoException)
+        {
+            return daoException;
+        }
+        return new DaoException(errorPrefix + e.getMessage(), e instanceof Exception exception ? exception : new RuntimeException(e));
+    }
+
+    // Setters, as in UnicornRowMapper, so a null age or power strength stays null
+    private static Unicorn toUnicorn(Row row)
+    {
+        Unicorn unicorn = new Unicorn();
+        unicorn.setId(row.getInteger(0));
+        unicorn.setName(row.getString(1));
+        unicorn.setAge(row.getInteger(2));
+        unicorn.setColor(row.getString(3));
+        unicorn.setPowerStrength(row.getDouble(4));
+        unicorn.setVersion(row.getInteger(5));
+        return unicorn;
+    }
+
+    /***
+     * Maps Flow demand onto the cursor stream: request(n) fetches n more rows, Vert.x pauses the stream when
+     * they are delivered. Demand that arrives before the cursor is open is held and fetched once it is.
+     * Signals to the subscriber come from the connection's event loop. Whatever ends the subscription first
+     * releases what is open so far, and the opening chain releases the rest when it finishes.
+     */
+    private final class RowSubscription implements Flow.Subscription
+    {
+        private final Flow.Subscriber<? super Unicorn> subscriber;
+        // Guarded by this
+        private long pendingDemand;
+        private Context context;
+        private RowStream<Row> stream;
+        private boolean streamClosed;
+        private SqlConnection connection;
+        private Transaction transaction;
+        private volatile boolean done;
+
+        RowSubscription(Flow.Subscriber<? super Unicorn> subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+
+        void open()
+        {
+            streamPool.getConnection()
+                    .compose(opened ->
+                    {
+                        synchronized (this)
+                        {
+                            connection = opened;
+                        }
+                        return opened.begin().compose(begun ->
+                        {
+                            synchronized (this)
+                            {
+                                transaction = begun;
+                            }
+                            return opened.prepare(SELECT_ALL_SQL);
+                        });
+                    })
+                    .onSuccess(statement ->
+                    {
+                        RowStream<Row> rows = statement.createStream(fetchSize);
+                        rows.pause();
+                        rows.exceptionHandler(this::fail);
+                        rows.endHandler(end -> finish());
+                        rows.handler(row ->
+                        {
+                            if (done)
+                            {
+                                return;
+                            }
+                            // Thrown on the event loop, a failure would reach no one and keep the connection
+                            try
+                            {
+                                subscriber.onNext(toUnicorn(row));
+                            }
+                            catch (RuntimeException e)
+                            {
+                                fail(e);
+                            }
+                        });
+                        ready(Vertx.currentContext(), rows);
+                    })
+                    .onFailure(this::fail);
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                onContext(() -> fail(new IllegalArgumentException("Flow rule 3.9: request must be positive, was " + n)));
+                return;
+            }
+            Context current;
+            RowStream<Row> rows;
+            synchronized (this)
+            {
+                if (stream == null)
+                {
+                    pendingDemand = pendingDemand + n < 0 ? Long.MAX_VALUE : pendingDemand + n;
+                    return;
+                }
+                current = context;
+                rows = stream;
+            }
+            current.runOnContext(ignored -> rows.fetch(n));
+        }
+
+        @Override
+        public void cancel()
+        {
+            done = true;
+            onContext(this::release);
+        }
+
+        private void ready(Context current, RowStream<Row> rows)
+        {
+            long demand;
+            synchronized (this)
+            {
+                context = current;
+                stream = rows;
+                demand = pendingDemand;
+                pendingDemand = 0;
+            }
+            if (done)
+            {
+                release();
+            }
+            else if (demand > 0)
+            {
+                rows.fetch(demand);
+            }
+        }
+
+        private void onContext(Runnable action)
+        {
+            Context current;
+            synchronized (this)
+            {
+                current = context;
+            }
+            if (current == null)
+            {
+                action.run();
+            }
+            else
+            {
+                current.runOnContext(ignored -> action.run());
+            }
+        }
+
+        private void finish()
+        {
+            boolean first = !done;
+            done = true;
+            release();
+            if (first)
+            {
+                subscriber.onComplete();
+            }
+        }
+
+        private void fail(Throwable error)
+        {
+            boolean first = !done;
+            done = true;
+            release();
+            if (first)
+            {
+                subscriber.onError(error instanceof IllegalArgumentException ? error : toDaoException(error, "Error streaming entities: "));
+            }
+        }
+
+        // Closes what is open so far, each part once. The cursor only reads, so its transaction is rolled back.
+        private synchronized void release()
+        {
+            Future<Void> closed = Future.succeededFuture();
+            if (stream != null && !streamClosed)
+            {
+                streamClosed = true;
+                closed = stream.close();
+            }
+            Transaction openTransaction = transaction;
+            SqlConnection openConnection = connection;
+            transaction = null;
+            connection = null;
+            closed.eventually(() -> openTransaction != null ? openTransaction.rollback() : Future.succeededFuture())
+                    .eventually(() -> openConnection != null ? openConnection.close() : Future.succeededFuture());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package dat.dao;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/***
+ * Non-blocking counterpart of ICrudDAO: calls return at once and no thread waits for the database.
+ * Stages complete exceptionally with a DaoException, following the same convention: with a cause for
+ * database errors, without one for rejections such as a missing entity.
+ */
+public interface ReactiveCrudDAO<T>
+{
+    CompletionStage<T> create(T entity);
+
+    CompletionStage<T> getById(int id);
+
+    CompletionStage<List<T>> getAll();
+
+    /***
+     * Streams all entities, fetching rows from the database only as far as the subscriber has requested.
+     * Cancelling the subscription releases the backend resources the stream holds.
+     */
+    Flow.Publisher<T> streamAll();
+
+    CompletionStage<T> update(T entity);
+
+    CompletionStage<Void> delete(T entity);
+}
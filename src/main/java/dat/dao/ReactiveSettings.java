@@ -0,0 +1,44 @@
+package dat.dao;
+
+/***
+ * Settings for a PgReactiveDAO.
+ * @param connections connections shared by the single-row calls, each carrying up to pipeliningLimit queries at once
+ * @param pipeliningLimit queries sent on one connection before their results are back
+ * @param streamConnections connections for streamAll(); each open stream holds one until it completes or is cancelled
+ * @param maxWaitQueue calls waiting for a connection before new ones fail; -1 for no limit
+ * @param fetchSize rows a stream reads from its cursor per round trip
+ */
+public record ReactiveSettings(int connections, int pipeliningLimit, int streamConnections, int maxWaitQueue, int fetchSize)
+{
+    public ReactiveSettings
+    {
+        if (connections < 1 || pipeliningLimit < 1 || streamConnections < 1 || fetchSize < 1)
+        {
+            throw new IllegalArgumentException("Connections, pipelining limit and fetch size must be positive");
+        }
+        if (maxWaitQueue < -1)
+        {
+            throw new IllegalArgumentException("Wait queue must be -1 (unlimited) or more: " + maxWaitQueue);
+        }
+    }
+
+    public static ReactiveSettings defaults()
+    {
+        return new ReactiveSettings(4, 256, 2, 10_000, DatabaseDAO.DEFAULT_FETCH_SIZE);
+    }
+
+    public ReactiveSettings withConnections(int connections, int pipeliningLimit)
+    {
+        return new ReactiveSettings(connections, pipeliningLimit, streamConnections, maxWaitQueue, fetchSize);
+    }
+
+    public ReactiveSettings withStreams(int streamConnections, int fetchSize)
+    {
+        return new ReactiveSettings(connections, pipeliningLimit, streamConnections, maxWaitQueue, fetchSize);
+    }
+
+    public ReactiveSettings withMaxWaitQueue(int maxWaitQueue)
+    {
+        return new ReactiveSettings(connections, pipeliningLimit, streamConnections, maxWaitQueue, fetchSize);
+    }
+}
@@ -0,0 +1,72 @@
+package dat.dao;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Remembers recent writes so reads that could observe replication lag go to the primary instead.
+ * A getById for an id written within the window is sticky, and so is any multi-row read while
+ * any write is within the window. A zero window turns stickiness off.
+ */
+class ReadYourWrites
+{
+    private static final int PRUNE_THRESHOLD = 10_000;
+
+    private final long windowNanos;
+    private final Map<Integer, Long> writtenAt = new ConcurrentHashMap<>();
+    private volatile long lastWriteAt;
+    private volatile long allWrittenAt;
+
+    ReadYourWrites(Duration window)
+    {
+        this.windowNanos = window.toNanos();
+    }
+
+    void markWritten(Integer id)
+    {
+        if (windowNanos <= 0)
+        {
+            return;
+        }
+        long now = System.nanoTime();
+        lastWriteAt = now;
+        if (id != null)
+        {
+            writtenAt.put(id, now);
+            if (writtenAt.size() > PRUNE_THRESHOLD)
+            {
+                writtenAt.values().removeIf(at -> now - at > windowNanos);
+            }
+        }
+    }
+
+    /***
+     * Marks every ID as written, e.g. after a bulk load too large to track row by row.
+     */
+    void markAllWritten()
+    {
+        if (windowNanos <= 0)
+        {
+            return;
+        }
+        long now = System.nanoTime();
+        lastWriteAt = now;
+        allWrittenAt = now;
+    }
+
+    boolean isSticky(int id)
+    {
+        if (allWrittenAt != 0 && System.nanoTime() - allWrittenAt <= windowNanos)
+        {
+            return true;
+        }
+        Long at = writtenAt.get(id);
+        return at != null && System.nanoTime() - at <= windowNanos;
+    }
+
+    boolean isAnySticky()
+    {
+        return windowNanos > 0 && lastWriteAt != 0 && System.nanoTime() - lastWriteAt <= windowNanos;
+    }
+}
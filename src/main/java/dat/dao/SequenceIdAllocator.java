@@ -0,0 +1,69 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.exceptions.DaoException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/***
+ * Range allocator backed by one PostgreSQL sequence, e.g. on the first shard: every nextval reserves the block
+ * [value, value + increment), as for Hibernate's pooled-lo optimizer, and IDs are handed out from the block in
+ * memory. Any number of processes can share the sequence; IDs are unique but only ordered within a process.
+ */
+public class SequenceIdAllocator implements IdAllocator
+{
+    private static final String RESERVE_SQL = "SELECT nextval(?::regclass), seqincrement FROM pg_sequence WHERE seqrelid = ?::regclass";
+
+    private final ConnectionPool connectionPool;
+    private final String sequence;
+    private int next;
+    private int limit; // exclusive end of the reserved block, guarded by this
+
+    public SequenceIdAllocator(ConnectionPool connectionPool)
+    {
+        this(connectionPool, "unicorns_pooled_seq");
+    }
+
+    public SequenceIdAllocator(ConnectionPool connectionPool, String sequence)
+    {
+        this.connectionPool = connectionPool;
+        this.sequence = sequence;
+    }
+
+    @Override
+    public synchronized int nextId() throws DaoException
+    {
+        if (next == limit)
+        {
+            reserveBlock();
+        }
+        return next++;
+    }
+
+    private void reserveBlock() throws DaoException
+    {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(RESERVE_SQL))
+        {
+            ps.setString(1, sequence);
+            ps.setString(2, sequence);
+            try (ResultSet rs = ps.executeQuery())
+            {
+                if (!rs.next())
+                {
+                    throw new DaoException("Error allocating ID: Sequence " + sequence + " does not exist");
+                }
+                int first = Math.toIntExact(rs.getLong(1));
+                next = first;
+                limit = Math.addExact(first, (int) Math.max(1, rs.getLong(2)));
+            }
+        }
+        catch (SQLException | ArithmeticException e)
+        {
+            throw new DaoException("Error allocating ID: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package dat.dao;
+
+import dat.dao.query.Query;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Hash-partitions entities by ID across shards, e.g. one DatabaseDAO per database, each with its own
+ * ConnectionPool. IDs come from an IdAllocator shared by all shards, so they are unique across shards and an
+ * entity's shard follows from its ID alone. Single-entity calls go to that shard; getAll, find and the bulk
+ * methods scatter to the shards in parallel on a fork-join pool and merge the results. There is no
+ * transaction across shards: a bulk write that fails on one shard may have been applied on others.
+ * <p>
+ * Every shard tracks its health: after FAILURE_THRESHOLD consecutive database errors it is marked unavailable
+ * and calls to it fail fast for RETRY_AFTER, after which the next call tries it again. A DaoException without
+ * a cause (e.g. a missing entity) is an answer, not a failure, and does not count.
+ */
+public class ShardedDAO<T extends Unicorn> implements ICrudDAO<T>, AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(ShardedDAO.class);
+
+    public static final int FAILURE_THRESHOLD = 3;
+    public static final Duration RETRY_AFTER = Duration.ofSeconds(5);
+
+    private final List<Shard<T>> shards;
+    private final IdAllocator ids;
+    private final ForkJoinPool gatherPool;
+
+    /***
+     * @param shards the shard DAOs, in a fixed order: an entity's shard is its index in this list
+     */
+    public <S extends ICrudDAO<T> & IKeyedDAO<T>> ShardedDAO(List<S> shards, IdAllocator ids)
+    {
+        if (shards.isEmpty())
+        {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        List<Shard<T>> wrapped = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++)
+        {
+            wrapped.add(new Shard<>(i, shards.get(i), shards.get(i)));
+        }
+        this.shards = List.copyOf(wrapped);
+        this.ids = ids;
+        // One worker per shard, so every shard of a scatter is queried at the same time
+        this.gatherPool = new ForkJoinPool(shards.size());
+    }
+
+    /***
+     * Murmur3 finalizer of the ID modulo the shard count, so blocks of consecutive IDs spread over all shards.
+     */
+    public static int shardIndex(int id, int shardCount)
+    {
+        int h = id;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shardCount);
+    }
+
+    @Override
+    public T create(T entity) throws DaoException
+    {
+        if (entity == null)
+        {
+            throw new DaoException("Error creating entity: Entity is null");
+        }
+        entity.setId(ids.nextId());
+        return shardFor(entity.getId()).call(shard -> shard.keyed.insert(entity));
+    }
+
+    @Override
+    public T getById(int id) throws DaoException
+    {
+        return shardFor(id).call(shard -> shard.dao.getById(id));
+    }
+
+    @Override
+    public List<T> getAll() throws DaoException
+    {
+        return gather(shard -> shard.dao.getAll());
+    }
+
+    /***
+     * Asks every shard for one page and applies the query again to the union, which keeps the overall first
+     * limit rows in the query's order.
+     */
+    @Override
+    public List<T> find(Query<T> query) throws DaoException
+    {
+        return query.apply(gather(shard -> shard.dao.find(query)).stream());
+    }
+
+    @Override
+    public T update(T entity) throws DaoException
+    {
+        return shardFor(requireId(entity, "Error updating entity: ")).call(shard -> shard.dao.update(entity));
+    }
+
+    @Override
+    public void delete(T entity) throws DaoException
+    {
+        shardFor(requireId(entity, "Error deleting entity: ")).call(shard ->
+        {
+            shard.dao.delete(entity);
+            return null;
+        });
+    }
+
+    @Override
+    public List<T> createAll(Collection<T> entities) throws DaoException
+    {
+        for (T entity : entities)
+        {
+            entity.setId(ids.nextId());
+        }
+        List<List<T>> groups = groupByShard(entities, "Error creating entities: ");
+        gather(shard -> groups.get(shard.index).isEmpty() ? List.of() : shard.keyed.insertAll(groups.get(shard.index)));
+        return new ArrayList<>(entities);
+    }
+
+    @Override
+    public List<T> updateAll(Collection<T> entities) throws DaoException
+    {
+        List<List<T>> groups = groupByShard(entities, "Error updating entities: ");
+        gather(shard -> groups.get(shard.index).isEmpty() ? List.of() : shard.dao.updateAll(groups.get(shard.index)));
+        return new ArrayList<>(entities);
+    }
+
+    @Override
+    public void deleteAll(Collection<T> entities) throws DaoException
+    {
+        List<List<T>> groups = groupByShard(entities, "Error deleting entities: ");
+        gather(shard ->
+        {
+            if (!groups.get(shard.index).isEmpty())
+            {
+                shard.dao.deleteAll(groups.get(shard.index));
+            }
+            return List.of();
+        });
+    }
+
+    public int getShardCount()
+    {
+        return shards.size();
+    }
+
+    public List<ShardHealth> getHealth()
+    {
+        return shards.stream().map(Shard::health).toList();
+    }
+
+    @Override
+    public void close()
+    {
+        gatherPool.shutdown();
+    }
+
+    private Shard<T> shardFor(int id)
+    {
+        return shards.get(shardIndex(id, shards.size()));
+    }
+
+    private static int requireId(Unicorn entity, String errorPrefix) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException(errorPrefix + "Entity has no ID");
+        }
+        return entity.getId();
+    }
+
+    private List<List<T>> groupByShard(Collection<T> entities, String errorPrefix) throws DaoException
+    {
+        List<List<T>> groups = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++)
+        {
+            groups.add(new ArrayList<>());
+        }
+        for (T entity : entities)
+        {
+            groups.get(shardIndex(requireId(entity, errorPrefix), shards.size())).add(entity);
+        }
+        return groups;
+    }
+
+    private <R> List<R> gather(ShardCall<T, List<R>> call) throws DaoException
+    {
+        try
+        {
+            return gatherPool.invoke(new GatherTask<>(shards, call, 0, shards.size()));
+        }
+        catch (ShardFailure e)
+        {
+            throw e.error;
+        }
+        catch (RuntimeException e)
+        {
+            // The pool may rethrow a copy of the worker's exception, with the original as its cause
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+            {
+                if (cause instanceof ShardFailure failure)
+                {
+                    throw failure.error;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /***
+     * @param available false while calls fail fast after FAILURE_THRESHOLD consecutive errors
+     * @param lastError message of the last database error, null if there was none
+     */
+    public record ShardHealth(int shard, boolean available, int consecutiveFailures, String lastError)
+    {
+    }
+
+    @FunctionalInterface
+    private interface ShardCall<T extends Unicorn, R>
+    {
+        R apply(Shard<T> shard) throws DaoException;
+    }
+
+    private static final class Shard<T extends Unicorn>
+    {
+        final int index;
+        final ICrudDAO<T> dao;
+        final IKeyedDAO<T> keyed;
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile DaoException lastError;
+        volatile long unavailableUntil; // System.nanoTime(), 0 while available
+
+        Shard(int index, ICrudDAO<T> dao, IKeyedDAO<T> keyed)
+        {
+            this.index = index;
+            this.dao = dao;
+            this.keyed = keyed;
+        }
+
+        <R> R call(ShardCall<T, R> call) throws DaoException
+        {
+            long until = unavailableUntil;
+            if (until != 0 && until - System.nanoTime() > 0)
+            {
+                throw new DaoException("Error accessing shard " + index + ": Shard is unavailable after "
+                        + consecutiveFailures.get() + " failures", lastError);
+            }
+            try
+            {
+                R result = call.apply(this);
+                consecutiveFailures.set(0);
+                unavailableUntil = 0;
+                return result;
+            }
+            catch (DaoException e)
+            {
+                if (e.getCause() != null)
+                {
+                    lastError = e;
+                    int failures = consecutiveFailures.incrementAndGet();
+                    if (failures >= FAILURE_THRESHOLD)
+                    {
+                        unavailableUntil = System.nanoTime() + RETRY_AFTER.toNanos();
+                        logger.warn("Shard {} unavailable for {} after {} failures: {}", index, RETRY_AFTER, failures, e.getMessage());
+                    }
+                }
+                throw e;
+            }
+        }
+
+        ShardHealth health()
+        {
+            long until = unavailableUntil;
+            DaoException error = lastError;
+            return new ShardHealth(index, until == 0 || until - System.nanoTime() <= 0, consecutiveFailures.get(),
+                    error != null ? error.getMessage() : null);
+        }
+    }
+
+    /***
+     * Splits the shard range in halves down to single shards and concatenates the results on the way back up.
+     */
+    private static final class GatherTask<T extends Unicorn, R> extends RecursiveTask<List<R>>
+    {
+        private final List<Shard<T>> shards;
+        private final ShardCall<T, List<R>> call;
+        private final int from;
+        private final int to;
+
+        GatherTask(List<Shard<T>> shards, ShardCall<T, List<R>> call, int from, int to)
+        {
+            this.shards = shards;
+            this.call = call;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<R> compute()
+        {
+            if (to - from == 1)
+            {
+                try
+                {
+                    return shards.get(from).call(call);
+                }
+                catch (DaoException e)
+                {
+                    throw new ShardFailure(e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            GatherTask<T, R> left = new GatherTask<>(shards, call, from, middle);
+            left.fork();
+            List<R> right = new GatherTask<>(shards, call, middle, to).compute();
+            List<R> merged = new ArrayList<>(left.join());
+            merged.addAll(right);
+            return merged;
+        }
+    }
+
+    // Carries a shard's DaoException out of the fork-join pool
+    private static final class ShardFailure extends RuntimeException
+    {
+        final DaoException error;
+
+        ShardFailure(DaoException error)
+        {
+            super(error.getMessage(), error, false, false);
+            this.error = error;
+        }
+    }
+}
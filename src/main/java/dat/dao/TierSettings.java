@@ -0,0 +1,52 @@
+package dat.dao;
+
+import java.time.Duration;
+
+/***
+ * Settings for a TieredDAO.
+ * @param maxSize maximum number of entities in the memory tier, oldest loaded first out; entities with a queued write stay
+ * @param queueCapacity maximum number of IDs with a write not yet sent to the backend
+ * @param batchSize maximum number of IDs the writer thread sends to the backend per batch
+ * @param offerTimeout how long a write waits for room in a full queue before it fails
+ * @param flushTimeout how long flush() and close() wait for the queue to drain
+ * @param maxAttempts how often the writer sends a batch that fails with a database error before it dead-letters the failing writes
+ */
+public record TierSettings(int maxSize, int queueCapacity, int batchSize, Duration offerTimeout, Duration flushTimeout, int maxAttempts)
+{
+    public TierSettings
+    {
+        if (maxSize < 1 || queueCapacity < 1 || batchSize < 1 || maxAttempts < 1)
+        {
+            throw new IllegalArgumentException("Tier size, queue capacity, batch size and attempts must be positive");
+        }
+        if (offerTimeout.isNegative() || flushTimeout.isNegative())
+        {
+            throw new IllegalArgumentException("Tier timeouts must not be negative");
+        }
+    }
+
+    public static TierSettings of(int maxSize)
+    {
+        return new TierSettings(maxSize, 10_000, DatabaseDAO.DEFAULT_BATCH_SIZE, Duration.ofSeconds(1), Duration.ofSeconds(30), 20);
+    }
+
+    public TierSettings withQueue(int queueCapacity, Duration offerTimeout)
+    {
+        return new TierSettings(maxSize, queueCapacity, batchSize, offerTimeout, flushTimeout, maxAttempts);
+    }
+
+    public TierSettings withBatchSize(int batchSize)
+    {
+        return new TierSettings(maxSize, queueCapacity, batchSize, offerTimeout, flushTimeout, maxAttempts);
+    }
+
+    public TierSettings withFlushTimeout(Duration flushTimeout)
+    {
+        return new TierSettings(maxSize, queueCapacity, batchSize, offerTimeout, flushTimeout, maxAttempts);
+    }
+
+    public TierSettings withMaxAttempts(int maxAttempts)
+    {
+        return new TierSettings(maxSize, queueCapacity, batchSize, offerTimeout, flushTimeout, maxAttempts);
+    }
+}
@@ -0,0 +1,679 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.dao.query.Query;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.metrics.LatencyHistogram;
+import dat.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/***
+ * Two-tier DAO: a bounded MemoryDAO in front of a database backend (DatabaseDAO or EntityManagerDAO).
+ * Reads are served from memory and load misses from the backend; they return copies, so a caller changing a
+ * returned entity never changes the memory tier. Updates, patches and deletes are applied to
+ * memory at once and queued for a single writer thread, which sends them to the backend in batches.
+ * Creates go straight to the backend, because the database assigns the IDs.
+ * <p>
+ * Writes to the same ID are coalesced: the queue holds at most one pending write per ID, always the latest
+ * state, so the backend sees the writes of an ID in order and never an older state after a newer one. The
+ * queue is bounded by TierSettings.queueCapacity; a write waits up to offerTimeout for room, then fails.
+ * Entities with a pending write are never evicted from memory, so reads never see the older backend state.
+ * getAll, streamAll and find flush the queue first and then read the backend.
+ * <p>
+ * Versions are those of the memory tier. Queued writes carry them to the backend through IVersionedDAO.writeAll,
+ * which never lets an older state overwrite a newer one, so an entity reloaded after eviction has the version
+ * of its last update and a stale client still fails the version check.
+ * <p>
+ * A batch that fails with a database error is retried; once it failed maxAttempts times, or at once for data
+ * and constraint errors (SQLState classes 22 and 23), the writes are sent one by one and those that still fail
+ * are dead-lettered: logged with their state and dropped, like writes the backend rejects.
+ */
+public class TieredDAO implements ICrudDAO<Unicorn>, IPatchDAO<Unicorn>, AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(TieredDAO.class);
+    private static final int STRIPES = 64;
+    private static final long RETRY_DELAY_MS = 500;
+
+    private final ICrudDAO<Unicorn> backend;
+    private final IVersionedDAO<Unicorn> versioned;
+    private final TierSettings settings;
+    private final MemoryDAO<Unicorn> memory = new MemoryDAO<>();
+    // Loading order of the resident entities, the eviction order; guarded by itself
+    private final LinkedHashSet<Integer> residents = new LinkedHashSet<>();
+    // Per-ID locks, so the memory change and the queued write of an ID happen as one step
+    private final Object[] stripes = new Object[STRIPES];
+
+    private final Map<Integer, PendingWrite> pending = new ConcurrentHashMap<>();
+    // Numbers the queued writes, so flush() can wait for those queued before it
+    private final AtomicLong writeSeq = new AtomicLong();
+    private final LinkedBlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+    private final Semaphore permits;
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Condition drained = drainLock.newCondition();
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Failed sends of the current batch; used by the writer thread only
+    private int attempts;
+
+    private final LongAdder flushed;
+    private final LongAdder coalesced;
+    private final LongAdder dropped;
+    private final LongAdder retried;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LatencyHistogram flushLatency;
+
+    public <B extends ICrudDAO<Unicorn> & IVersionedDAO<Unicorn>> TieredDAO(B backend, TierSettings settings)
+    {
+        this(backend, settings, "dao.tiered", MetricsRegistry.getInstance());
+    }
+
+    /***
+     * @param prefix name prefix of the metrics, e.g. "dao.tiered" gives the gauge "dao.tiered.queue.depth"
+     */
+    public <B extends ICrudDAO<Unicorn> & IVersionedDAO<Unicorn>> TieredDAO(B backend, TierSettings settings, String prefix, MetricsRegistry registry)
+    {
+        this.backend = backend;
+        this.versioned = backend;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.queueCapacity());
+        for (int i = 0; i < STRIPES; i++)
+        {
+            stripes[i] = new Object();
+        }
+        registry.gauge(prefix + ".queue.depth", pending::size);
+        registry.gauge(prefix + ".queue.capacity", settings::queueCapacity);
+        registry.gauge(prefix + ".memory.size", memory::size);
+        this.flushed = registry.counter(prefix + ".writes.flushed");
+        this.coalesced = registry.counter(prefix + ".writes.coalesced");
+        this.dropped = registry.counter(prefix + ".writes.dropped");
+        this.retried = registry.counter(prefix + ".writes.retried");
+        this.hits = registry.counter(prefix + ".hits");
+        this.misses = registry.counter(prefix + ".misses");
+        this.flushLatency = registry.histogram(prefix + ".flush");
+
+        this.writer = new Thread(this::drainQueue, "TieredDAO-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /***
+     * Closes this DAO, flushing the queue, before the pool shuts down, so queued writes still get a connection.
+     */
+    public TieredDAO closeWith(ConnectionPool pool)
+    {
+        pool.addCloseListener(this::close);
+        return this;
+    }
+
+    @Override
+    public Unicorn create(Unicorn entity) throws DaoException
+    {
+        Unicorn created = backend.create(entity);
+        cache(new Unicorn(created));
+        evictIfFull();
+        return created;
+    }
+
+    @Override
+    public List<Unicorn> createAll(Collection<Unicorn> entities) throws DaoException
+    {
+        List<Unicorn> created = backend.createAll(entities);
+        for (Unicorn entity : created)
+        {
+            cache(new Unicorn(entity));
+        }
+        evictIfFull();
+        return created;
+    }
+
+    @Override
+    public Unicorn getById(int id) throws DaoException
+    {
+        Unicorn entity = memory.getIfPresent(id);
+        if (entity != null)
+        {
+            hits.increment();
+            return entity;
+        }
+        synchronized (stripe(id))
+        {
+            entity = resident(id);
+        }
+        evictIfFull();
+        return entity;
+    }
+
+    @Override
+    public List<Unicorn> getAll() throws DaoException
+    {
+        flush();
+        return backend.getAll();
+    }
+
+    @Override
+    public Stream<Unicorn> streamAll() throws DaoException
+    {
+        flush();
+        return backend.streamAll();
+    }
+
+    @Override
+    public List<Unicorn> find(Query<Unicorn> query) throws DaoException
+    {
+        flush();
+        return backend.find(query);
+    }
+
+    @Override
+    public Unicorn update(Unicorn entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error updating entity: Entity has no ID");
+        }
+        int id = entity.getId();
+        Unicorn updated;
+        acquirePermit();
+        boolean queued = false;
+        try
+        {
+            synchronized (stripe(id))
+            {
+                resident(id);
+                updated = memory.update(entity);
+                queued = enqueue(id, new PendingWrite(new Unicorn(updated)));
+            }
+        }
+        finally
+        {
+            if (!queued)
+            {
+                permits.release();
+            }
+        }
+        evictIfFull();
+        return updated;
+    }
+
+    @Override
+    public Unicorn updatePowerStrength(int id, double delta) throws DaoException
+    {
+        Unicorn patched;
+        acquirePermit();
+        boolean queued = false;
+        try
+        {
+            synchronized (stripe(id))
+            {
+                resident(id);
+                patched = memory.updatePowerStrength(id, delta);
+                queued = enqueue(id, new PendingWrite(new Unicorn(patched)));
+            }
+        }
+        finally
+        {
+            if (!queued)
+            {
+                permits.release();
+            }
+        }
+        evictIfFull();
+        return patched;
+    }
+
+    @Override
+    public void delete(Unicorn entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error deleting entity: Entity has no ID");
+        }
+        int id = entity.getId();
+        acquirePermit();
+        boolean queued = false;
+        try
+        {
+            synchronized (stripe(id))
+            {
+                resident(id);
+                memory.evict(id);
+                synchronized (residents)
+                {
+                    residents.remove(id);
+                }
+                queued = enqueue(id, new PendingWrite(null));
+            }
+        }
+        finally
+        {
+            if (!queued)
+            {
+                permits.release();
+            }
+        }
+    }
+
+    /***
+     * Waits until every write queued before the call has reached the backend, at most flushTimeout.
+     * Writes queued meanwhile are not waited for, so steady traffic can't hold it up.
+     */
+    public void flush() throws DaoException
+    {
+        long target = writeSeq.get();
+        long deadline = System.nanoTime() + settings.flushTimeout().toNanos();
+        drainLock.lock();
+        try
+        {
+            while (unsentUpTo(target) > 0)
+            {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                {
+                    throw new DaoException("Error flushing writes: " + unsentUpTo(target) + " writes still queued after " + settings.flushTimeout());
+                }
+                drained.awaitNanos(remaining);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new DaoException("Error flushing writes: Interrupted", e);
+        }
+        finally
+        {
+            drainLock.unlock();
+        }
+    }
+
+    /***
+     * @return IDs with a write not yet accepted by the backend
+     */
+    public int pendingWrites()
+    {
+        return pending.size();
+    }
+
+    public int size()
+    {
+        return memory.size();
+    }
+
+    /***
+     * Stops accepting writes and lets the writer drain the queue for at most flushTimeout.
+     * Writes still queued after that are logged and lost.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (!running)
+        {
+            return;
+        }
+        running = false;
+        try
+        {
+            writer.join(settings.flushTimeout().toMillis());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive())
+        {
+            writer.interrupt();
+            logger.error("TieredDAO closed with {} writes not flushed to the backend", pending.size());
+        }
+    }
+
+    private long unsentUpTo(long target)
+    {
+        return pending.values().stream().filter(write -> write.firstSeq <= target).count();
+    }
+
+    private Object stripe(int id)
+    {
+        return stripes[Math.floorMod(id, STRIPES)];
+    }
+
+    // Callers hold the stripe lock of the ID
+    private Unicorn resident(int id) throws DaoException
+    {
+        Unicorn entity = memory.getIfPresent(id);
+        if (entity != null)
+        {
+            hits.increment();
+            return entity;
+        }
+        if (pending.containsKey(id))
+        {
+            // Only a queued delete leaves a pending ID without a resident entity
+            hits.increment();
+            throw new DaoException("Error fetching entity by ID: Entity with this ID does not exist");
+        }
+        misses.increment();
+        // A copy, so changes in memory never leak into a backend that keeps its entities on the heap
+        entity = new Unicorn(backend.getById(id));
+        cache(entity);
+        return entity;
+    }
+
+    private void cache(Unicorn entity) throws DaoException
+    {
+        memory.put(entity);
+        synchronized (residents)
+        {
+            residents.add(entity.getId());
+        }
+    }
+
+    // Evicts the oldest loaded entities without a pending write; called without holding a stripe lock
+    private void evictIfFull()
+    {
+        while (memory.size() > settings.maxSize())
+        {
+            Integer victim = null;
+            synchronized (residents)
+            {
+                Iterator<Integer> oldest = residents.iterator();
+                while (oldest.hasNext())
+                {
+                    Integer id = oldest.next();
+                    if (!pending.containsKey(id))
+                    {
+                        oldest.remove();
+                        victim = id;
+                        break;
+                    }
+                }
+            }
+            if (victim == null)
+            {
+                return; // everything resident still has a queued write
+            }
+            synchronized (stripe(victim))
+            {
+                if (pending.containsKey(victim))
+                {
+                    synchronized (residents)
+                    {
+                        residents.add(victim);
+                    }
+                }
+                else
+                {
+                    memory.evict(victim);
+                }
+            }
+        }
+    }
+
+    private void acquirePermit() throws DaoException
+    {
+        if (!running)
+        {
+            throw new DaoException("Error queueing write: TieredDAO is closed");
+        }
+        try
+        {
+            if (!permits.tryAcquire(settings.offerTimeout().toNanos(), TimeUnit.NANOSECONDS))
+            {
+                throw new DaoException("Error queueing write: Write queue is full");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new DaoException("Error queueing write: Interrupted", e);
+        }
+    }
+
+    /***
+     * Callers hold the stripe lock of the ID.
+     * @return true if the write took a new queue slot, false if it replaced a pending write of the same ID
+     */
+    private boolean enqueue(int id, PendingWrite write)
+    {
+        write.seq = writeSeq.incrementAndGet();
+        PendingWrite replaced = pending.put(id, write);
+        if (replaced == null)
+        {
+            write.firstSeq = write.seq;
+            queue.add(id);
+            return true;
+        }
+        // The replaced write is not sent on its own, so the ID owes everything since its first unsent write
+        write.firstSeq = replaced.firstSeq;
+        coalesced.increment();
+        return false;
+    }
+
+    private void drainQueue()
+    {
+        List<Integer> batch = new ArrayList<>(settings.batchSize());
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                if (batch.isEmpty())
+                {
+                    Integer first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null)
+                    {
+                        if (!running)
+                        {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                queue.drainTo(batch, settings.batchSize() - batch.size());
+                batch = writeBatch(batch);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /***
+     * Sends the pending writes of the IDs to the backend.
+     * @return the IDs to send again: all of them after a database error that is retried, otherwise those written meanwhile
+     */
+    private List<Integer> writeBatch(List<Integer> ids) throws InterruptedException
+    {
+        Map<Integer, PendingWrite> writes = new LinkedHashMap<>();
+        for (Integer id : ids)
+        {
+            writes.put(id, pending.get(id));
+        }
+        Set<Integer> deadLettered = Set.of();
+        long start = System.nanoTime();
+        try
+        {
+            try
+            {
+                send(writes);
+            }
+            catch (DaoException e)
+            {
+                boolean giveUp = attempts + 1 >= settings.maxAttempts();
+                if (e.getCause() != null && !isPermanent(e) && !giveUp)
+                {
+                    throw e;
+                }
+                // A rejected or failing entity (e.g. deleted in the database meanwhile) must not block the others
+                deadLettered = sendOneByOne(writes, giveUp);
+            }
+            attempts = 0;
+        }
+        catch (DaoException e)
+        {
+            attempts++;
+            retried.add(ids.size());
+            logger.warn("Writing {} queued writes failed, retrying: {}", ids.size(), e.getMessage());
+            Thread.sleep(RETRY_DELAY_MS);
+            return ids;
+        }
+        finally
+        {
+            flushLatency.recordSince(start);
+        }
+
+        List<Integer> carryOver = new ArrayList<>(settings.batchSize());
+        for (Map.Entry<Integer, PendingWrite> write : writes.entrySet())
+        {
+            int id = write.getKey();
+            PendingWrite sent = write.getValue();
+            synchronized (stripe(id))
+            {
+                if (pending.remove(id, sent))
+                {
+                    permits.release();
+                    // A dead-lettered write is counted in writes.dropped only
+                    if (!deadLettered.contains(id))
+                    {
+                        flushed.increment();
+                    }
+                }
+                else
+                {
+                    // Written meanwhile: what the ID still owes starts after the write just sent
+                    pending.get(id).firstSeq = sent.seq + 1;
+                    carryOver.add(id);
+                }
+            }
+        }
+        drainLock.lock();
+        try
+        {
+            drained.signalAll();
+        }
+        finally
+        {
+            drainLock.unlock();
+        }
+        return carryOver;
+    }
+
+    private void send(Map<Integer, PendingWrite> writes) throws DaoException
+    {
+        List<Unicorn> updates = new ArrayList<>();
+        List<Unicorn> deletes = new ArrayList<>();
+        writes.forEach((id, write) -> (write.entity != null ? updates : deletes).add(write.toEntity(id)));
+        if (!updates.isEmpty())
+        {
+            versioned.writeAll(updates);
+        }
+        if (!deletes.isEmpty())
+        {
+            backend.deleteAll(deletes);
+        }
+    }
+
+    /***
+     * @param giveUp true to dead-letter writes that fail with any database error, false to only dead-letter
+     *               rejected writes and data or constraint errors and throw on other database errors
+     * @return the IDs whose writes were dropped
+     */
+    private Set<Integer> sendOneByOne(Map<Integer, PendingWrite> writes, boolean giveUp) throws DaoException
+    {
+        Set<Integer> deadLettered = new HashSet<>();
+        for (Map.Entry<Integer, PendingWrite> write : writes.entrySet())
+        {
+            int id = write.getKey();
+            try
+            {
+                send(Map.of(id, write.getValue()));
+            }
+            catch (DaoException failed)
+            {
+                if (failed.getCause() == null)
+                {
+                    logger.warn("Dropping queued write for ID {}: {}", id, failed.getMessage());
+                }
+                else if (giveUp || isPermanent(failed))
+                {
+                    logger.error("Dead-lettering queued write for ID {}, state {}: {}", id, write.getValue().entity, failed.getMessage(), failed);
+                }
+                else
+                {
+                    throw failed;
+                }
+                dropped.increment();
+                deadLettered.add(id);
+                synchronized (stripe(id))
+                {
+                    if (pending.get(id) == write.getValue())
+                    {
+                        memory.evict(id);
+                    }
+                }
+            }
+        }
+        return deadLettered;
+    }
+
+    // Data and constraint errors fail again on every retry
+    private static boolean isPermanent(DaoException e)
+    {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null)
+            {
+                String sqlState = sqlException.getSQLState();
+                return sqlState.startsWith("22") || sqlState.startsWith("23");
+            }
+        }
+        return false;
+    }
+
+    /***
+     * The state an ID should have in the backend, compared by identity; a null entity is a delete.
+     */
+    private static final class PendingWrite
+    {
+        final Unicorn entity;
+        // Set by enqueue under the stripe lock, before the write is published in pending
+        long seq;
+        // Sequence number of the oldest write of the ID the backend has not seen yet
+        volatile long firstSeq;
+
+        PendingWrite(Unicorn entity)
+        {
+            this.entity = entity;
+        }
+
+        // A fresh copy per attempt, so nothing the backend does to it reaches the queued state
+        Unicorn toEntity(int id)
+        {
+            Unicorn copy = entity != null ? new Unicorn(entity) : new Unicorn();
+            copy.setId(id);
+            return copy;
+        }
+    }
+}
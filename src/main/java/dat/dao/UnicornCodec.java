@@ -0,0 +1,127 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/***
+ * Compact binary encoding of a Unicorn without its ID: a null-mask byte, then the name and color as
+ * length-prefixed UTF-8, the age as an int, the power strength as a double and the version as an int.
+ * Null fields take no space, so records written before versions existed decode with a null version.
+ */
+final class UnicornCodec
+{
+    private static final int NAME = 1;
+    private static final int AGE = 2;
+    private static final int COLOR = 4;
+    private static final int POWER_STRENGTH = 8;
+    private static final int VERSION = 16;
+
+    private UnicornCodec()
+    {
+    }
+
+    static int encodedSize(Unicorn unicorn)
+    {
+        int size = 1;
+        if (unicorn.getName() != null)
+        {
+            size += 2 + utf8Length(unicorn.getName());
+        }
+        if (unicorn.getAge() != null)
+        {
+            size += 4;
+        }
+        if (unicorn.getColor() != null)
+        {
+            size += 2 + utf8Length(unicorn.getColor());
+        }
+        if (unicorn.getPowerStrength() != null)
+        {
+            size += 8;
+        }
+        if (unicorn.getVersion() != null)
+        {
+            size += 4;
+        }
+        return size;
+    }
+
+    static void encode(ByteBuffer buffer, Unicorn unicorn)
+    {
+        int mask = (unicorn.getName() != null ? NAME : 0)
+                | (unicorn.getAge() != null ? AGE : 0)
+                | (unicorn.getColor() != null ? COLOR : 0)
+                | (unicorn.getPowerStrength() != null ? POWER_STRENGTH : 0)
+                | (unicorn.getVersion() != null ? VERSION : 0);
+        buffer.put((byte) mask);
+        if (unicorn.getName() != null)
+        {
+            putString(buffer, unicorn.getName());
+        }
+        if (unicorn.getAge() != null)
+        {
+            buffer.putInt(unicorn.getAge());
+        }
+        if (unicorn.getColor() != null)
+        {
+            putString(buffer, unicorn.getColor());
+        }
+        if (unicorn.getPowerStrength() != null)
+        {
+            buffer.putDouble(unicorn.getPowerStrength());
+        }
+        if (unicorn.getVersion() != null)
+        {
+            buffer.putInt(unicorn.getVersion());
+        }
+    }
+
+    /***
+     * Decodes straight from the (usually memory-mapped) buffer at its position, advancing it.
+     */
+    static Unicorn decode(ByteBuffer buffer, int id)
+    {
+        int mask = buffer.get();
+        String name = (mask & NAME) != 0 ? getString(buffer) : null;
+        Integer age = (mask & AGE) != 0 ? buffer.getInt() : null;
+        String color = (mask & COLOR) != 0 ? getString(buffer) : null;
+        Double powerStrength = (mask & POWER_STRENGTH) != 0 ? buffer.getDouble() : null;
+        Integer version = (mask & VERSION) != 0 ? buffer.getInt() : null;
+
+        Unicorn unicorn = new Unicorn();
+        unicorn.setId(id);
+        unicorn.setName(name);
+        unicorn.setAge(age);
+        unicorn.setColor(color);
+        unicorn.setPowerStrength(powerStrength);
+        unicorn.setVersion(version);
+        return unicorn;
+    }
+
+    private static void putString(ByteBuffer buffer, String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer)
+    {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int utf8Length(String value)
+    {
+        int length = value.getBytes(StandardCharsets.UTF_8).length;
+        if (length > 0xFFFF)
+        {
+            throw new IllegalArgumentException("String too long to encode: " + length + " bytes");
+        }
+        return length;
+    }
+}
@@ -0,0 +1,78 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+
+/***
+ * Reusable, mutable view of one unicorns row for visitor-style scans (DatabaseDAO.scanAll). Numbers are kept
+ * as primitives with null flags, so a scan does not box them; the instance is refilled for every row and
+ * only valid inside the visitor call. Use toUnicorn() to keep a row.
+ */
+public final class UnicornRow
+{
+    int id;
+    String name;
+    int age;
+    boolean ageNull;
+    String color;
+    double powerStrength;
+    boolean powerStrengthNull;
+    int version;
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /***
+     * @return the age, 0 if it is null
+     */
+    public int getAge()
+    {
+        return age;
+    }
+
+    public boolean isAgeNull()
+    {
+        return ageNull;
+    }
+
+    public String getColor()
+    {
+        return color;
+    }
+
+    /***
+     * @return the power strength, 0.0 if it is null
+     */
+    public double getPowerStrength()
+    {
+        return powerStrength;
+    }
+
+    public boolean isPowerStrengthNull()
+    {
+        return powerStrengthNull;
+    }
+
+    public int getVersion()
+    {
+        return version;
+    }
+
+    public Unicorn toUnicorn()
+    {
+        Unicorn unicorn = new Unicorn();
+        unicorn.setId(id);
+        unicorn.setName(name);
+        unicorn.setAge(ageNull ? null : age);
+        unicorn.setColor(color);
+        unicorn.setPowerStrength(powerStrengthNull ? null : powerStrength);
+        unicorn.setVersion(version);
+        return unicorn;
+    }
+}
@@ -0,0 +1,67 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Maps unicorns rows by column index instead of by name. The indexes are looked up once per statement shape
+ * (the SQL string) and reused for every later result set of that shape, so mapping a row costs six
+ * index-based getters. Nulls survive the mapping: a null age or power strength stays null, where
+ * ResultSet.getInt would return 0.
+ */
+final class UnicornRowMapper
+{
+    private final Map<String, Columns> shapes = new ConcurrentHashMap<>();
+
+    /***
+     * @param sql the statement the result set came from, the key of the cached column indexes
+     */
+    Columns columns(String sql, ResultSet rs) throws SQLException
+    {
+        Columns columns = shapes.get(sql);
+        if (columns == null)
+        {
+            columns = new Columns(rs.findColumn("id"), rs.findColumn("unicorn_name"), rs.findColumn("age"),
+                    rs.findColumn("color"), rs.findColumn("powerstrength"), rs.findColumn("version"));
+            shapes.putIfAbsent(sql, columns);
+        }
+        return columns;
+    }
+
+    static Unicorn map(ResultSet rs, Columns columns) throws SQLException
+    {
+        Unicorn unicorn = new Unicorn();
+        unicorn.setId(rs.getInt(columns.id));
+        unicorn.setName(rs.getString(columns.name));
+        int age = rs.getInt(columns.age);
+        unicorn.setAge(rs.wasNull() ? null : age);
+        unicorn.setColor(rs.getString(columns.color));
+        double powerStrength = rs.getDouble(columns.powerStrength);
+        unicorn.setPowerStrength(rs.wasNull() ? null : powerStrength);
+        unicorn.setVersion(rs.getInt(columns.version));
+        return unicorn;
+    }
+
+    /***
+     * Refills the row in place, without boxing the numbers.
+     */
+    static void mapInto(ResultSet rs, Columns columns, UnicornRow row) throws SQLException
+    {
+        row.id = rs.getInt(columns.id);
+        row.name = rs.getString(columns.name);
+        row.age = rs.getInt(columns.age);
+        row.ageNull = rs.wasNull();
+        row.color = rs.getString(columns.color);
+        row.powerStrength = rs.getDouble(columns.powerStrength);
+        row.powerStrengthNull = rs.wasNull();
+        row.version = rs.getInt(columns.version);
+    }
+
+    record Columns(int id, int name, int age, int color, int powerStrength, int version)
+    {
+    }
+}
@@ -0,0 +1,16 @@
+package dat.dao.feed;
+
+import dat.entities.Unicorn;
+
+/***
+ * One change of the unicorns table, as published by a ChangeFeed.
+ * @param sequence position in the feed, strictly increasing by one per event
+ * @param unicorn a detached snapshot of the entity after the change, null for a delete
+ */
+public record ChangeEvent(long sequence, Type type, int id, Unicorn unicorn)
+{
+    public enum Type
+    {
+        CREATED, UPDATED, DELETED
+    }
+}
@@ -0,0 +1,273 @@
+package dat.dao.feed;
+
+import dat.entities.Unicorn;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***
+ * Ordered stream of unicorn changes, kept in a bounded ring buffer of the last capacity events and delivered to
+ * Flow subscribers. Sequence numbers start at 1 and increase by one per event; they restart with the feed.
+ * <p>
+ * Publishing never blocks and never waits for subscribers: every subscriber reads the buffer at its own pace,
+ * as far as it has requested (Flow back-pressure), on its own delivery task. A subscriber that falls more than
+ * capacity events behind has lost events and gets onError with a GapException; it should reload a snapshot
+ * and subscribe again. subscribe(subscriber, fromSequence) resumes after a reconnect, as long as fromSequence
+ * is still in the buffer; a fromSequence the feed has not reached yet, e.g. one kept across a restart of the
+ * feed, fails with an IllegalArgumentException instead of waiting for events that would not be the expected ones.
+ */
+public class ChangeFeed implements Flow.Publisher<ChangeEvent>, AutoCloseable
+{
+    private final AtomicReferenceArray<ChangeEvent> buffer;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong(); // sequence of the newest event, 0 before the first
+    private final List<FeedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /***
+     * @param capacity events kept for slow or resuming subscribers, rounded up to a power of two
+     */
+    public ChangeFeed(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Feed capacity must be positive: " + capacity);
+        }
+        this.buffer = new AtomicReferenceArray<>(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+        this.mask = buffer.length() - 1;
+    }
+
+    /***
+     * Appends an event; the caller's entity is copied, so later changes to it do not show in the feed.
+     * Callers that need events of the same ID in order must publish them in that order.
+     * @return the event's sequence number
+     */
+    public synchronized long publish(ChangeEvent.Type type, int id, Unicorn unicorn)
+    {
+        long sequence = published.get() + 1;
+        buffer.set((int) (sequence & mask), new ChangeEvent(sequence, type, id, unicorn != null ? new Unicorn(unicorn) : null));
+        published.set(sequence);
+        for (FeedSubscription subscription : subscriptions)
+        {
+            subscription.signal();
+        }
+        return sequence;
+    }
+
+    /***
+     * @return the sequence of the newest event, 0 if none was published
+     */
+    public long getLastSequence()
+    {
+        return published.get();
+    }
+
+    /***
+     * @return the oldest sequence still in the buffer, the earliest a subscriber can resume from
+     */
+    public long getOldestSequence()
+    {
+        return Math.max(1, published.get() - buffer.length() + 1);
+    }
+
+    /***
+     * Subscribes to the events published from now on.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber)
+    {
+        subscribe(subscriber, published.get() + 1);
+    }
+
+    /***
+     * Subscribes from the given sequence, e.g. the last one a consumer processed plus one. The subscriber gets
+     * onError with an IllegalArgumentException if fromSequence is beyond the next event to be published.
+     */
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber, long fromSequence)
+    {
+        FeedSubscription subscription = new FeedSubscription(subscriber, Math.max(1, fromSequence), executor);
+        long next = published.get() + 1;
+        if (fromSequence > next)
+        {
+            subscription.error = new IllegalArgumentException(String.format(
+                    "Change feed has not reached sequence %d, the next is %d; it may have restarted", fromSequence, next));
+        }
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        subscription.signal();
+    }
+
+    public int getSubscriberCount()
+    {
+        return subscriptions.size();
+    }
+
+    /***
+     * Completes every subscription; events not delivered yet are dropped.
+     */
+    @Override
+    public void close()
+    {
+        for (FeedSubscription subscription : subscriptions)
+        {
+            subscription.complete();
+        }
+        executor.shutdown();
+    }
+
+    /***
+     * Thrown to a subscriber whose next event is no longer in the buffer.
+     */
+    public static class GapException extends IllegalStateException
+    {
+        private final long oldestSequence;
+
+        GapException(long missedSequence, long oldestSequence)
+        {
+            super("Change feed events from " + missedSequence + " are gone, the oldest is " + oldestSequence);
+            this.oldestSequence = oldestSequence;
+        }
+
+        public long getOldestSequence()
+        {
+            return oldestSequence;
+        }
+    }
+
+    private final class FeedSubscription implements Flow.Subscription
+    {
+        private final Flow.Subscriber<? super ChangeEvent> subscriber;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        // Drain requests; only the task that raises it from 0 runs, so one thread at a time calls the subscriber
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+        private long next; // only touched by the draining task
+        private volatile boolean done;
+        private volatile boolean completeRequested;
+        // Set by an invalid request or subscribe; delivered as onError in place of any event
+        private volatile Throwable error;
+
+        FeedSubscription(Flow.Subscriber<? super ChangeEvent> subscriber, long next, Executor executor)
+        {
+            this.subscriber = subscriber;
+            this.next = next;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                error = new IllegalArgumentException("Flow rule 3.9: request must be positive, was " + n);
+            }
+            else
+            {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel()
+        {
+            done = true;
+            subscriptions.remove(this);
+        }
+
+        void complete()
+        {
+            completeRequested = true;
+            signal();
+        }
+
+        void signal()
+        {
+            if (!done && pendingSignals.getAndIncrement() == 0)
+            {
+                try
+                {
+                    executor.execute(this::drain);
+                }
+                catch (RuntimeException e)
+                {
+                    // The feed was closed while a signal was on its way
+                    pendingSignals.set(0);
+                }
+            }
+        }
+
+        private void drain()
+        {
+            int signals = 1;
+            do
+            {
+                deliver();
+                signals = pendingSignals.addAndGet(-signals);
+            }
+            while (signals != 0);
+        }
+
+        private void deliver()
+        {
+            if (done)
+            {
+                return;
+            }
+            if (error != null)
+            {
+                terminate(error);
+                return;
+            }
+            if (completeRequested)
+            {
+                done = true;
+                subscriptions.remove(this);
+                subscriber.onComplete();
+                return;
+            }
+            while (demand.get() > 0 && next <= published.get() && !done)
+            {
+                ChangeEvent event = buffer.get((int) (next & mask));
+                if (event == null || event.sequence() != next)
+                {
+                    terminate(new GapException(next, getOldestSequence()));
+                    return;
+                }
+                try
+                {
+                    subscriber.onNext(event);
+                }
+                catch (RuntimeException e)
+                {
+                    terminate(e);
+                    return;
+                }
+                next++;
+                if (demand.get() != Long.MAX_VALUE)
+                {
+                    demand.decrementAndGet();
+                }
+            }
+            // An idle subscriber can be lapped as well, so it learns about the gap without waiting for demand
+            if (!done && published.get() - next >= buffer.length())
+            {
+                terminate(new GapException(next, getOldestSequence()));
+            }
+        }
+
+        private void terminate(Throwable error)
+        {
+            done = true;
+            subscriptions.remove(this);
+            subscriber.onError(error);
+        }
+    }
+}
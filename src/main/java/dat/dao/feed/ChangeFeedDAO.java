@@ -0,0 +1,205 @@
+package dat.dao.feed;
+
+import dat.dao.ICrudDAO;
+import dat.dao.IPatchDAO;
+import dat.dao.query.Query;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/***
+ * Decorator that publishes every successful write of the delegate to a ChangeFeed. A write and its publish
+ * hold the lock stripe of the entity's ID, so the events of an ID are in the order the delegate applied the
+ * writes. Failed writes publish nothing. Only writes through this DAO are seen; PgNotifySource also captures
+ * writes made outside the application.
+ */
+public class ChangeFeedDAO implements ICrudDAO<Unicorn>, IPatchDAO<Unicorn>
+{
+    private static final int STRIPES = 64;
+
+    private final ICrudDAO<Unicorn> delegate;
+    private final ChangeFeed feed;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public ChangeFeedDAO(ICrudDAO<Unicorn> delegate, ChangeFeed feed)
+    {
+        this.delegate = delegate;
+        this.feed = feed;
+        for (int i = 0; i < STRIPES; i++)
+        {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public ChangeFeed getFeed()
+    {
+        return feed;
+    }
+
+    // A new ID has no earlier events, so creates need no lock
+    @Override
+    public Unicorn create(Unicorn entity) throws DaoException
+    {
+        Unicorn created = delegate.create(entity);
+        feed.publish(ChangeEvent.Type.CREATED, created.getId(), created);
+        return created;
+    }
+
+    @Override
+    public List<Unicorn> createAll(Collection<Unicorn> entities) throws DaoException
+    {
+        List<Unicorn> created = delegate.createAll(entities);
+        for (Unicorn unicorn : created)
+        {
+            feed.publish(ChangeEvent.Type.CREATED, unicorn.getId(), unicorn);
+        }
+        return created;
+    }
+
+    @Override
+    public Unicorn getById(int id) throws DaoException
+    {
+        return delegate.getById(id);
+    }
+
+    @Override
+    public List<Unicorn> getAll() throws DaoException
+    {
+        return delegate.getAll();
+    }
+
+    @Override
+    public Stream<Unicorn> streamAll() throws DaoException
+    {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public List<Unicorn> find(Query<Unicorn> query) throws DaoException
+    {
+        return delegate.find(query);
+    }
+
+    @Override
+    public Unicorn update(Unicorn entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error updating entity: Entity has no ID");
+        }
+        ReentrantLock lock = stripe(entity.getId());
+        lock.lock();
+        try
+        {
+            Unicorn updated = delegate.update(entity);
+            feed.publish(ChangeEvent.Type.UPDATED, updated.getId(), updated);
+            return updated;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Unicorn updatePowerStrength(int id, double delta) throws DaoException
+    {
+        if (!(delegate instanceof IPatchDAO<?>))
+        {
+            throw new DaoException("Error updating entity: " + delegate.getClass().getSimpleName() + " does not support patches");
+        }
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try
+        {
+            @SuppressWarnings("unchecked")
+            Unicorn patched = ((IPatchDAO<Unicorn>) delegate).updatePowerStrength(id, delta);
+            feed.publish(ChangeEvent.Type.UPDATED, id, patched);
+            return patched;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(Unicorn entity) throws DaoException
+    {
+        if (entity == null || entity.getId() == null)
+        {
+            throw new DaoException("Error deleting entity: Entity has no ID");
+        }
+        ReentrantLock lock = stripe(entity.getId());
+        lock.lock();
+        try
+        {
+            delegate.delete(entity);
+            feed.publish(ChangeEvent.Type.DELETED, entity.getId(), null);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Unicorn> updateAll(Collection<Unicorn> entities) throws DaoException
+    {
+        List<ReentrantLock> locks = lockAll(entities);
+        try
+        {
+            List<Unicorn> updated = delegate.updateAll(entities);
+            for (Unicorn unicorn : updated)
+            {
+                feed.publish(ChangeEvent.Type.UPDATED, unicorn.getId(), unicorn);
+            }
+            return updated;
+        }
+        finally
+        {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<Unicorn> entities) throws DaoException
+    {
+        List<ReentrantLock> locks = lockAll(entities);
+        try
+        {
+            delegate.deleteAll(entities);
+            for (Unicorn unicorn : entities)
+            {
+                feed.publish(ChangeEvent.Type.DELETED, unicorn.getId(), null);
+            }
+        }
+        finally
+        {
+            locks.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    private ReentrantLock stripe(Integer id)
+    {
+        return stripes[id == null ? 0 : Math.floorMod(id, STRIPES)];
+    }
+
+    // Stripes are taken in index order, so two bulk writes cannot deadlock
+    private List<ReentrantLock> lockAll(Collection<Unicorn> entities)
+    {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Unicorn unicorn : entities)
+        {
+            indexes.add(unicorn.getId() == null ? 0 : Math.floorMod(unicorn.getId(), STRIPES));
+        }
+        List<ReentrantLock> locks = indexes.stream().map(index -> stripes[index]).toList();
+        locks.forEach(ReentrantLock::lock);
+        return locks;
+    }
+}
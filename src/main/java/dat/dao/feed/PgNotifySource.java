@@ -0,0 +1,198 @@
+package dat.dao.feed;
+
+import dat.config.ConnectionPool;
+import dat.dao.DatabaseDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/***
+ * Feeds a ChangeFeed from PostgreSQL LISTEN/NOTIFY, so changes made outside the application (psql, other
+ * services, the COPY loader) reach consumers as well. A trigger on unicorns sends '<operation>:<id>' on the
+ * unicorns_changes channel when a transaction commits; this source listens on one dedicated pooled
+ * connection and publishes the row as it is when the notification arrives. Fast successive updates of a row
+ * may therefore show up as several events with its latest state.
+ * <p>
+ * Notifications sent while the source is not listening are lost; consumers re-sync with a snapshot after a
+ * restart. Feed a ChangeFeed either from this source or from a ChangeFeedDAO, not both, or every change made
+ * through the DAO is published twice.
+ */
+public class PgNotifySource implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(PgNotifySource.class);
+
+    public static final String CHANNEL = "unicorns_changes";
+    private static final int POLL_MILLIS = 500;
+    private static final long RECONNECT_MILLIS = 1000;
+
+    // Same as scripts/unicorns-change-notify.sql
+    private static final String TRIGGER_SQL = """
+            CREATE OR REPLACE FUNCTION unicorns_notify_change() RETURNS trigger AS $$
+            BEGIN
+                IF TG_OP = 'DELETE' THEN
+                    PERFORM pg_notify('unicorns_changes', TG_OP || ':' || OLD.id);
+                ELSE
+                    PERFORM pg_notify('unicorns_changes', TG_OP || ':' || NEW.id);
+                END IF;
+                RETURN NULL;
+            END;
+            $$ LANGUAGE plpgsql;
+            DROP TRIGGER IF EXISTS unicorns_change_notify ON unicorns;
+            CREATE TRIGGER unicorns_change_notify
+                AFTER INSERT OR UPDATE OR DELETE ON unicorns
+                FOR EACH ROW EXECUTE FUNCTION unicorns_notify_change();
+            """;
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseDAO dao;
+    private final ChangeFeed feed;
+    private volatile boolean running;
+    private Thread listener;
+
+    public PgNotifySource(ConnectionPool connectionPool, ChangeFeed feed)
+    {
+        this.connectionPool = connectionPool;
+        // Rows are read from the primary: a replica may not have the change yet
+        this.dao = new DatabaseDAO(connectionPool);
+        this.feed = feed;
+    }
+
+    /***
+     * Creates or replaces the notify trigger on unicorns, the same as scripts/unicorns-change-notify.sql.
+     */
+    public static void install(Connection connection) throws DaoException
+    {
+        try (Statement statement = connection.createStatement())
+        {
+            statement.execute(TRIGGER_SQL);
+        }
+        catch (SQLException e)
+        {
+            throw new DaoException("Error installing change trigger: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized void start()
+    {
+        if (running)
+        {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform().name("pg-notify-" + connectionPool.getName()).daemon().start(this::listen);
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        running = false;
+        if (listener != null)
+        {
+            listener.interrupt();
+            try
+            {
+                listener.join(POLL_MILLIS * 4L);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            listener = null;
+        }
+    }
+
+    private void listen()
+    {
+        while (running)
+        {
+            try (Connection connection = connectionPool.getConnection())
+            {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement())
+                {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                logger.info("Listening for unicorn changes on {}", CHANNEL);
+                while (running)
+                {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null)
+                    {
+                        for (PGNotification notification : notifications)
+                        {
+                            publish(notification.getParameter());
+                        }
+                    }
+                }
+                try (Statement statement = connection.createStatement())
+                {
+                    statement.execute("UNLISTEN " + CHANNEL);
+                }
+            }
+            catch (SQLException e)
+            {
+                if (!running)
+                {
+                    return;
+                }
+                logger.warn("Listening on {} failed, reconnecting: {}", CHANNEL, e.getMessage());
+                try
+                {
+                    Thread.sleep(RECONNECT_MILLIS);
+                }
+                catch (InterruptedException interrupted)
+                {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void publish(String payload)
+    {
+        int separator = payload.indexOf(':');
+        String operation;
+        int id;
+        try
+        {
+            operation = payload.substring(0, separator);
+            id = Integer.parseInt(payload.substring(separator + 1));
+        }
+        catch (RuntimeException e)
+        {
+            // Anyone may notify on the channel; a stray payload must not stop the listener thread
+            logger.warn("Skipping malformed notification on {}: '{}'", CHANNEL, payload);
+            return;
+        }
+        if ("DELETE".equals(operation))
+        {
+            feed.publish(ChangeEvent.Type.DELETED, id, null);
+            return;
+        }
+        try
+        {
+            Unicorn unicorn = dao.getById(id);
+            feed.publish("INSERT".equals(operation) ? ChangeEvent.Type.CREATED : ChangeEvent.Type.UPDATED, id, unicorn);
+        }
+        catch (DaoException e)
+        {
+            // Without a cause the row is gone already and its DELETE notification follows
+            if (e.getCause() != null)
+            {
+                logger.warn("Error reading changed unicorn {}: {}", id, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package dat.dao.index;
+
+import dat.dao.query.Query;
+import dat.dao.query.QueryField;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/***
+ * Equality index: one concurrent id set per distinct value. Buckets are created and dropped inside
+ * ConcurrentHashMap.compute, which runs once per call under the bin lock.
+ */
+final class HashIndex<T, V extends Comparable<? super V>> extends SecondaryIndex<T, V>
+{
+    private final ConcurrentHashMap<V, Set<Integer>> buckets = new ConcurrentHashMap<>();
+
+    HashIndex(QueryField<T, V> field)
+    {
+        super(field);
+    }
+
+    @Override
+    public boolean supports(Query.Operator operator)
+    {
+        return operator == Query.Operator.EQ;
+    }
+
+    @Override
+    public Stream<Integer> lookup(Query.Operator operator, V value)
+    {
+        if (!supports(operator))
+        {
+            throw new UnsupportedOperationException("Hash index on " + getField().attribute() + " only supports EQ, not " + operator);
+        }
+        return buckets.getOrDefault(value, Set.of()).stream();
+    }
+
+    @Override
+    protected void add(V key, int id)
+    {
+        buckets.compute(key, (k, ids) ->
+        {
+            Set<Integer> bucket = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            bucket.add(id);
+            return bucket;
+        });
+    }
+
+    @Override
+    protected void remove(V key, int id)
+    {
+        buckets.computeIfPresent(key, (k, ids) ->
+        {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
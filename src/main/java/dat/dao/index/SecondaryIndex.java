@@ -0,0 +1,82 @@
+package dat.dao.index;
+
+import dat.dao.query.Query;
+import dat.dao.query.QueryField;
+import dat.utils.ConcurrentIntObjectMap;
+
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/***
+ * Secondary index from a field value to entity ids, declared on a MemoryDAO with withIndex.
+ * The DAO calls update under the primary map's lock for the id, so changes to the same entity reach the
+ * index in the same order as the map. Lookups are lock-free and may briefly include stale ids, so callers
+ * re-check the current entity. Entities with a null field value are not indexed.
+ * @param <V> the indexed field type
+ */
+public abstract class SecondaryIndex<T, V extends Comparable<? super V>>
+{
+    private final QueryField<T, V> field;
+    // Indexed value per id, so moving an entity doesn't depend on the old entity object being unchanged
+    private final ConcurrentIntObjectMap<V> keys = new ConcurrentIntObjectMap<>();
+
+    protected SecondaryIndex(QueryField<T, V> field)
+    {
+        this.field = field;
+    }
+
+    /***
+     * @return a hash index, which answers equality lookups
+     */
+    public static <T, V extends Comparable<? super V>> SecondaryIndex<T, V> hash(QueryField<T, V> field)
+    {
+        return new HashIndex<>(field);
+    }
+
+    /***
+     * @return a skip-list index, which answers equality and range lookups
+     */
+    public static <T, V extends Comparable<? super V>> SecondaryIndex<T, V> sorted(QueryField<T, V> field)
+    {
+        return new SortedIndex<>(field);
+    }
+
+    public QueryField<T, V> getField()
+    {
+        return field;
+    }
+
+    /***
+     * Moves the id to the bucket for the entity's current value.
+     * @param entity the new state, or null if the entity was deleted
+     */
+    public void update(int id, T entity)
+    {
+        V newKey = entity == null ? null : field.valueOf(entity);
+        V oldKey = newKey == null ? keys.remove(id) : keys.put(id, newKey);
+        if (Objects.equals(oldKey, newKey))
+        {
+            return;
+        }
+        if (newKey != null)
+        {
+            add(newKey, id);
+        }
+        if (oldKey != null)
+        {
+            remove(oldKey, id);
+        }
+    }
+
+    public abstract boolean supports(Query.Operator operator);
+
+    /***
+     * @return the ids whose indexed value satisfies "value operator argument". An id being moved is added to its
+     * new key before it leaves the old one, so a lookup spanning both keys can list it twice.
+     */
+    public abstract Stream<Integer> lookup(Query.Operator operator, V value);
+
+    protected abstract void add(V key, int id);
+
+    protected abstract void remove(V key, int id);
+}
@@ -0,0 +1,63 @@
+package dat.dao.index;
+
+import dat.dao.query.Query;
+import dat.dao.query.QueryField;
+
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/***
+ * Range index: a skip list of (value, id) pairs, so there are no buckets to create or drop and every range
+ * lookup is a sub-set view between two sentinel pairs.
+ */
+final class SortedIndex<T, V extends Comparable<? super V>> extends SecondaryIndex<T, V>
+{
+    private record Entry<V>(V key, int id)
+    {
+    }
+
+    private final NavigableSet<Entry<V>> entries = new ConcurrentSkipListSet<>(
+            Comparator.<Entry<V>, V>comparing(Entry::key).thenComparingInt(Entry::id));
+
+    SortedIndex(QueryField<T, V> field)
+    {
+        super(field);
+    }
+
+    @Override
+    public boolean supports(Query.Operator operator)
+    {
+        return operator != Query.Operator.NE;
+    }
+
+    @Override
+    public Stream<Integer> lookup(Query.Operator operator, V value)
+    {
+        Entry<V> lowest = new Entry<>(value, Integer.MIN_VALUE);
+        Entry<V> highest = new Entry<>(value, Integer.MAX_VALUE);
+        NavigableSet<Entry<V>> range = switch (operator)
+        {
+            case EQ -> entries.subSet(lowest, true, highest, true);
+            case LT -> entries.headSet(lowest, false);
+            case LE -> entries.headSet(highest, true);
+            case GT -> entries.tailSet(highest, false);
+            case GE -> entries.tailSet(lowest, true);
+            case NE -> throw new UnsupportedOperationException("Sorted index on " + getField().attribute() + " does not support NE");
+        };
+        return range.stream().map(Entry::id);
+    }
+
+    @Override
+    protected void add(V key, int id)
+    {
+        entries.add(new Entry<>(key, id));
+    }
+
+    @Override
+    protected void remove(V key, int id)
+    {
+        entries.remove(new Entry<>(key, id));
+    }
+}
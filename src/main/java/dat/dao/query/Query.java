@@ -0,0 +1,251 @@
+package dat.dao.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/***
+ * Immutable filter, sort and keyset-pagination spec that every DAO backend evaluates the same way.
+ * Results are always ordered by the sort field with the id as tie breaker, so the last row of a page
+ * is enough to seek to the next one: {@code dao.find(query.after(lastRowOfPreviousPage))}.
+ * Sort fields are expected to be non-null.
+ */
+public final class Query<T>
+{
+    public enum Operator
+    {
+        EQ("="), NE("<>"), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String sql;
+
+        Operator(String sql)
+        {
+            this.sql = sql;
+        }
+
+        public String sql()
+        {
+            return sql;
+        }
+
+        boolean test(int comparison)
+        {
+            return switch (this)
+            {
+                case EQ -> comparison == 0;
+                case NE -> comparison != 0;
+                case LT -> comparison < 0;
+                case LE -> comparison <= 0;
+                case GT -> comparison > 0;
+                case GE -> comparison >= 0;
+            };
+        }
+    }
+
+    public enum Direction
+    {
+        ASC, DESC
+    }
+
+    public record Condition<T>(QueryField<T, ?> field, Operator operator, Comparable<?> value)
+    {
+        public boolean test(T entity)
+        {
+            Object actual = field.valueOf(entity);
+            return actual != null && operator.test(compare(actual, value));
+        }
+    }
+
+    private final QueryField<T, Integer> idField;
+    private final List<Condition<T>> conditions;
+    private final QueryField<T, ?> sortField;
+    private final Direction direction;
+    private final int limit;
+    private final Comparable<?> afterSortValue;
+    private final Integer afterId;
+
+    private Query(QueryField<T, Integer> idField, List<Condition<T>> conditions, QueryField<T, ?> sortField,
+                  Direction direction, int limit, Comparable<?> afterSortValue, Integer afterId)
+    {
+        this.idField = idField;
+        this.conditions = conditions;
+        this.sortField = sortField;
+        this.direction = direction;
+        this.limit = limit;
+        this.afterSortValue = afterSortValue;
+        this.afterId = afterId;
+    }
+
+    /***
+     * @param idField the unique id the keyset pagination seeks on
+     */
+    public static <T> Query<T> on(QueryField<T, Integer> idField)
+    {
+        return new Query<>(idField, List.of(), idField, Direction.ASC, 0, null, null);
+    }
+
+    public <V extends Comparable<? super V>> Query<T> where(QueryField<T, V> field, Operator operator, V value)
+    {
+        if (value == null)
+        {
+            throw new IllegalArgumentException("Condition value for " + field.attribute() + " must not be null");
+        }
+        List<Condition<T>> extended = new ArrayList<>(conditions);
+        extended.add(new Condition<>(field, operator, value));
+        return new Query<>(idField, Collections.unmodifiableList(extended), sortField, direction, limit, afterSortValue, afterId);
+    }
+
+    public Query<T> orderBy(QueryField<T, ?> field, Direction direction)
+    {
+        return new Query<>(idField, conditions, field, direction, limit, null, null);
+    }
+
+    /***
+     * @param limit maximum number of rows per page, 0 for no limit
+     */
+    public Query<T> limit(int limit)
+    {
+        if (limit < 0)
+        {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        return new Query<>(idField, conditions, sortField, direction, limit, afterSortValue, afterId);
+    }
+
+    /***
+     * @return the query for the page that follows the given row
+     */
+    public Query<T> after(T lastRow)
+    {
+        return new Query<>(idField, conditions, sortField, direction, limit, sortField.valueOf(lastRow), idField.valueOf(lastRow));
+    }
+
+    public List<Condition<T>> getConditions()
+    {
+        return conditions;
+    }
+
+    public QueryField<T, ?> getSortField()
+    {
+        return sortField;
+    }
+
+    public Direction getDirection()
+    {
+        return direction;
+    }
+
+    public int getLimit()
+    {
+        return limit;
+    }
+
+    public boolean hasCursor()
+    {
+        return afterId != null;
+    }
+
+    public boolean matches(T entity)
+    {
+        for (Condition<T> condition : conditions)
+        {
+            if (!condition.test(entity))
+            {
+                return false;
+            }
+        }
+        return !hasCursor() || isAfterCursor(entity);
+    }
+
+    /***
+     * Sort order of the query: the sort field, then the id, both in the query's direction.
+     */
+    public Comparator<T> comparator()
+    {
+        Comparator<T> comparator = (a, b) ->
+        {
+            int bySortField = compare(sortField.valueOf(a), sortField.valueOf(b));
+            return bySortField != 0 ? bySortField : Integer.compare(idField.valueOf(a), idField.valueOf(b));
+        };
+        return direction == Direction.ASC ? comparator : comparator.reversed();
+    }
+
+    /***
+     * Evaluates the query in memory.
+     */
+    public List<T> apply(Stream<T> entities)
+    {
+        Stream<T> page = entities.filter(this::matches).sorted(comparator());
+        return (limit > 0 ? page.limit(limit) : page).toList();
+    }
+
+    /***
+     * Renders the WHERE, ORDER BY and LIMIT clauses for SQL or JPQL. Bind values are appended to params in
+     * placeholder order.
+     * @param nameOf maps a field to its column (SQL) or its alias-qualified attribute (JPQL)
+     * @param placeholder maps the 1-based parameter position to its placeholder, e.g. "?" or "?1"
+     * @param includeLimit false when the limit is applied through the API, as with JPA's setMaxResults
+     */
+    public String render(Function<QueryField<T, ?>, String> nameOf, IntFunction<String> placeholder, List<Object> params, boolean includeLimit)
+    {
+        List<String> predicates = new ArrayList<>();
+        for (Condition<T> condition : conditions)
+        {
+            params.add(condition.value());
+            predicates.add(nameOf.apply(condition.field()) + " " + condition.operator().sql() + " " + placeholder.apply(params.size()));
+        }
+        String comparison = direction == Direction.ASC ? ">" : "<";
+        String id = nameOf.apply(idField);
+        if (hasCursor() && sortField == idField)
+        {
+            params.add(afterId);
+            predicates.add(id + " " + comparison + " " + placeholder.apply(params.size()));
+        }
+        else if (hasCursor())
+        {
+            // Expanded row comparison (sort, id) > (?, ?), which JPQL lacks; the composite index still serves it
+            String sort = nameOf.apply(sortField);
+            params.add(afterSortValue);
+            String first = placeholder.apply(params.size());
+            params.add(afterSortValue);
+            String second = placeholder.apply(params.size());
+            params.add(afterId);
+            String third = placeholder.apply(params.size());
+            predicates.add("(" + sort + " " + comparison + " " + first + " OR (" + sort + " = " + second + " AND " + id + " " + comparison + " " + third + "))");
+        }
+
+        StringBuilder clauses = new StringBuilder();
+        if (!predicates.isEmpty())
+        {
+            clauses.append(" WHERE ").append(String.join(" AND ", predicates));
+        }
+        clauses.append(" ORDER BY ");
+        if (sortField != idField)
+        {
+            clauses.append(nameOf.apply(sortField)).append(' ').append(direction).append(", ");
+        }
+        clauses.append(id).append(' ').append(direction);
+        if (includeLimit && limit > 0)
+        {
+            clauses.append(" LIMIT ").append(limit);
+        }
+        return clauses.toString();
+    }
+
+    private boolean isAfterCursor(T entity)
+    {
+        int bySortField = compare(sortField.valueOf(entity), afterSortValue);
+        int position = bySortField != 0 ? bySortField : Integer.compare(idField.valueOf(entity), afterId);
+        return direction == Direction.ASC ? position > 0 : position < 0;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b)
+    {
+        return ((Comparable) a).compareTo(b);
+    }
+}
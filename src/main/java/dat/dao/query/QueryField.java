@@ -0,0 +1,14 @@
+package dat.dao.query;
+
+import java.util.function.Function;
+
+/***
+ * A queryable entity field: its JPQL attribute name, its SQL column name and a getter for in-memory evaluation.
+ */
+public record QueryField<T, V extends Comparable<? super V>>(String attribute, String column, Function<T, V> getter)
+{
+    public V valueOf(T entity)
+    {
+        return getter.apply(entity);
+    }
+}
@@ -0,0 +1,27 @@
+package dat.dao.query;
+
+import dat.entities.Unicorn;
+
+/***
+ * The Unicorn fields that can be filtered and sorted on. Column names match the unicorns table.
+ */
+public final class UnicornFields
+{
+    public static final QueryField<Unicorn, Integer> ID = new QueryField<>("id", "id", Unicorn::getId);
+    public static final QueryField<Unicorn, String> NAME = new QueryField<>("name", "unicorn_name", Unicorn::getName);
+    public static final QueryField<Unicorn, Integer> AGE = new QueryField<>("age", "age", Unicorn::getAge);
+    public static final QueryField<Unicorn, String> COLOR = new QueryField<>("color", "color", Unicorn::getColor);
+    public static final QueryField<Unicorn, Double> POWER_STRENGTH = new QueryField<>("powerStrength", "powerstrength", Unicorn::getPowerStrength);
+
+    private UnicornFields()
+    {
+    }
+
+    /***
+     * @return an unfiltered query over all Unicorns ordered by id
+     */
+    public static Query<Unicorn> query()
+    {
+        return Query.on(ID);
+    }
+}
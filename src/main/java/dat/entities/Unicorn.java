@@ -1,28 +1,62 @@
 package dat.entities;
 
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Objects;
 
 @Entity
+@Cacheable  // only cached when HibernateConfig enables the second-level cache (DB_L2_CACHE)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "unicorns")
+@Table(name = "unicorns", indexes = {
+        // Composite (field, id) indexes serve both the filter and the keyset seek of dat.dao.query.Query
+        @Index(name = "idx_unicorns_name_id", columnList = "unicorn_name, id"),
+        @Index(name = "idx_unicorns_age_id", columnList = "age, id"),
+        @Index(name = "idx_unicorns_color_id", columnList = "color, id"),
+        @Index(name = "idx_unicorns_powerstrength_id", columnList = "powerstrength, id")
+})
 @Getter
 public class Unicorn
 {
+    // A pooled sequence lets Hibernate batch inserts, IDENTITY needs one round trip per row. Each nextval reserves
+    // a whole block, because HibernateConfig picks the pooled-lo optimizer, so the JDBC and reactive DAOs reserve
+    // blocks too (SequenceIdAllocator, CopyBulkLoader) and insert explicit ids. The column default is only for
+    // hand-written INSERTs and spends a block per row. scripts/migrate-unicorns-pooled-sequence.sql converts a
+    // table that still has an identity column.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "unicorns_seq")
+    @SequenceGenerator(name = "unicorns_seq", sequenceName = "unicorns_pooled_seq", allocationSize = 50)
+    @Column(columnDefinition = "integer default nextval('unicorns_pooled_seq')")
     @Setter
     private Integer id;
     @Setter
+    @Column(name = "unicorn_name")
     private String name;
+    @Setter
     private Integer age;
+    @Setter
     private String color;
     @Setter
+    @Column(name = "powerstrength")
     private Double powerStrength;
+    // Incremented by every update; an update carrying an older version fails with OptimisticLockDaoException.
+    // Null means unversioned: the update is applied whatever the stored version is.
+    @Version
+    @Setter
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private Integer version;
 
     public Unicorn() {    }
     public Unicorn(String name, int age, String color, double powerStrength)
@@ -33,6 +67,19 @@ public class Unicorn
         this.powerStrength = powerStrength;
     }
 
+    /***
+     * Detached copy of all fields including ID and version, e.g. a snapshot that later changes to the original do not affect.
+     */
+    public Unicorn(Unicorn other)
+    {
+        this.id = other.id;
+        this.name = other.name;
+        this.age = other.age;
+        this.color = other.color;
+        this.powerStrength = other.powerStrength;
+        this.version = other.version;
+    }
+
     @Override
     public String toString()
     {
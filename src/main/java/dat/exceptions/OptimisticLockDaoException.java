@@ -0,0 +1,20 @@
+package dat.exceptions;
+
+/***
+ * Thrown when an update carries a version that no longer matches the stored entity, because another writer
+ * updated it in between. Re-read the entity and apply the change again.
+ */
+public class OptimisticLockDaoException extends DaoException
+{
+
+    public OptimisticLockDaoException(String msg)
+    {
+        super(msg);
+    }
+
+    public OptimisticLockDaoException(String msg, Exception e)
+    {
+        super(msg, e);
+    }
+
+}
@@ -0,0 +1,78 @@
+package dat.load;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import dat.metrics.LatencyHistogram;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Records every garbage collection the JVM reports while open, per collector and action, e.g.
+ * "G1 Young Generation (end of minor GC)". Durations come from the GC notifications in whole milliseconds.
+ * For concurrent collectors the "Cycles" beans report whole cycles that mostly run beside the application,
+ * their "Pauses" beans the stop-the-world part.
+ */
+class GcPauseRecorder implements NotificationListener, AutoCloseable
+{
+    private final Map<String, LatencyHistogram> pauses = new ConcurrentHashMap<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+    GcPauseRecorder()
+    {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            if (collector instanceof NotificationEmitter emitter)
+            {
+                emitter.addNotificationListener(this, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback)
+    {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+        {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        pauses.computeIfAbsent(info.getGcName() + " (" + info.getGcAction() + ")", key -> new LatencyHistogram())
+                .record(TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration()));
+    }
+
+    /***
+     * @return the recorded durations per collector and action, sorted by name
+     */
+    Map<String, LatencyHistogram> getPauses()
+    {
+        return new TreeMap<>(pauses);
+    }
+
+    @Override
+    public void close()
+    {
+        for (NotificationEmitter emitter : emitters)
+        {
+            try
+            {
+                emitter.removeNotificationListener(this);
+            }
+            catch (ListenerNotFoundException e)
+            {
+                // Already gone
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package dat.load;
+
+import java.util.random.RandomGenerator;
+
+/***
+ * Picks which of the loaded keys an operation targets, as an index in [0, keys).
+ */
+@FunctionalInterface
+public interface KeyDistribution
+{
+    int next(RandomGenerator random);
+
+    static KeyDistribution uniform(int keys)
+    {
+        return random -> random.nextInt(keys);
+    }
+
+    /***
+     * Index 0 is the hottest key, index 1 the next and so on; callers shuffle keys so hot ones are not adjacent.
+     */
+    static KeyDistribution zipfian(int keys, double theta)
+    {
+        return new ZipfianDistribution(keys, theta);
+    }
+
+    static KeyDistribution of(LoadSettings settings)
+    {
+        return "zipfian".equals(settings.distribution())
+                ? zipfian(settings.keys(), settings.theta())
+                : uniform(settings.keys());
+    }
+}
@@ -0,0 +1,174 @@
+package dat.load;
+
+import dat.dao.ICrudDAO;
+import dat.dao.IPatchDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.metrics.LatencyHistogram;
+import dat.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/***
+ * Drives open-loop traffic against a DAO: operation k is scheduled at start + k / rate, whether or not the
+ * earlier ones have finished, and concurrency worker threads take the operations in schedule order. When the
+ * workers fall behind, operations start late and the delay counts in their response time, so a stall shows up
+ * in the percentiles of every operation it held back instead of in a single slow sample.
+ * <p>
+ * Reads are getById, writes updatePowerStrength(id, 1.0), which never fails on a version conflict.
+ */
+public class LoadGenerator
+{
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+    // A parked thread wakes up tens of microseconds late, which would count as response time; the rest is spun
+    private static final long SPIN_NANOS = 50_000;
+
+    private final ICrudDAO<Unicorn> dao;
+    private final IPatchDAO<Unicorn> patches;
+    private final int[] ids;
+    private final LoadSettings settings;
+    private final KeyDistribution keys;
+    private final MetricsRegistry registry;
+
+    /***
+     * @param ids the IDs of the loaded unicorns; index 0 is the hottest key of a zipfian run
+     * @param registry where the ConnectionPool reports its acquire times, MetricsRegistry.getInstance() by default
+     */
+    public <D extends ICrudDAO<Unicorn> & IPatchDAO<Unicorn>> LoadGenerator(D dao, int[] ids, LoadSettings settings, MetricsRegistry registry)
+    {
+        if (ids.length < settings.keys())
+        {
+            throw new IllegalArgumentException("Expected " + settings.keys() + " IDs but got " + ids.length);
+        }
+        this.dao = dao;
+        this.patches = dao;
+        this.ids = ids;
+        this.settings = settings;
+        this.keys = KeyDistribution.of(settings);
+        this.registry = registry;
+    }
+
+    /***
+     * Runs the warmup, then the measured phase, and reports the measured phase.
+     */
+    public LoadReport run() throws InterruptedException
+    {
+        if (!settings.warmup().isZero())
+        {
+            logger.info("Warming up for {}", settings.warmup());
+            runPhase(settings.warmup(), new Phase());
+        }
+        for (String name : acquireHistograms())
+        {
+            registry.histogram(name).reset();
+            registry.counter(timeoutsCounter(name)).reset();
+        }
+
+        logger.info("Measuring for {} at {} ops/s", settings.duration(), settings.rate());
+        Phase phase = new Phase();
+        Duration elapsed;
+        try (GcPauseRecorder gc = new GcPauseRecorder())
+        {
+            elapsed = runPhase(settings.duration(), phase);
+            List<LoadReport.PoolWait> poolWaits = new ArrayList<>();
+            // Pools created during the warmup are picked up here as well
+            for (String name : acquireHistograms())
+            {
+                String pool = name.substring("pool.".length(), name.length() - ".acquire".length());
+                poolWaits.add(new LoadReport.PoolWait(pool, registry.histogram(name), registry.counter(timeoutsCounter(name)).sum()));
+            }
+            return new LoadReport(settings, phase.operations.sum(), phase.errors.sum(), elapsed,
+                    phase.reads, phase.writes, phase.service, poolWaits, gc.getPauses());
+        }
+    }
+
+    private Duration runPhase(Duration length, Phase phase) throws InterruptedException
+    {
+        double intervalNanos = 1e9 / settings.rate();
+        long start = System.nanoTime();
+        long end = start + length.toNanos();
+        AtomicLong nextOperation = new AtomicLong();
+        List<Thread> workers = new ArrayList<>(settings.concurrency());
+        for (int i = 0; i < settings.concurrency(); i++)
+        {
+            workers.add(Thread.ofPlatform().name("load-" + i).start(() -> work(start, end, intervalNanos, nextOperation, phase)));
+        }
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private void work(long start, long end, double intervalNanos, AtomicLong nextOperation, Phase phase)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true)
+        {
+            long scheduled = start + (long) (nextOperation.getAndIncrement() * intervalNanos);
+            if (scheduled - end >= 0)
+            {
+                return;
+            }
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > SPIN_NANOS)
+            {
+                LockSupport.parkNanos(wait - SPIN_NANOS);
+            }
+            while (scheduled - System.nanoTime() > 0)
+            {
+                Thread.onSpinWait();
+            }
+            long started = System.nanoTime();
+            boolean read = random.nextDouble() < settings.readRatio();
+            int id = ids[keys.next(random)];
+            try
+            {
+                if (read)
+                {
+                    dao.getById(id);
+                }
+                else
+                {
+                    patches.updatePowerStrength(id, 1.0);
+                }
+            }
+            catch (DaoException e)
+            {
+                phase.errors.increment();
+            }
+            long finished = System.nanoTime();
+            (read ? phase.reads : phase.writes).record(finished - scheduled);
+            phase.service.record(finished - started);
+            phase.operations.increment();
+        }
+    }
+
+    // Named "pool.<pool>.acquire" by HikariPoolMetrics
+    private List<String> acquireHistograms()
+    {
+        return registry.histogramNames("pool.").stream().filter(name -> name.endsWith(".acquire")).toList();
+    }
+
+    private static String timeoutsCounter(String acquireHistogram)
+    {
+        return acquireHistogram.substring(0, acquireHistogram.length() - ".acquire".length()) + ".timeouts";
+    }
+
+    private static final class Phase
+    {
+        final LatencyHistogram reads = new LatencyHistogram();
+        final LatencyHistogram writes = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final LongAdder operations = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,82 @@
+package dat.load;
+
+import dat.metrics.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/***
+ * Results of the measured phase of a load test. Read and write latencies are response times, measured from
+ * when an operation was scheduled to start, so time spent waiting behind slow operations counts
+ * (corrected for coordinated omission). Service time is measured from when it actually started.
+ * @param operations operations completed, including failed ones
+ * @param poolWaits connection acquire times per ConnectionPool, from the pool metrics
+ * @param gcPauses garbage collections per collector and action
+ */
+public record LoadReport(LoadSettings settings, long operations, long errors, Duration elapsed,
+                         LatencyHistogram reads, LatencyHistogram writes, LatencyHistogram service,
+                         List<PoolWait> poolWaits, Map<String, LatencyHistogram> gcPauses)
+{
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    /***
+     * @param pool the Hikari pool name
+     */
+    public record PoolWait(String pool, LatencyHistogram acquire, long timeouts)
+    {
+    }
+
+    public double throughput()
+    {
+        return elapsed.isZero() ? 0.0 : operations * 1e9 / elapsed.toNanos();
+    }
+
+    public String format()
+    {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "Load test: backend=%s, reads=%.0f%%, keys=%d %s, target=%d ops/s, concurrency=%d, duration=%.1f s%n",
+                settings.backend(), settings.readRatio() * 100, settings.keys(),
+                "zipfian".equals(settings.distribution()) ? "zipfian(" + settings.theta() + ")" : "uniform",
+                settings.rate(), settings.concurrency(), settings.duration().toNanos() / 1e9));
+        text.append(String.format(Locale.ROOT, "Throughput: %.1f ops/s (%d ops, %d errors in %.1f s)%n",
+                throughput(), operations, errors, elapsed.toNanos() / 1e9));
+
+        text.append(String.format(Locale.ROOT, "%nLatency (us)%n%-34s %10s %10s %10s %10s %10s %10s%n", "", "count", "p50", "p90", "p99", "p99.9", "max"));
+        row(text, "read (response time)", reads);
+        row(text, "write (response time)", writes);
+        row(text, "all (service time)", service);
+
+        text.append(String.format(Locale.ROOT, "%nConnection pool wait (us)%n"));
+        if (poolWaits.isEmpty())
+        {
+            text.append("  no ConnectionPool in use\n");
+        }
+        for (PoolWait wait : poolWaits)
+        {
+            row(text, wait.pool(), wait.acquire());
+            text.append(String.format(Locale.ROOT, "  %-32s %10d%n", "timeouts", wait.timeouts()));
+        }
+
+        text.append(String.format(Locale.ROOT, "%nGC (ms)%n%-34s %10s %10s %10s %10s%n", "", "count", "total", "p99", "max"));
+        if (gcPauses.isEmpty())
+        {
+            text.append("  no collections\n");
+        }
+        gcPauses.forEach((collector, pauses) -> text.append(String.format(Locale.ROOT, "  %-32s %10d %10.0f %10d %10d%n",
+                collector, pauses.getCount(), pauses.getMean() * pauses.getCount() / 1e6,
+                pauses.getValueAtPercentile(99) / 1_000_000, pauses.getMax() / 1_000_000)));
+        return text.toString();
+    }
+
+    private static void row(StringBuilder text, String name, LatencyHistogram histogram)
+    {
+        text.append(String.format(Locale.ROOT, "  %-32s %10d", name, histogram.getCount()));
+        for (double percentile : PERCENTILES)
+        {
+            text.append(String.format(Locale.ROOT, " %10d", histogram.getValueAtPercentile(percentile) / 1_000));
+        }
+        text.append(String.format(Locale.ROOT, " %10d%n", histogram.getMax() / 1_000));
+    }
+}
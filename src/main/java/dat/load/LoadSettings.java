@@ -0,0 +1,119 @@
+package dat.load;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/***
+ * Settings for a load test run, parsed from key=value arguments:
+ * backend=memory|jdbc|jpa reads=0.9 keys=10000 distribution=uniform|zipfian theta=0.99 rate=1000 concurrency=16
+ * duration=30s warmup=5s. Durations take an ms, s or m suffix; a bare number is seconds.
+ * @param backend DAO the load is driven against
+ * @param readRatio share of operations that are getById, the rest are power strength patches
+ * @param keys unicorns loaded before the run; every operation targets one of them
+ * @param distribution how keys are picked: uniform, or zipfian with a few hot keys
+ * @param theta skew of the zipfian distribution, higher is hotter; ignored for uniform
+ * @param rate operations started per second, whether or not earlier ones have finished (open loop)
+ * @param concurrency worker threads issuing operations, i.e. the most operations in flight at once
+ * @param duration measured run time
+ * @param warmup run time before the measurement, not reported
+ */
+public record LoadSettings(String backend, double readRatio, int keys, String distribution, double theta,
+                           int rate, int concurrency, Duration duration, Duration warmup)
+{
+    public static final Set<String> BACKENDS = Set.of("memory", "jdbc", "jpa");
+    public static final Set<String> DISTRIBUTIONS = Set.of("uniform", "zipfian");
+
+    public LoadSettings
+    {
+        if (!BACKENDS.contains(backend))
+        {
+            throw new IllegalArgumentException("Unknown backend " + backend + ", expected one of " + BACKENDS);
+        }
+        if (!DISTRIBUTIONS.contains(distribution))
+        {
+            throw new IllegalArgumentException("Unknown distribution " + distribution + ", expected one of " + DISTRIBUTIONS);
+        }
+        if (readRatio < 0.0 || readRatio > 1.0)
+        {
+            throw new IllegalArgumentException("Read ratio must be between 0 and 1: " + readRatio);
+        }
+        if (keys < 1 || rate < 1 || concurrency < 1)
+        {
+            throw new IllegalArgumentException("Keys, rate and concurrency must be positive");
+        }
+        if (theta <= 0.0 || theta == 1.0)
+        {
+            throw new IllegalArgumentException("Zipfian theta must be positive and not 1: " + theta);
+        }
+        if (duration.isNegative() || duration.isZero() || warmup.isNegative())
+        {
+            throw new IllegalArgumentException("Duration must be positive and warmup not negative");
+        }
+    }
+
+    public static LoadSettings defaults()
+    {
+        return parse(new String[0]);
+    }
+
+    /***
+     * Applies every key=value argument over the defaults: memory backend, 90% reads, 10,000 uniform keys,
+     * 1000 ops/s from 16 workers for 30 s after a 5 s warmup.
+     */
+    public static LoadSettings parse(String[] args)
+    {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "backend", "memory",
+                "reads", "0.9",
+                "keys", "10000",
+                "distribution", "uniform",
+                "theta", "0.99",
+                "rate", "1000",
+                "concurrency", "16",
+                "duration", "30s",
+                "warmup", "5s"));
+        for (String arg : args)
+        {
+            String[] keyValue = arg.split("=", 2);
+            if (keyValue.length != 2)
+            {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            if (!options.containsKey(keyValue[0]))
+            {
+                throw new IllegalArgumentException("Unknown load test option " + keyValue[0] + ", expected one of " + options.keySet());
+            }
+            options.put(keyValue[0], keyValue[1].trim());
+        }
+        return new LoadSettings(
+                options.get("backend").toLowerCase(Locale.ROOT),
+                Double.parseDouble(options.get("reads")),
+                Integer.parseInt(options.get("keys")),
+                options.get("distribution").toLowerCase(Locale.ROOT),
+                Double.parseDouble(options.get("theta")),
+                Integer.parseInt(options.get("rate")),
+                Integer.parseInt(options.get("concurrency")),
+                parseDuration(options.get("duration")),
+                parseDuration(options.get("warmup")));
+    }
+
+    static Duration parseDuration(String value)
+    {
+        if (value.endsWith("ms"))
+        {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s"))
+        {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m"))
+        {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+}
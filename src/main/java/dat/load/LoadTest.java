@@ -0,0 +1,88 @@
+package dat.load;
+
+import dat.config.ConnectionPool;
+import dat.config.HibernateConfig;
+import dat.dao.DatabaseDAO;
+import dat.dao.EntityManagerDAO;
+import dat.dao.ICrudDAO;
+import dat.dao.IPatchDAO;
+import dat.dao.MemoryDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.metrics.MetricsRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/***
+ * Load test mode of the application jar: java -jar target/app.jar load backend=jdbc reads=0.95 distribution=zipfian
+ * rate=5000 concurrency=32 duration=60s (see LoadSettings for every option). Loads the keys, runs a
+ * LoadGenerator against the chosen backend, prints the LoadReport and deletes the keys again. The jdbc and
+ * jpa backends use the database configured in config.properties or the environment, as the application does.
+ */
+public class LoadTest
+{
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+    private static final long SHUFFLE_SEED = 42;
+
+    public static void main(String[] args) throws DaoException, InterruptedException
+    {
+        LoadSettings settings = LoadSettings.parse(args);
+        switch (settings.backend())
+        {
+            case "jdbc" ->
+            {
+                try
+                {
+                    run(new DatabaseDAO(ConnectionPool.getInstance()), settings);
+                }
+                finally
+                {
+                    ConnectionPool.closeAll();
+                }
+            }
+            case "jpa" ->
+            {
+                EntityManagerFactory emf = HibernateConfig.getEntityManagerFactory();
+                try
+                {
+                    run(new EntityManagerDAO(emf), settings);
+                }
+                finally
+                {
+                    emf.close();
+                }
+            }
+            default -> run(new MemoryDAO<Unicorn>(), settings);
+        }
+    }
+
+    private static <D extends ICrudDAO<Unicorn> & IPatchDAO<Unicorn>> void run(D dao, LoadSettings settings)
+            throws DaoException, InterruptedException
+    {
+        logger.info("Loading {} unicorns into the {} backend", settings.keys(), settings.backend());
+        List<Unicorn> unicorns = new ArrayList<>(settings.keys());
+        for (int i = 0; i < settings.keys(); i++)
+        {
+            unicorns.add(new Unicorn("Load" + i, i % 100, i % 2 == 0 ? "White" : "Black", 0.0));
+        }
+        List<Unicorn> loaded = dao.createAll(unicorns);
+        // Hot zipfian keys land on random IDs rather than the first ones created
+        Collections.shuffle(loaded, new Random(SHUFFLE_SEED));
+        int[] ids = loaded.stream().mapToInt(Unicorn::getId).toArray();
+        try
+        {
+            LoadReport report = new LoadGenerator(dao, ids, settings, MetricsRegistry.getInstance()).run();
+            System.out.println(report.format());
+        }
+        finally
+        {
+            dao.deleteAll(loaded);
+        }
+    }
+}
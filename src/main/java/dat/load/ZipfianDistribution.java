@@ -0,0 +1,51 @@
+package dat.load;
+
+import java.util.random.RandomGenerator;
+
+/***
+ * Zipfian ranks by the closed-form method of Gray et al., "Quickly Generating Billion-Record Synthetic
+ * Databases" (also used by YCSB): one random number and one pow() per pick, after an O(keys) setup for zeta.
+ */
+class ZipfianDistribution implements KeyDistribution
+{
+    private final int keys;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    ZipfianDistribution(int keys, double theta)
+    {
+        this.keys = keys;
+        this.theta = theta;
+        this.zetaN = zeta(keys, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1.0 - Math.pow(2.0 / keys, 1.0 - theta)) / (1.0 - zeta(2, theta) / zetaN);
+    }
+
+    @Override
+    public int next(RandomGenerator random)
+    {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0)
+        {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta))
+        {
+            return Math.min(1, keys - 1);
+        }
+        return Math.min(keys - 1, (int) (keys * Math.pow(eta * u - eta + 1.0, alpha)));
+    }
+
+    private static double zeta(int n, double theta)
+    {
+        double sum = 0.0;
+        for (int i = 1; i <= n; i++)
+        {
+            sum += 1.0 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,89 @@
+package dat.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Feeds HikariCP's pool statistics into a MetricsRegistry under "pool.<poolName>.*":
+ * acquire, usage and create latency histograms, a timeouts counter and active, idle, pending
+ * and total connection gauges.
+ */
+public class HikariPoolMetrics implements MetricsTrackerFactory
+{
+    private final MetricsRegistry registry;
+
+    public HikariPoolMetrics(MetricsRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats)
+    {
+        String prefix = "pool." + poolName;
+        registry.gauge(prefix + ".active", poolStats::getActiveConnections);
+        registry.gauge(prefix + ".idle", poolStats::getIdleConnections);
+        registry.gauge(prefix + ".pending", poolStats::getPendingThreads);
+        registry.gauge(prefix + ".total", poolStats::getTotalConnections);
+        registry.gauge(prefix + ".max", poolStats::getMaxConnections);
+        return new Tracker(registry, prefix);
+    }
+
+    private static final class Tracker implements IMetricsTracker
+    {
+        private final MetricsRegistry registry;
+        private final String prefix;
+        private final LatencyHistogram acquire;
+        private final LatencyHistogram usage;
+        private final LatencyHistogram create;
+        private final LongAdder timeouts;
+
+        Tracker(MetricsRegistry registry, String prefix)
+        {
+            this.registry = registry;
+            this.prefix = prefix;
+            this.acquire = registry.histogram(prefix + ".acquire");
+            this.usage = registry.histogram(prefix + ".usage");
+            this.create = registry.histogram(prefix + ".create");
+            this.timeouts = registry.counter(prefix + ".timeouts");
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos)
+        {
+            acquire.record(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis)
+        {
+            usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis)
+        {
+            create.record(TimeUnit.MILLISECONDS.toNanos(connectionCreatedMillis));
+        }
+
+        @Override
+        public void recordConnectionTimeout()
+        {
+            timeouts.increment();
+        }
+
+        // The pool is gone, so its gauges would only report stale numbers
+        @Override
+        public void close()
+        {
+            for (String gauge : new String[]{"active", "idle", "pending", "total", "max"})
+            {
+                registry.remove(prefix + "." + gauge);
+            }
+        }
+    }
+}
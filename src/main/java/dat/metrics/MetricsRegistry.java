@@ -0,0 +1,190 @@
+package dat.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/***
+ * In-process registry for latency histograms, counters and gauges. Look metrics up once and keep the
+ * reference; recording on a held histogram or counter never allocates or locks.
+ * Everything can be read as a text dump or through JMX under "dat.metrics:type=MetricsRegistry".
+ */
+public class MetricsRegistry
+{
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /***
+     * @return the JVM-wide registry the DAOs and the ConnectionPool report to by default
+     */
+    public static MetricsRegistry getInstance()
+    {
+        return DEFAULT;
+    }
+
+    public LatencyHistogram histogram(String name)
+    {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name)
+    {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /***
+     * Registers or replaces a gauge that is sampled whenever the registry is read.
+     */
+    public void gauge(String name, LongSupplier value)
+    {
+        gauges.put(name, value);
+    }
+
+    public void remove(String name)
+    {
+        histograms.remove(name);
+        counters.remove(name);
+        gauges.remove(name);
+    }
+
+    /***
+     * @return the names of the histograms that start with prefix, sorted
+     */
+    public List<String> histogramNames(String prefix)
+    {
+        return histograms.keySet().stream().filter(name -> name.startsWith(prefix)).sorted().toList();
+    }
+
+    /***
+     * Flat view of every metric. Histograms expand into count, mean, max and percentiles in microseconds.
+     */
+    public Map<String, Number> snapshot()
+    {
+        Map<String, Number> values = new TreeMap<>();
+        histograms.forEach((name, histogram) ->
+        {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean_us", histogram.getMean() / 1_000.0);
+            values.put(name + ".max_us", toMicros(histogram.getMax()));
+            for (double percentile : PERCENTILES)
+            {
+                values.put(name + ".p" + formatPercentile(percentile) + "_us", toMicros(histogram.getValueAtPercentile(percentile)));
+            }
+        });
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+
+    /***
+     * @return one "name value" line per metric, sorted by name
+     */
+    public String dump()
+    {
+        StringBuilder text = new StringBuilder();
+        snapshot().forEach((name, value) -> text.append(name).append(' ').append(value).append('\n'));
+        return text.toString();
+    }
+
+    /***
+     * Exposes the registry as a read-only dynamic MBean on the platform MBean server.
+     */
+    public void registerJmx() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("dat.metrics:type=MetricsRegistry");
+        if (!server.isRegistered(name))
+        {
+            server.registerMBean(new RegistryMBean(), name);
+        }
+    }
+
+    private static double toMicros(long nanos)
+    {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    private static String formatPercentile(double percentile)
+    {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile).replace('.', '_');
+    }
+
+    private class RegistryMBean implements DynamicMBean
+    {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException
+        {
+            Number value = snapshot().get(attribute);
+            if (value == null)
+            {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value.doubleValue();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes)
+        {
+            Map<String, Number> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+            {
+                Number value = values.get(attribute);
+                if (value != null)
+                {
+                    list.add(new Attribute(attribute, value.doubleValue()));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo()
+        {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : snapshot().keySet())
+            {
+                attributes.add(new MBeanAttributeInfo(name, "double", name, true, false, false));
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "DAO and connection pool metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute)
+        {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes)
+        {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature)
+        {
+            throw new UnsupportedOperationException("Metrics have no operations");
+        }
+    }
+}
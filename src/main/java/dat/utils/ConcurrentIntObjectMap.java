@@ -0,0 +1,436 @@
+package dat.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/***
+ * Concurrent hash map with primitive int keys, built from lock-striped open-addressing segments.
+ * Writes lock a single segment, reads never lock: a slot publishes its key before its value, so a
+ * reader that sees a value through the volatile array read also sees the matching key.
+ * Removed slots are marked with a tombstone and reclaimed when the segment is rehashed.
+ * @param <V> value type, null values are not allowed
+ */
+public class ConcurrentIntObjectMap<V>
+{
+    private static final Object TOMBSTONE = new Object();
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    /***
+     * Called while the key's segment is locked, after the map changed and before the change is visible
+     * to other writers of the same key, so derived structures (e.g. secondary indexes) stay in step with it.
+     */
+    @FunctionalInterface
+    public interface ChangeListener<V>
+    {
+        /***
+         * @param oldValue the previous value, null if the key was absent
+         * @param newValue the new value, null if the key was removed
+         */
+        void changed(int key, V oldValue, V newValue);
+    }
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+
+    public ConcurrentIntObjectMap()
+    {
+        this(64, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /***
+     * @param initialCapacity expected number of entries
+     * @param concurrencyLevel expected number of concurrently writing threads, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentIntObjectMap(int initialCapacity, int concurrencyLevel)
+    {
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel)
+        {
+            segmentCount <<= 1;
+        }
+        this.segments = (Segment<V>[]) new Segment[segmentCount];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        int perSegment = Math.max(MIN_SEGMENT_CAPACITY, tableSizeFor((int) (initialCapacity / segmentCount / LOAD_FACTOR) + 1));
+        for (int i = 0; i < segmentCount; i++)
+        {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    public V get(int key)
+    {
+        int hash = spread(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(int key)
+    {
+        return get(key) != null;
+    }
+
+    /***
+     * @return the previous value, or null if the key was absent
+     */
+    public V put(int key, V value)
+    {
+        return put(key, value, null);
+    }
+
+    /***
+     * Like put, notifying the listener under the segment lock.
+     */
+    public V put(int key, V value, ChangeListener<? super V> listener)
+    {
+        requireValue(value);
+        int hash = spread(key);
+        return segmentFor(hash).put(key, hash, value, false, listener);
+    }
+
+    /***
+     * @return the current value if present, otherwise null after storing the given value
+     */
+    public V putIfAbsent(int key, V value)
+    {
+        return putIfAbsent(key, value, null);
+    }
+
+    /***
+     * Like putIfAbsent, notifying the listener under the segment lock if the value was stored.
+     */
+    public V putIfAbsent(int key, V value, ChangeListener<? super V> listener)
+    {
+        requireValue(value);
+        int hash = spread(key);
+        return segmentFor(hash).put(key, hash, value, true, listener);
+    }
+
+    /***
+     * Replaces the value only if the key is already present.
+     * @return the previous value, or null if the key was absent and nothing was stored
+     */
+    public V replace(int key, V value)
+    {
+        return replace(key, value, null);
+    }
+
+    /***
+     * Like replace, notifying the listener under the segment lock if the key was present.
+     */
+    public V replace(int key, V value, ChangeListener<? super V> listener)
+    {
+        requireValue(value);
+        int hash = spread(key);
+        return segmentFor(hash).replace(key, hash, value, listener);
+    }
+
+    /***
+     * Atomically replaces the value of a present key with remapping(current), e.g. for compare-and-set or
+     * in-place updates; other writers of the segment wait while it runs, so keep it short.
+     * @param remapping gets the current value and returns the new one, which must not be null
+     * @return the new value, or null if the key was absent
+     */
+    public V computeIfPresent(int key, UnaryOperator<V> remapping, ChangeListener<? super V> listener)
+    {
+        int hash = spread(key);
+        return segmentFor(hash).computeIfPresent(key, hash, remapping, listener);
+    }
+
+    /***
+     * @return the removed value, or null if the key was absent
+     */
+    public V remove(int key)
+    {
+        return remove(key, null);
+    }
+
+    /***
+     * Like remove, notifying the listener under the segment lock if the key was present.
+     */
+    public V remove(int key, ChangeListener<? super V> listener)
+    {
+        int hash = spread(key);
+        return segmentFor(hash).remove(key, hash, listener);
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (Segment<V> segment : segments)
+        {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /***
+     * Weakly consistent snapshot of the values; entries written concurrently may or may not be included.
+     */
+    public List<V> values()
+    {
+        List<V> values = new ArrayList<>(size());
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    /***
+     * Lock-free, weakly consistent iteration over all entries.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<Integer, ? super V> action)
+    {
+        for (Segment<V> segment : segments)
+        {
+            Table table = segment.table;
+            for (int i = 0; i < table.length; i++)
+            {
+                Object value = table.values.get(i);
+                if (value != null && value != TOMBSTONE)
+                {
+                    action.accept(table.keys.get(i), (V) value);
+                }
+            }
+        }
+    }
+
+    public void clear()
+    {
+        for (Segment<V> segment : segments)
+        {
+            segment.clear();
+        }
+    }
+
+    private Segment<V> segmentFor(int hash)
+    {
+        return segments[segmentShift == 32 ? 0 : hash >>> segmentShift];
+    }
+
+    private static void requireValue(Object value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Null values are not supported");
+        }
+    }
+
+    // Murmur3 finalizer, spreads sequential ids over both segments (high bits) and slots (low bits)
+    private static int spread(int key)
+    {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int tableSizeFor(int capacity)
+    {
+        int n = -1 >>> Integer.numberOfLeadingZeros(Math.max(1, capacity - 1));
+        return n < 0 ? 1 : n + 1;
+    }
+
+    private static final class Table
+    {
+        final AtomicIntegerArray keys;
+        final AtomicReferenceArray<Object> values;
+        final int length;
+        final int mask;
+
+        Table(int length)
+        {
+            this.keys = new AtomicIntegerArray(length);
+            this.values = new AtomicReferenceArray<>(length);
+            this.length = length;
+            this.mask = length - 1;
+        }
+    }
+
+    private static final class Segment<V>
+    {
+        volatile Table table;
+        volatile int size;
+        int used; // live entries plus tombstones, guarded by this
+
+        Segment(int capacity)
+        {
+            this.table = new Table(capacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(int key, int hash)
+        {
+            Table t = table;
+            for (int i = hash & t.mask, probes = 0; probes < t.length; i = (i + 1) & t.mask, probes++)
+            {
+                Object value = t.values.get(i);
+                if (value == null)
+                {
+                    return null;
+                }
+                if (value != TOMBSTONE && t.keys.get(i) == key)
+                {
+                    return (V) value;
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(int key, int hash, V newValue, boolean onlyIfAbsent, ChangeListener<? super V> listener)
+        {
+            Table t = table;
+            int slot = find(t, key, hash);
+            if (slot >= 0)
+            {
+                V old = (V) t.values.get(slot);
+                if (!onlyIfAbsent)
+                {
+                    t.values.set(slot, newValue);
+                    notify(listener, key, old, newValue);
+                }
+                return old;
+            }
+            if (used + 1 > t.length * LOAD_FACTOR)
+            {
+                t = rehash();
+            }
+            int free = freeSlot(t, hash);
+            t.keys.set(free, key);
+            t.values.set(free, newValue); // publishes the key
+            used++;
+            size = size + 1;
+            notify(listener, key, null, newValue);
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V replace(int key, int hash, V newValue, ChangeListener<? super V> listener)
+        {
+            Table t = table;
+            int slot = find(t, key, hash);
+            if (slot < 0)
+            {
+                return null;
+            }
+            V old = (V) t.values.get(slot);
+            t.values.set(slot, newValue);
+            notify(listener, key, old, newValue);
+            return old;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V computeIfPresent(int key, int hash, UnaryOperator<V> remapping, ChangeListener<? super V> listener)
+        {
+            Table t = table;
+            int slot = find(t, key, hash);
+            if (slot < 0)
+            {
+                return null;
+            }
+            V old = (V) t.values.get(slot);
+            V newValue = remapping.apply(old);
+            requireValue(newValue);
+            t.values.set(slot, newValue);
+            notify(listener, key, old, newValue);
+            return newValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(int key, int hash, ChangeListener<? super V> listener)
+        {
+            Table t = table;
+            int slot = find(t, key, hash);
+            if (slot < 0)
+            {
+                return null;
+            }
+            V old = (V) t.values.get(slot);
+            t.values.set(slot, TOMBSTONE);
+            size = size - 1;
+            notify(listener, key, old, null);
+            return old;
+        }
+
+        private void notify(ChangeListener<? super V> listener, int key, V oldValue, V newValue)
+        {
+            if (listener != null)
+            {
+                listener.changed(key, oldValue, newValue);
+            }
+        }
+
+        synchronized void clear()
+        {
+            table = new Table(MIN_SEGMENT_CAPACITY);
+            used = 0;
+            size = 0;
+        }
+
+        private int find(Table t, int key, int hash)
+        {
+            for (int i = hash & t.mask, probes = 0; probes < t.length; i = (i + 1) & t.mask, probes++)
+            {
+                Object value = t.values.get(i);
+                if (value == null)
+                {
+                    return -1;
+                }
+                if (value != TOMBSTONE && t.keys.get(i) == key)
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int freeSlot(Table t, int hash)
+        {
+            int i = hash & t.mask;
+            while (t.values.get(i) != null)
+            {
+                i = (i + 1) & t.mask;
+            }
+            return i;
+        }
+
+        // Builds a fresh table without tombstones; readers keep using the old one until the volatile write
+        private Table rehash()
+        {
+            Table old = table;
+            int live = size;
+            int capacity = old.length;
+            while ((live + 1) > capacity * LOAD_FACTOR / 2)
+            {
+                capacity <<= 1;
+            }
+            Table fresh = new Table(capacity);
+            for (int i = 0; i < old.length; i++)
+            {
+                Object value = old.values.get(i);
+                if (value != null && value != TOMBSTONE)
+                {
+                    int key = old.keys.get(i);
+                    int free = freeSlot(fresh, spread(key));
+                    fresh.keys.set(free, key);
+                    fresh.values.set(free, value);
+                }
+            }
+            used = live;
+            table = fresh;
+            return fresh;
+        }
+    }
+}
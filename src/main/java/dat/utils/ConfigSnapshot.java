@@ -0,0 +1,121 @@
+package dat.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
+
+/***
+ * Immutable view of one properties resource, parsed once. Environment variables with the same key take
+ * precedence over the file, so DB_PASSWORD can be set in the environment without touching config.properties.
+ */
+public final class ConfigSnapshot
+{
+    private final String resourceName;
+    private final Map<String, String> values;
+    private final Function<String, String> env;
+
+    ConfigSnapshot(String resourceName, Map<String, String> values, Function<String, String> env)
+    {
+        this.resourceName = resourceName;
+        this.values = Map.copyOf(values);
+        this.env = env;
+    }
+
+    /***
+     * Snapshot of fixed values without environment overrides, e.g. for tests.
+     */
+    public static ConfigSnapshot of(String resourceName, Map<String, String> values)
+    {
+        return new ConfigSnapshot(resourceName, values, key -> null);
+    }
+
+    /***
+     * Parses a properties stream, trimming every value. A null stream gives an empty snapshot.
+     */
+    static ConfigSnapshot parse(String resourceName, InputStream is, Function<String, String> env) throws IOException
+    {
+        Map<String, String> values = new HashMap<>();
+        if (is != null)
+        {
+            Properties prop = new Properties();
+            prop.load(is);
+            prop.stringPropertyNames().forEach(name -> values.put(name, prop.getProperty(name).trim()));
+        }
+        return new ConfigSnapshot(resourceName, values, env);
+    }
+
+    /***
+     * @return the value from the environment or the file, or null if neither has it
+     */
+    public String get(String key)
+    {
+        String value = env.apply(key);
+        return value != null ? value.trim() : values.get(key);
+    }
+
+    public String get(String key, String fallback)
+    {
+        String value = get(key);
+        return value != null ? value : fallback;
+    }
+
+    /***
+     * @throws IllegalStateException if the key is missing
+     */
+    public String require(String key)
+    {
+        String value = get(key);
+        if (value == null)
+        {
+            throw new IllegalStateException(String.format("Property %s not found in %s or the environment", key, resourceName));
+        }
+        return value;
+    }
+
+    public int getInt(String key, int fallback)
+    {
+        String value = get(key);
+        return value != null ? parse(key, value, Integer::parseInt) : fallback;
+    }
+
+    public long getLong(String key, long fallback)
+    {
+        String value = get(key);
+        return value != null ? parse(key, value, Long::parseLong) : fallback;
+    }
+
+    public boolean getBoolean(String key, boolean fallback)
+    {
+        String value = get(key);
+        return value != null ? Boolean.parseBoolean(value) : fallback;
+    }
+
+    /***
+     * @return the keys read from the file, without those only in the environment
+     */
+    Set<String> fileKeys()
+    {
+        return values.keySet();
+    }
+
+    public String getResourceName()
+    {
+        return resourceName;
+    }
+
+    private <V> V parse(String key, String value, Function<String, V> parser)
+    {
+        try
+        {
+            return parser.apply(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalStateException(String.format("Property %s in %s is not a number: %s", key, resourceName, value), e);
+        }
+    }
+}
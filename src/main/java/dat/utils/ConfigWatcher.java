@@ -0,0 +1,162 @@
+package dat.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/***
+ * Watches a properties file with an NIO WatchService. Once the file has stopped changing for DEBOUNCE_MS it is
+ * parsed again, the snapshot in PropertyReader is replaced and the listener is called with it. Editors that save
+ * by writing a new file and renaming it are covered by also watching ENTRY_CREATE.
+ * A file that is empty or lacks a key of the previous snapshot, e.g. one caught half-written, is not applied;
+ * removing a key takes a restart.
+ */
+public class ConfigWatcher implements AutoCloseable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigWatcher.class);
+    static final long DEBOUNCE_MS = 200;
+
+    private final String resourceName;
+    private final Path file;
+    private final Consumer<ConfigSnapshot> listener;
+    private final WatchService watchService;
+    private final Thread thread;
+    // The last snapshot applied, or read at start; guarded by this
+    private ConfigSnapshot current;
+
+    public ConfigWatcher(String resourceName, Path file, Consumer<ConfigSnapshot> listener) throws IOException
+    {
+        this.resourceName = resourceName;
+        this.file = file.toAbsolutePath();
+        this.listener = listener;
+        this.current = read();
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        this.thread = new Thread(this::run, "config-watcher-" + resourceName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /***
+     * Watches a classpath resource, which has to be a plain file (e.g. target/classes/config.properties),
+     * not an entry inside a jar.
+     */
+    public static ConfigWatcher watch(String resourceName, Consumer<ConfigSnapshot> listener) throws IOException
+    {
+        URL url = ConfigWatcher.class.getClassLoader().getResource(resourceName);
+        if (url == null || !"file".equals(url.getProtocol()))
+        {
+            throw new IOException(String.format("Resource %s is not a file on disk and can't be watched: %s", resourceName, url));
+        }
+        try
+        {
+            return new ConfigWatcher(resourceName, Path.of(url.toURI()), listener);
+        }
+        catch (URISyntaxException e)
+        {
+            throw new IOException("Invalid resource location: " + url, e);
+        }
+    }
+
+    /***
+     * Parses the file again and notifies the listener. Called by the watch thread; public so it can be driven directly.
+     * @throws IOException if the file can't be read, is empty or lacks a key of the previous snapshot; nothing is applied then
+     */
+    public synchronized ConfigSnapshot reload() throws IOException
+    {
+        ConfigSnapshot snapshot = read();
+        if (snapshot.fileKeys().isEmpty())
+        {
+            throw new IOException(String.format("%s is empty", file));
+        }
+        Set<String> missing = new TreeSet<>(current.fileKeys());
+        missing.removeAll(snapshot.fileKeys());
+        if (!missing.isEmpty())
+        {
+            throw new IOException(String.format("%s lacks the keys %s", file, missing));
+        }
+        current = snapshot;
+        PropertyReader.replace(snapshot);
+        listener.accept(snapshot);
+        return snapshot;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    private ConfigSnapshot read() throws IOException
+    {
+        try (InputStream is = Files.newInputStream(file))
+        {
+            return ConfigSnapshot.parse(resourceName, is, System::getenv);
+        }
+    }
+
+    private void run()
+    {
+        try
+        {
+            while (true)
+            {
+                if (!changed(watchService.take()))
+                {
+                    continue;
+                }
+                // A save can take several events (truncate, write, rename); reload once they have stopped
+                WatchKey key;
+                while ((key = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null)
+                {
+                    changed(key);
+                }
+                reloadQuietly();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // Closed
+        }
+    }
+
+    private boolean changed(WatchKey key)
+    {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            changed |= event.context() instanceof Path path && file.getFileName().equals(path);
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reloadQuietly()
+    {
+        try
+        {
+            reload();
+            LOGGER.info("Reloaded {}", resourceName);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOGGER.warn("Could not reload {}, keeping the previous settings", resourceName, e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package dat.utils;
 
 import dat.config.ConnectionPool;
+import dat.dao.IdAllocator;
+import dat.dao.SequenceIdAllocator;
 import dat.entities.Unicorn;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
@@ -9,8 +11,6 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,31 +42,36 @@ public class Populator
     public List<Unicorn> populateDB()
     {
         ConnectionPool connectionPool = ConnectionPool.getInstance();
-        String sql = "INSERT INTO unicorns (unicorn_name, age, color, powerstrength) VALUES (?, ?, ?, ?)";
-        try (Connection db = connectionPool.getConnection();
-             PreparedStatement ps = db.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
+        String sql = "INSERT INTO unicorns (unicorn_name, age, color, powerstrength, id) VALUES (?, ?, ?, ?, ?)";
+        try
         {
-            db.createStatement().executeUpdate("DELETE FROM unicorns");
-            ps.setString(1, u1.getName());
-            ps.setInt(2, u1.getAge());
-            ps.setString(3, u1.getColor());
-            ps.setDouble(4, u1.getPowerStrength());
-            ps.addBatch();
-
-            ps.setString(1, u2.getName());
-            ps.setInt(2, u2.getAge());
-            ps.setString(3, u2.getColor());
-            ps.setDouble(4, u2.getPowerStrength());
-            ps.addBatch();
-
-            ps.executeBatch();
-
-            ResultSet rs = ps.getGeneratedKeys();
-            if (rs.next()) u1.setId(rs.getInt(1));
-            if (rs.next()) u2.setId(rs.getInt(1));
-
-
+            // One block of the pooled sequence for both rows, instead of one per row through the column default
+            IdAllocator ids = new SequenceIdAllocator(connectionPool);
+            int id1 = ids.nextId();
+            int id2 = ids.nextId();
+            try (Connection db = connectionPool.getConnection();
+                 PreparedStatement ps = db.prepareStatement(sql))
+            {
+                db.createStatement().executeUpdate("DELETE FROM unicorns");
+                ps.setString(1, u1.getName());
+                ps.setInt(2, u1.getAge());
+                ps.setString(3, u1.getColor());
+                ps.setDouble(4, u1.getPowerStrength());
+                ps.setInt(5, id1);
+                ps.addBatch();
+
+                ps.setString(1, u2.getName());
+                ps.setInt(2, u2.getAge());
+                ps.setString(3, u2.getColor());
+                ps.setDouble(4, u2.getPowerStrength());
+                ps.setInt(5, id2);
+                ps.addBatch();
+
+                ps.executeBatch();
+                u1.setId(id1);
+                u2.setId(id2);
             }
+        }
         catch (Exception e)
         {
             logger.error("Error populating database", e);
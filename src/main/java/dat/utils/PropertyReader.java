@@ -5,29 +5,73 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Properties;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/***
+ * Reads settings from properties resources on the classpath. Each resource is parsed once into a
+ * ConfigSnapshot and memoized; environment variables with the same key override the file values.
+ * A ConfigWatcher can replace a snapshot when the file changes on disk.
+ */
 public class PropertyReader
 {
     private static final Logger logger = LoggerFactory.getLogger(PropertyReader.class);
+    private static final Map<String, ConfigSnapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    /***
+     * @return the memoized snapshot of the resource, parsed on first use. A missing resource gives an empty snapshot.
+     */
+    public static ConfigSnapshot getConfig(String resourceName)
+    {
+        return SNAPSHOTS.computeIfAbsent(resourceName, PropertyReader::load);
+    }
 
     public static String getPropertyValue(String propName, String resourceName)
     {
         // REMEMBER TO BUILD WITH MAVEN FIRST. Read the property file if not deployed (else read system vars instead)
         // Read from ressources/config.properties or from pom.xml depending on the ressourceName
+        String value = getConfig(resourceName).get(propName);
+        if (value == null) {
+            throw new RuntimeException(String.format("Property %s not found in %s. Did you remember to build the project with MAVEN?", propName, resourceName));
+        }
+        return value;
+    }
+
+    /***
+     * Like getPropertyValue, but returns the fallback when the property is missing.
+     */
+    public static String getPropertyValue(String propName, String resourceName, String fallback)
+    {
+        return getConfig(resourceName).get(propName, fallback);
+    }
+
+    /***
+     * Like getPropertyValue, but for optional settings: returns null when the property or the resource is missing.
+     */
+    public static String getOptionalPropertyValue(String propName, String resourceName)
+    {
+        return getConfig(resourceName).get(propName);
+    }
+
+    /***
+     * Replaces the memoized snapshot, e.g. after the file changed on disk.
+     */
+    static void replace(ConfigSnapshot snapshot)
+    {
+        SNAPSHOTS.put(snapshot.getResourceName(), snapshot);
+    }
+
+    private static ConfigSnapshot load(String resourceName)
+    {
         try (InputStream is = PropertyReader.class.getClassLoader().getResourceAsStream(resourceName)) {
-            Properties prop = new Properties();
-            prop.load(is);
-
-            String value = prop.getProperty(propName);
-            if (value != null) {
-                return value.trim();  // Trim whitespace
-            } else {
-                throw new RuntimeException(String.format("Property %s not found in %s", propName, resourceName));
+            if (is == null) {
+                logger.warn("Resource {} not found on the classpath, only environment variables will be used", resourceName);
             }
+            return ConfigSnapshot.parse(resourceName, is, System::getenv);
         } catch (IOException ex) {
             logger.error(ex.getMessage());
-            throw new RuntimeException(String.format("Could not read property %s. Did you remember to build the project with MAVEN?", propName));
+            throw new UncheckedIOException(String.format("Could not read %s", resourceName), ex);
         }
     }
 }
@@ -0,0 +1,86 @@
+package dat.config;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class PoolAutoTunerTest
+{
+    private final Map<String, Integer> state = new HashMap<>(Map.of(
+            "MaximumPoolSize", 8,
+            "MinimumIdle", 2,
+            "ActiveConnections", 0,
+            "ThreadsAwaitingConnection", 0));
+
+    @Test
+    void testGrowsWhileThreadsAreWaiting()
+    {
+        try (PoolAutoTuner tuner = new PoolAutoTuner(poolBean(), configBean(), 2, 12, 60_000))
+        {
+            state.put("ActiveConnections", 8);
+            state.put("ThreadsAwaitingConnection", 3);
+
+            assertThat(tuner.tune(), is(11));
+            assertThat(tuner.tune(), is(12)); // capped at the upper bound
+            assertThat(state.get("MaximumPoolSize"), is(12));
+        }
+    }
+
+    @Test
+    void testShrinksAfterRepeatedIdleSamples()
+    {
+        try (PoolAutoTuner tuner = new PoolAutoTuner(poolBean(), configBean(), 7, 12, 60_000))
+        {
+            state.put("ActiveConnections", 1);
+
+            assertThat(tuner.tune(), is(8));
+            assertThat(tuner.tune(), is(8));
+            assertThat(tuner.tune(), is(7));
+            for (int i = 0; i < 10; i++)
+            {
+                tuner.tune();
+            }
+            assertThat(state.get("MaximumPoolSize"), is(7)); // never below the lower bound
+        }
+    }
+
+    @Test
+    void testPoolSettingKeys()
+    {
+        assertThat(PoolSettings.key(PoolSettings.DEFAULT_POOL, "POOL_MAX_SIZE"), is("DB_POOL_MAX_SIZE"));
+        assertThat(PoolSettings.key("read", "POOL_MAX_SIZE"), is("DB_READ_POOL_MAX_SIZE"));
+        assertThat(PoolSettings.defaults().maximumPoolSize(), is(10));
+    }
+
+    private HikariPoolMXBean poolBean()
+    {
+        return (HikariPoolMXBean) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HikariPoolMXBean.class},
+                (proxy, method, args) -> state.getOrDefault(method.getName().substring(3), 0));
+    }
+
+    private HikariConfigMXBean configBean()
+    {
+        return (HikariConfigMXBean) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HikariConfigMXBean.class},
+                (proxy, method, args) ->
+                {
+                    String name = method.getName();
+                    if (name.equals("getPoolName"))
+                    {
+                        return "test-pool";
+                    }
+                    if (name.startsWith("set"))
+                    {
+                        state.put(name.substring(3), (Integer) args[0]);
+                        return null;
+                    }
+                    return state.getOrDefault(name.substring(3), 0);
+                });
+    }
+}
@@ -0,0 +1,99 @@
+package dat.config;
+
+import dat.dao.DatabaseDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/***
+ * Uses two unrelated Postgres containers as primary and "replica", so every row shows which one served it.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class ReplicaRouterTest
+{
+    private static final String URL = "jdbc:tc:postgresql:16.2:///%s";
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS unicorns (id SERIAL PRIMARY KEY, unicorn_name VARCHAR(255), age INT, color VARCHAR(255), powerstrength DOUBLE PRECISION, version INT NOT NULL DEFAULT 0)";
+
+    private static ConnectionPool primary;
+    private static ConnectionPool replica;
+
+    @BeforeAll
+    static void setUpPools() throws SQLException
+    {
+        primary = ConnectionPool.getInstance("replica-test-primary", PoolSettings.defaults(), "test", "test", URL, "primary_db");
+        replica = ConnectionPool.getInstance("replica-test-replica", PoolSettings.defaults(), "test", "test", URL, "replica_db");
+        execute(primary, CREATE_TABLE);
+        execute(replica, CREATE_TABLE);
+        execute(replica, "INSERT INTO unicorns (unicorn_name, age, color, powerstrength) VALUES ('ReplicaOnly', 3, 'Silver', 7.0)");
+    }
+
+    @AfterAll
+    static void tearDownPools()
+    {
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    void testReadsUseReplicaAndWritesUsePrimary() throws DaoException
+    {
+        try (ReplicaRouter router = new ReplicaRouter(primary, List.of(replica), 0))
+        {
+            DatabaseDAO dao = new DatabaseDAO(router, Duration.ZERO);
+            Unicorn created = dao.create(new Unicorn("PrimaryOnly", 4, "Gold", 9.0));
+
+            assertThat(dao.getAll(), contains(hasProperty("name", is("ReplicaOnly"))));
+            assertThrows(DaoException.class, () -> dao.getById(created.getId() + 1000));
+        }
+    }
+
+    @Test
+    void testReadYourWritesStaysOnPrimary() throws DaoException
+    {
+        try (ReplicaRouter router = new ReplicaRouter(primary, List.of(replica), 0))
+        {
+            DatabaseDAO dao = new DatabaseDAO(router, Duration.ofMinutes(1));
+            Unicorn created = dao.create(new Unicorn("JustWritten", 2, "Green", 5.0));
+
+            assertThat(dao.getById(created.getId()).getName(), is("JustWritten"));
+            assertThat(dao.getAll(), hasItem(hasProperty("name", is("JustWritten"))));
+        }
+    }
+
+    @Test
+    void testUnhealthyReplicaFallsBackToPrimary() throws DaoException
+    {
+        ConnectionPool broken = ConnectionPool.getInstance("replica-test-broken", PoolSettings.defaults(), "test", "test", URL, "broken_db");
+        try (ReplicaRouter router = new ReplicaRouter(primary, List.of(broken), 0))
+        {
+            broken.close();
+            router.checkHealth();
+            assertThat(router.isHealthy(0), is(false));
+
+            DatabaseDAO dao = new DatabaseDAO(router, Duration.ZERO);
+            assertThat(dao.getAll(), not(hasItem(hasProperty("name", is("ReplicaOnly")))));
+        }
+    }
+
+    private static void execute(ConnectionPool pool, String sql) throws SQLException
+    {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement())
+        {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package dat.config;
+
+import dat.dao.EntityManagerDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.metrics.MetricsRegistry;
+import dat.utils.ConfigSnapshot;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/***
+ * Counts prepared statements through Hibernate's Statistics to tell cached reads from reads that went to Postgres.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class SecondLevelCacheTest
+{
+    private static EntityManagerFactory emf;
+    private static Statistics statistics;
+    private static EntityManagerDAO dao;
+
+    @BeforeAll
+    static void setUpFactory()
+    {
+        emf = HibernateConfig.createEntityManagerFactoryForTest(ConfigSnapshot.of("test", Map.of(
+                "DB_L2_CACHE", "true",
+                "DB_QUERY_CACHE", "true")));
+        statistics = HibernateConfig.getStatistics(emf);
+        dao = new EntityManagerDAO(emf);
+    }
+
+    @AfterAll
+    static void tearDownFactory()
+    {
+        emf.close();
+    }
+
+    @BeforeEach
+    void clear()
+    {
+        emf.getCache().evictAll();
+        statistics.clear();
+    }
+
+    @Test
+    void testSecondFindSkipsSql() throws DaoException
+    {
+        Unicorn created = dao.create(new Unicorn("Cached", 5, "White", 8.0));
+        dao.getById(created.getId());
+        long statements = statistics.getPrepareStatementCount();
+
+        Unicorn cached = dao.getById(created.getId());
+
+        assertThat(cached.getName(), is("Cached"));
+        assertThat(statistics.getPrepareStatementCount(), is(statements));
+        assertThat(statistics.getSecondLevelCacheHitCount(), greaterThanOrEqualTo(1L));
+    }
+
+    @Test
+    void testUpdateAndDeleteInvalidateEntity() throws DaoException
+    {
+        Unicorn created = dao.create(new Unicorn("Stale", 5, "Black", 3.0));
+        dao.getById(created.getId());
+
+        created.setAge(6);
+        dao.update(created);
+        assertThat(dao.getById(created.getId()).getAge(), is(6));
+
+        dao.delete(created);
+        assertThat(emf.getCache().contains(Unicorn.class, created.getId()), is(false));
+    }
+
+    @Test
+    void testQueryCacheHitsUntilWrite() throws DaoException
+    {
+        dao.create(new Unicorn("First", 2, "Pink", 4.0));
+        dao.getAll();
+        dao.getAll();
+        assertThat(statistics.getQueryCacheHitCount(), is(1L));
+
+        dao.create(new Unicorn("Second", 3, "Pink", 5.0));
+        long misses = statistics.getQueryCacheMissCount();
+
+        assertThat(dao.getAll(), hasItem(hasProperty("name", is("Second"))));
+        assertThat(statistics.getQueryCacheMissCount(), is(misses + 1));
+    }
+
+    @Test
+    void testClosingFactoryRemovesItsGauges()
+    {
+        Set<String> before = cacheGauges();
+        EntityManagerFactory other = HibernateConfig.createEntityManagerFactoryForTest(ConfigSnapshot.of("test", Map.of("DB_L2_CACHE", "true")));
+        Set<String> added = cacheGauges();
+        added.removeAll(before);
+        assertThat(added, hasSize(6));
+
+        other.close();
+
+        assertThat(cacheGauges(), is(before));
+    }
+
+    private static Set<String> cacheGauges()
+    {
+        return MetricsRegistry.getInstance().snapshot().keySet().stream()
+                .filter(name -> name.startsWith("hibernate.emf-"))
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,101 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AsyncCrudDAOTest
+{
+    private static final int POOL_SIZE = 10;
+
+    @Test
+    void testConcurrencyIsBoundedByPermits()
+    {
+        SlowDAO slow = new SlowDAO(2);
+        try (AsyncCrudDAO<Unicorn> dao = new AsyncCrudDAO<>(slow, POOL_SIZE))
+        {
+            List<CompletableFuture<Unicorn>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+            {
+                futures.add(dao.getById(1));
+            }
+            futures.forEach(CompletableFuture::join);
+        }
+        assertThat(slow.maxConcurrent.get(), is(lessThanOrEqualTo(POOL_SIZE)));
+        assertThat(slow.maxConcurrent.get(), is(greaterThan(1)));
+    }
+
+    @Test
+    void testFailureCompletesExceptionally()
+    {
+        try (AsyncCrudDAO<Unicorn> dao = new AsyncCrudDAO<>(new MemoryDAO<>(), POOL_SIZE))
+        {
+            CompletionException exception = assertThrows(CompletionException.class, () -> dao.getById(999).join());
+            assertThat(exception.getCause(), instanceOf(DaoException.class));
+            assertThat(exception.getCause().getMessage(), is("Error fetching entity by ID: Entity with this ID does not exist"));
+        }
+    }
+
+    @Test
+    void testErrorCompletesExceptionally()
+    {
+        MemoryDAO<Unicorn> broken = new MemoryDAO<>()
+        {
+            @Override
+            public Unicorn getById(int id)
+            {
+                throw new OutOfMemoryError("Simulated");
+            }
+        };
+        try (AsyncCrudDAO<Unicorn> dao = new AsyncCrudDAO<>(broken, POOL_SIZE))
+        {
+            CompletionException exception = assertThrows(CompletionException.class, () -> dao.getById(1).orTimeout(5, TimeUnit.SECONDS).join());
+            assertThat(exception.getCause(), instanceOf(OutOfMemoryError.class));
+        }
+    }
+
+    private static class SlowDAO extends MemoryDAO<Unicorn>
+    {
+        private final long delayMs;
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        SlowDAO(long delayMs)
+        {
+            super(Map.of(1, new Unicorn("Sprinkles", 5, "Pink", 10.0)));
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public Unicorn getById(int id) throws DaoException
+        {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try
+            {
+                Thread.sleep(delayMs);
+                return super.getById(id);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new DaoException("Interrupted", e);
+            }
+            finally
+            {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+}
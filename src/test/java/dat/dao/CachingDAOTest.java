@@ -0,0 +1,230 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CachingDAOTest
+{
+    private CountingDAO backend;
+    private Unicorn u1;
+
+    @BeforeEach
+    void setUp()
+    {
+        u1 = new Unicorn("Unicorn1", 5, "White", 10.0);
+        u1.setId(1);
+        backend = new CountingDAO(new MemoryDAO<>(Map.of(1, u1)));
+    }
+
+    @Test
+    void testGetById_servedFromCache() throws DaoException
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId, CacheSettings.of(10, Duration.ofMinutes(1)));
+
+        dao.getById(1);
+        dao.getById(1);
+        dao.getById(1);
+
+        assertThat(backend.reads.get(), is(1));
+        assertThat(dao.getHitCount(), is(2L));
+        assertThat(dao.getMissCount(), is(1L));
+    }
+
+    @Test
+    void testNegativeCaching() throws DaoException
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId,
+                CacheSettings.of(10, Duration.ofMinutes(1)).withNegativeCaching(Duration.ofMinutes(1)));
+
+        DaoException first = assertThrows(DaoException.class, () -> dao.getById(999));
+        DaoException second = assertThrows(DaoException.class, () -> dao.getById(999));
+
+        assertThat(second.getMessage(), is(first.getMessage()));
+        assertThat(backend.reads.get(), is(1));
+
+        // Creating the entity replaces the negative entry
+        Unicorn created = dao.create(new Unicorn("Unicorn2", 7, "Black", 12.0));
+        assertThat(dao.getById(created.getId()), is(created));
+    }
+
+    @Test
+    void testSizeEviction() throws DaoException
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId, CacheSettings.of(2, Duration.ofMinutes(1)));
+
+        for (int i = 0; i < 5; i++)
+        {
+            dao.create(new Unicorn("Unicorn" + i, i, "Grey", 1.0));
+        }
+
+        assertThat(dao.size(), is(2));
+        assertThat(dao.getEvictionCount(), is(3L));
+    }
+
+    @Test
+    void testTtlExpiry() throws Exception
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId, CacheSettings.of(10, Duration.ofMillis(20)));
+
+        dao.getById(1);
+        Thread.sleep(40);
+        dao.getById(1);
+
+        assertThat(backend.reads.get(), is(2));
+        assertThat(dao.getEvictionCount(), is(1L));
+    }
+
+    @Test
+    void testUpdate_writesThrough() throws DaoException
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId, CacheSettings.of(10, Duration.ofMinutes(1)));
+        dao.getById(1);
+
+        Unicorn changed = new Unicorn("Renamed", 6, "White", 11.0);
+        changed.setId(1);
+        dao.update(changed);
+
+        assertThat(dao.getById(1), is(changed));
+        assertThat(backend.getById(1), is(changed));
+    }
+
+    @Test
+    void testDelete_invalidates() throws DaoException
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId, CacheSettings.of(10, Duration.ofMinutes(1)));
+        dao.getById(1);
+
+        dao.delete(u1);
+
+        DaoException exception = assertThrows(DaoException.class, () -> dao.getById(1));
+        assertThat(exception.getMessage(), is("Error fetching entity by ID: Entity with this ID does not exist"));
+    }
+
+    @Test
+    void testWriteBehind_coalescesUpdates() throws DaoException
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId,
+                CacheSettings.of(10, Duration.ofMinutes(1)).withWriteBehind(Duration.ofHours(1), 100));
+
+        Unicorn latest = null;
+        for (int i = 0; i < 10; i++)
+        {
+            latest = new Unicorn("Version" + i, 5, "White", i);
+            latest.setId(1);
+            dao.update(latest);
+        }
+
+        assertThat(dao.getById(1), is(latest));
+        assertThat(dao.pendingWrites(), is(1));
+        assertThat(backend.writes.get(), is(0));
+
+        dao.close();
+
+        assertThat(dao.pendingWrites(), is(0));
+        assertThat(backend.writes.get(), is(1));
+        assertThat(backend.getById(1), is(latest));
+    }
+
+    @Test
+    void testWriteOfAnotherIdDuringLoadStillCaches() throws DaoException
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId, CacheSettings.of(10, Duration.ofMinutes(1)));
+        backend.duringRead = () -> dao.create(new Unicorn("Other", 2, "Grey", 1.0));
+
+        dao.getById(1);
+        backend.duringRead = null;
+        dao.getById(1);
+
+        assertThat(backend.reads.get(), is(1));
+    }
+
+    @Test
+    void testWriteOfSameIdDuringLoadWins() throws DaoException
+    {
+        CachingDAO<Unicorn> dao = new CachingDAO<>(backend, Unicorn::getId, CacheSettings.of(10, Duration.ofMinutes(1)));
+        Unicorn changed = new Unicorn("Renamed", 6, "White", 11.0);
+        changed.setId(1);
+        backend.duringRead = () -> dao.update(changed);
+
+        Unicorn stale = dao.getById(1);
+        backend.duringRead = null;
+
+        assertThat(stale.getName(), is("Unicorn1"));
+        assertThat(dao.getById(1), is(changed));
+    }
+
+    private interface Write
+    {
+        void run() throws DaoException;
+    }
+
+    private static class CountingDAO implements ICrudDAO<Unicorn>
+    {
+        private final ICrudDAO<Unicorn> delegate;
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicInteger writes = new AtomicInteger();
+        // Runs after the entity was read and before it is returned, like a write racing with the load
+        private volatile Write duringRead;
+
+        CountingDAO(ICrudDAO<Unicorn> delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Unicorn create(Unicorn entity) throws DaoException
+        {
+            return delegate.create(entity);
+        }
+
+        @Override
+        public Unicorn getById(int id) throws DaoException
+        {
+            reads.incrementAndGet();
+            Unicorn read = delegate.getById(id);
+            if (duringRead != null)
+            {
+                duringRead.run();
+            }
+            return read;
+        }
+
+        @Override
+        public List<Unicorn> getAll() throws DaoException
+        {
+            return delegate.getAll();
+        }
+
+        @Override
+        public Unicorn update(Unicorn entity) throws DaoException
+        {
+            writes.incrementAndGet();
+            return delegate.update(entity);
+        }
+
+        @Override
+        public List<Unicorn> updateAll(Collection<Unicorn> entities) throws DaoException
+        {
+            writes.addAndGet(entities.size());
+            return delegate.updateAll(entities);
+        }
+
+        @Override
+        public void delete(Unicorn entity) throws DaoException
+        {
+            delegate.delete(entity);
+        }
+    }
+}
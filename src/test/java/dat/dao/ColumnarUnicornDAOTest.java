@@ -0,0 +1,80 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ColumnarUnicornDAOTest
+{
+    private static final String[] COLORS = {"White", "Black", "Pink", "Blue"};
+
+    @Test
+    void testCrudRoundTrip() throws DaoException
+    {
+        ColumnarUnicornDAO dao = new ColumnarUnicornDAO();
+        Unicorn u1 = dao.create(new Unicorn("Sprinkles", 5, "Pink", 10.0));
+        Unicorn u2 = dao.create(new Unicorn("Ærlig Ørn", 7, "Blue", 12.5));
+
+        assertThat(dao.getById(u1.getId()), is(u1));
+        assertThat(dao.getById(u2.getId()), is(u2));
+
+        Unicorn changed = new Unicorn("Sparkles", 6, "White", 11.0);
+        changed.setId(u1.getId());
+        dao.update(changed);
+        assertThat(dao.getById(u1.getId()), is(changed));
+
+        dao.delete(u2);
+        assertThat(dao.getAll(), contains(changed));
+        DaoException exception = assertThrows(DaoException.class, () -> dao.getById(u2.getId()));
+        assertThat(exception.getMessage(), is("Error fetching entity by ID: Entity with this ID does not exist"));
+        assertThat(dao.create(new Unicorn("Late", 1, "Black", 1.0)).getId(), is(3));
+    }
+
+    @Test
+    void testNullFieldsRoundTrip() throws DaoException
+    {
+        ColumnarUnicornDAO dao = new ColumnarUnicornDAO();
+        Unicorn empty = dao.create(new Unicorn());
+
+        Unicorn read = dao.getById(empty.getId());
+        assertThat(read.getName(), is(nullValue()));
+        assertThat(read.getAge(), is(nullValue()));
+        assertThat(read.getColor(), is(nullValue()));
+        assertThat(read.getPowerStrength(), is(nullValue()));
+    }
+
+    @Test
+    void testAggregatesMatchEntityScan() throws DaoException
+    {
+        ColumnarUnicornDAO dao = new ColumnarUnicornDAO();
+        List<Unicorn> unicorns = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++)
+        {
+            unicorns.add(new Unicorn("Unicorn" + (i % 100), i % 20, COLORS[i % COLORS.length], i * 0.5));
+        }
+        dao.createAll(unicorns);
+        dao.delete(unicorns.get(0));
+        List<Unicorn> live = unicorns.subList(1, unicorns.size());
+
+        Map<String, Double> expected = live.stream()
+                .collect(Collectors.groupingBy(Unicorn::getColor, Collectors.averagingDouble(Unicorn::getPowerStrength)));
+        Map<String, Double> actual = dao.averagePowerStrengthByColor();
+        assertThat(actual.keySet(), containsInAnyOrder(COLORS));
+        expected.forEach((color, average) -> assertThat(actual.get(color), is(closeTo(average, 1e-9))));
+
+        double expectedAverage = live.stream().mapToDouble(Unicorn::getPowerStrength).average().orElseThrow();
+        assertThat(dao.averagePowerStrength(), is(closeTo(expectedAverage, 1e-9)));
+        assertThat(dao.countByAgeBetween(5, 9), is(live.stream().filter(u -> u.getAge() >= 5 && u.getAge() <= 9).count()));
+        assertThat(dao.size(), is(live.size()));
+        assertThat(dao.getAll(), is(live));
+    }
+}
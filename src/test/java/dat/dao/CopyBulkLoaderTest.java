@@ -0,0 +1,135 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.config.HibernateConfig;
+import dat.config.PoolSettings;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static dat.dao.UnicornFixtures.unicorns;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/***
+ * Runs against the schema Hibernate creates, so the loader finds the pooled sequence behind unicorns.id.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class CopyBulkLoaderTest
+{
+    private static EntityManagerFactory emf;
+    private static ConnectionPool pool;
+    private DatabaseDAO dao;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUpBackends()
+    {
+        emf = HibernateConfig.getEntityManagerFactoryForTest();
+        pool = ConnectionPool.getInstance("copy-loader-test", PoolSettings.defaults(), "test", "test", "jdbc:tc:postgresql:16.2:///%s", "test_db");
+    }
+
+    @BeforeEach
+    void clear()
+    {
+        dao = new DatabaseDAO(pool);
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Unicorn").executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyBulkLoader.Format.class)
+    void testLoadAssignsTheStoredIds(CopyBulkLoader.Format format) throws DaoException
+    {
+        List<Unicorn> unicorns = unicorns("Copy", "Blåhvid", 250);
+        CopyBulkLoader loader = new CopyBulkLoader(pool, format, 100);
+
+        assertThat(loader.load(unicorns.iterator()), is(250L));
+
+        for (Unicorn unicorn : List.of(unicorns.get(0), unicorns.get(1), unicorns.get(249)))
+        {
+            assertThat(dao.getById(unicorn.getId()), is(unicorn));
+            assertThat(unicorn.getVersion(), is(0));
+        }
+        // Plain INSERTs draw from the same sequence afterwards
+        Unicorn created = dao.create(new Unicorn("After", 1, "Grey", 1.0));
+        assertThat(unicorns.stream().map(Unicorn::getId).toList(), not(hasItem(created.getId())));
+    }
+
+    @Test
+    void testFailedLoadAssignsNoIds() throws DaoException
+    {
+        List<Unicorn> unicorns = unicorns("Copy", "Blåhvid", 250);
+        unicorns.get(249).setName("Nul\u0000");  // rejected by Postgres, in the third chunk
+
+        assertThrows(DaoException.class, () -> new CopyBulkLoader(pool, CopyBulkLoader.Format.BINARY, 100).load(unicorns.iterator()));
+        assertThat(unicorns, everyItem(hasProperty("id", nullValue())));
+        assertThat(dao.getAll(), is(empty()));
+    }
+
+    @Test
+    void testLoadNeedsOnlyOneConnection() throws DaoException
+    {
+        PoolSettings single = new PoolSettings(1, 1, 30_000, 2_000, 1_800_000, 250, false, 1, 1, 10_000);
+        ConnectionPool singlePool = ConnectionPool.getInstance("copy-loader-single", single, "test", "test", "jdbc:tc:postgresql:16.2:///%s", "test_db");
+        try
+        {
+            List<Unicorn> unicorns = unicorns("Copy", "Blåhvid", 250);
+            assertThat(new CopyBulkLoader(singlePool, CopyBulkLoader.Format.BINARY, 100).load(unicorns.iterator()), is(250L));
+            assertThat(dao.getById(unicorns.get(249).getId()), is(unicorns.get(249)));
+        }
+        finally
+        {
+            singlePool.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyBulkLoader.Format.class)
+    void testExportLoadsBack(CopyBulkLoader.Format format) throws Exception
+    {
+        CopyBulkLoader loader = new CopyBulkLoader(pool, format, 100);
+        List<Unicorn> unicorns = unicorns("Copy", "Blåhvid", 20);
+        Unicorn awkward = new Unicorn();
+        awkward.setName("Quote \" and, comma");
+        awkward.setColor("");
+        unicorns.add(awkward);
+        loader.load(unicorns.iterator());
+
+        Path file = tempDir.resolve("unicorns." + format.name().toLowerCase());
+        assertThat(loader.export(file), is(21L));
+        clear();
+        try (InputStream in = Files.newInputStream(file))
+        {
+            assertThat(loader.load(in), is(21L));
+        }
+
+        List<Unicorn> restored = new ArrayList<>(dao.getAll());
+        restored.sort(Comparator.comparing(Unicorn::getId));
+        assertThat(restored, is(unicorns));
+        Unicorn created = dao.create(new Unicorn("After", 1, "Grey", 1.0));
+        assertThat(created.getId(), greaterThan(awkward.getId()));
+    }
+}
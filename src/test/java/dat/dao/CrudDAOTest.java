@@ -1,6 +1,8 @@
 package dat.dao;
 
 import dat.config.HibernateConfig;
+import dat.dao.query.Query;
+import dat.dao.query.UnicornFields;
 import dat.entities.Unicorn;
 import dat.exceptions.DaoException;
 import dat.utils.Populator;
@@ -8,8 +10,11 @@ import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -42,7 +47,7 @@ public class CrudDAOTest
     {
         EntityManagerFactory emf = HibernateConfig.getEntityManagerFactoryForTest();
         List<Unicorn> dbList = populator.populateEntityManager(emf);
-        dao = new DatabaseDAO();
+        dao = new EntityManagerDAO(emf);
         u1 = dbList.get(0);
         u2 = dbList.get(1);
     }
@@ -75,6 +80,27 @@ public class CrudDAOTest
         }
     }
 
+    @Test
+    void testCreateAll()
+    {
+        try
+        {
+            Unicorn u3 = new Unicorn("Unicorn3", 8, "Blue", 15.0);
+            Unicorn u4 = new Unicorn("Unicorn4", 9, "Green", 16.0);
+            List<Unicorn> created = dao.createAll(List.of(u3, u4));
+            assertThat(created, contains(u3, u4));
+            assertThat(u3.getId(), is(notNullValue()));
+            assertThat(u4.getId(), is(notNullValue()));
+            assertThat(u3.getId(), is(not(u4.getId())));
+            assertThat(dao.getById(u4.getId()), samePropertyValuesAs(u4));
+            assertThat(dao.getAll(), hasSize(4));
+        }
+        catch (DaoException e)
+        {
+            fail();
+        }
+    }
+
     @Test
     void testGetById_success()
     {
@@ -118,6 +144,84 @@ public class CrudDAOTest
         }
     }
 
+    @Test
+    void testStreamAll()
+    {
+        try (Stream<Unicorn> stream = dao.streamAll())
+        {
+            // Act
+            List<Unicorn> all = stream.toList();
+
+            // Assert
+            assertThat(all, containsInAnyOrder(u1, u2));
+        }
+        catch (DaoException e)
+        {
+            fail();
+        }
+    }
+
+    @Test
+    void testFind_filterAndSort()
+    {
+        try
+        {
+            // Arrange
+            Unicorn u3 = dao.create(new Unicorn("Unicorn3", 8, "Black", 15.0));
+            Unicorn u4 = dao.create(new Unicorn("Unicorn4", 9, "Black", 11.0));
+
+            // Act
+            List<Unicorn> black = dao.find(UnicornFields.query()
+                    .where(UnicornFields.COLOR, Query.Operator.EQ, "Black")
+                    .orderBy(UnicornFields.POWER_STRENGTH, Query.Direction.DESC));
+
+            // Assert
+            assertThat(black, contains(u3, u2, u4));
+        }
+        catch (DaoException e)
+        {
+            fail();
+        }
+    }
+
+    @Test
+    void testFind_keysetPagination()
+    {
+        try
+        {
+            // Arrange
+            for (int i = 3; i <= 7; i++)
+            {
+                dao.create(new Unicorn("Unicorn" + i, i, "Grey", 10.0));
+            }
+            Query<Unicorn> query = UnicornFields.query()
+                    .where(UnicornFields.AGE, Query.Operator.GE, 5)
+                    .orderBy(UnicornFields.POWER_STRENGTH, Query.Direction.ASC)
+                    .limit(2);
+
+            // Act
+            List<Unicorn> seen = new ArrayList<>();
+            List<Unicorn> page = dao.find(query);
+            while (!page.isEmpty())
+            {
+                assertThat(page.size(), lessThanOrEqualTo(2));
+                seen.addAll(page);
+                page = dao.find(query.after(page.get(page.size() - 1)));
+            }
+
+            // Assert
+            List<Unicorn> expected = dao.getAll().stream()
+                    .filter(u -> u.getAge() >= 5)
+                    .sorted(Comparator.comparing(Unicorn::getPowerStrength).thenComparing(Unicorn::getId))
+                    .toList();
+            assertThat(seen, is(expected));
+        }
+        catch (DaoException e)
+        {
+            fail();
+        }
+    }
+
     @Test
     void testUpdate()
     {
@@ -0,0 +1,114 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.config.HibernateConfig;
+import dat.config.PoolSettings;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static dat.dao.UnicornFixtures.unicorns;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/***
+ * Runs against the schema Hibernate creates, with a batch size small enough that the bulk calls span several batches.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class DatabaseBulkTest
+{
+    private static EntityManagerFactory emf;
+    private static ConnectionPool pool;
+    private DatabaseDAO dao;
+
+    @BeforeAll
+    static void setUpBackends()
+    {
+        emf = HibernateConfig.getEntityManagerFactoryForTest();
+        pool = ConnectionPool.getInstance("bulk-test", PoolSettings.defaults(), "test", "test", "jdbc:tc:postgresql:16.2:///%s", "test_db");
+    }
+
+    @BeforeEach
+    void clear()
+    {
+        dao = new DatabaseDAO(pool, 50);
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Unicorn").executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    @Test
+    void testCreateAllAssignsIdsAndVersions() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Bulk", 120));
+
+        Set<Integer> ids = new HashSet<>();
+        created.forEach(unicorn -> ids.add(unicorn.getId()));
+        assertThat(ids, hasSize(120));
+        assertThat(created, everyItem(hasProperty("version", is(0))));
+        assertThat(dao.getById(created.get(119).getId()), samePropertyValuesAs(created.get(119)));
+        assertThat(dao.getAll(), hasSize(120));
+    }
+
+    @Test
+    void testCreatesShareOneSequenceBlock() throws DaoException
+    {
+        int first = dao.create(new Unicorn("First", 1, "White", 1.0)).getId();
+        int second = dao.create(new Unicorn("Second", 1, "White", 1.0)).getId();
+        List<Unicorn> batch = dao.createAll(unicorns("Bulk", 2));
+
+        assertThat(second, is(first + 1));
+        assertThat(batch.get(0).getId(), is(first + 2));
+        assertThat(batch.get(1).getId(), is(first + 3));
+    }
+
+    @Test
+    void testFailedCreateAllAssignsNoIds() throws DaoException
+    {
+        List<Unicorn> unicorns = unicorns("Bulk", 120);
+        unicorns.get(119).setName("Nul\u0000");  // rejected by Postgres, in the third batch
+
+        assertThrows(DaoException.class, () -> dao.createAll(unicorns));
+        assertThat(unicorns, everyItem(hasProperty("id", nullValue())));
+        assertThat(dao.getAll(), is(empty()));
+    }
+
+    @Test
+    void testUpdateAllRollsBackOnMissingUnversionedEntity() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Bulk", 2));
+        Unicorn missing = new Unicorn("Missing", 1, "Grey", 1.0);
+        missing.setId(created.get(1).getId() + 1000);
+        Unicorn renamed = new Unicorn("Renamed", 1, "Gold", 1.0);
+        renamed.setId(created.get(0).getId());
+
+        DaoException exception = assertThrows(DaoException.class, () -> dao.updateAll(List.of(renamed, missing)));
+        assertThat(exception.getMessage(), is("Error updating entities: Entity with this ID does not exist"));
+        assertThat(dao.getById(created.get(0).getId()).getColor(), is("White"));
+    }
+
+    @Test
+    void testDeleteAllRollsBackOnMissingEntity() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Bulk", 2));
+        Unicorn missing = new Unicorn("Missing", 1, "Grey", 1.0);
+        missing.setId(created.get(1).getId() + 1000);
+
+        DaoException exception = assertThrows(DaoException.class, () -> dao.deleteAll(List.of(created.get(0), missing)));
+        assertThat(exception.getMessage(), is("Error deleting entities: Entity with this ID does not exist"));
+        assertThat(dao.getAll(), hasSize(2));
+    }
+}
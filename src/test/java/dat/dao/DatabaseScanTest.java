@@ -0,0 +1,82 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.config.HibernateConfig;
+import dat.config.PoolSettings;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+public class DatabaseScanTest
+{
+    private static EntityManagerFactory emf;
+    private static ConnectionPool pool;
+    private DatabaseDAO dao;
+
+    @BeforeAll
+    static void setUpBackends()
+    {
+        emf = HibernateConfig.getEntityManagerFactoryForTest();
+        pool = ConnectionPool.getInstance("scan-test", PoolSettings.defaults(), "test", "test", "jdbc:tc:postgresql:16.2:///%s", "test_db");
+    }
+
+    @BeforeEach
+    void clear()
+    {
+        dao = new DatabaseDAO(pool, DatabaseDAO.DEFAULT_BATCH_SIZE, 7);
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Unicorn").executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    @Test
+    void testNullsSurviveTheMapping() throws DaoException
+    {
+        Unicorn sparse = new Unicorn();
+        sparse.setName("Sparse");
+        Unicorn created = dao.create(sparse);
+
+        Unicorn loaded = dao.getById(created.getId());
+        assertThat(loaded.getAge(), is(nullValue()));
+        assertThat(loaded.getPowerStrength(), is(nullValue()));
+        assertThat(dao.getAll(), contains(loaded));
+    }
+
+    @Test
+    void testScanAllReusesOneRow() throws DaoException
+    {
+        List<Unicorn> unicorns = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            unicorns.add(new Unicorn("Scan" + i, i, "White", i / 2.0));
+        }
+        dao.createAll(unicorns);
+
+        List<UnicornRow> rows = new ArrayList<>();
+        List<Unicorn> scanned = new ArrayList<>();
+        long count = dao.scanAll(row ->
+        {
+            rows.add(row);
+            scanned.add(row.toUnicorn());
+        });
+
+        assertThat(count, is(20L));
+        assertThat(scanned, containsInAnyOrder(unicorns.toArray()));
+        assertThat(rows.stream().distinct().count(), is(1L));
+    }
+}
@@ -0,0 +1,132 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DurableMemoryDAOTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRecoversLogAfterCrash() throws DaoException
+    {
+        // The first instance is never closed, as if the process died
+        DurableMemoryDAO crashed = new DurableMemoryDAO(dir, DurabilitySettings.everyWrite());
+        Unicorn u1 = crashed.create(new Unicorn("Unicorn1", 5, "White", 10.0));
+        Unicorn u2 = crashed.create(new Unicorn("Unicorn2", 7, "Black", 12.0));
+        Unicorn u3 = crashed.create(new Unicorn("Unicorn3", 9, "Pink", 14.0));
+        Unicorn renamed = new Unicorn("Renamed", 6, "White", 11.0);
+        renamed.setId(u1.getId());
+        crashed.update(renamed);
+        Unicorn patched = crashed.updatePowerStrength(u2.getId(), 1.5);
+        crashed.delete(u3);
+
+        try (DurableMemoryDAO recovered = new DurableMemoryDAO(dir, DurabilitySettings.everyWrite()))
+        {
+            assertThat(recovered.getAll(), containsInAnyOrder(renamed, patched));
+            assertThat(recovered.getById(u2.getId()).getPowerStrength(), is(13.5));
+            assertThat(recovered.getById(u1.getId()).getVersion(), is(1));
+            // IDs of deleted entities are not handed out again
+            assertThat(recovered.create(new Unicorn("Unicorn4", 1, "Blue", 1.0)).getId(), is(4));
+        }
+    }
+
+    @Test
+    void testSnapshotCompactsLog() throws DaoException
+    {
+        DurabilitySettings settings = DurabilitySettings.batched(16).withLogSize(4096).withSnapshotEvery(50);
+        try (DurableMemoryDAO dao = new DurableMemoryDAO(dir, settings))
+        {
+            Unicorn unicorn = dao.create(new Unicorn("Counter", 1, "Grey", 0.0));
+            for (int i = 1; i <= 500; i++)
+            {
+                unicorn.setPowerStrength((double) i);
+                dao.update(unicorn);
+            }
+        }
+        assertThat(Files.exists(dir.resolve(DurableMemoryDAO.SNAPSHOT_FILE)), is(true));
+
+        try (DurableMemoryDAO dao = new DurableMemoryDAO(dir, settings))
+        {
+            assertThat(dao.getAll(), hasSize(1));
+            assertThat(dao.getById(1).getPowerStrength(), is(500.0));
+        }
+    }
+
+    @Test
+    void testTornTailIsDiscarded() throws Exception
+    {
+        DurableMemoryDAO crashed = new DurableMemoryDAO(dir, DurabilitySettings.interval(Duration.ofMillis(10)));
+        crashed.create(new Unicorn("Unicorn1", 5, "White", 10.0));
+        crashed.create(new Unicorn("Unicorn2", 7, "Black", 12.0));
+        crashed.force();
+        corruptLastByteOfSecondRecord();
+
+        try (DurableMemoryDAO recovered = new DurableMemoryDAO(dir, DurabilitySettings.everyWrite()))
+        {
+            assertThat(recovered.getAll(), hasSize(1));
+            assertThat(recovered.getById(1).getName(), is("Unicorn1"));
+            assertThrows(DaoException.class, () -> recovered.getById(2));
+        }
+    }
+
+    @Test
+    void testCorruptSnapshotHeaderIsRejected() throws Exception
+    {
+        try (DurableMemoryDAO dao = new DurableMemoryDAO(dir, DurabilitySettings.everyWrite()))
+        {
+            dao.create(new Unicorn("Unicorn1", 5, "White", 10.0));
+            dao.snapshot();
+        }
+        // Snapshot layout: magic, version, generation, lastId, count; raise the count
+        try (FileChannel channel = FileChannel.open(dir.resolve(DurableMemoryDAO.SNAPSHOT_FILE), StandardOpenOption.WRITE))
+        {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1_000_000), 20);
+        }
+
+        DaoException exception = assertThrows(DaoException.class, () -> new DurableMemoryDAO(dir, DurabilitySettings.everyWrite()));
+        assertThat(exception.getMessage(), endsWith("is corrupt"));
+    }
+
+    @Test
+    void testClosedStoreRejectsWrites() throws DaoException
+    {
+        DurableMemoryDAO dao = new DurableMemoryDAO(dir, DurabilitySettings.everyWrite());
+        dao.close();
+
+        DaoException exception = assertThrows(DaoException.class, () -> dao.create(new Unicorn("Late", 1, "Red", 1.0)));
+        assertThat(exception.getMessage(), is("Error creating entity: Store is closed"));
+    }
+
+    // Log layout: 16 byte header, then records of [body length, crc, body]
+    private void corruptLastByteOfSecondRecord() throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(dir.resolve(DurableMemoryDAO.LOG_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 16);
+            int secondRecord = 16 + 8 + header.getInt(0);
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, secondRecord);
+            long lastByte = secondRecord + 8 + length.getInt(0) - 1;
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, lastByte);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (value.get(0) ^ 0xFF)}), lastByte);
+        }
+    }
+}
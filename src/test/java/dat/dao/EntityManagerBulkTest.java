@@ -0,0 +1,87 @@
+package dat.dao;
+
+import dat.config.HibernateConfig;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static dat.dao.UnicornFixtures.unicorns;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Testcontainers(disabledWithoutDocker = true)
+public class EntityManagerBulkTest
+{
+    private EntityManagerFactory emf;
+    private EntityManagerDAO dao;
+
+    @BeforeEach
+    void setUp()
+    {
+        emf = HibernateConfig.getEntityManagerFactoryForTest();
+        dao = new EntityManagerDAO(emf);
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Unicorn").executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    @Test
+    void testCreateAllSharesSequenceWithPlainInserts() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Bulk", 120));
+        int plainId;
+        try (EntityManager em = emf.createEntityManager())
+        {
+            // An INSERT without id, as DatabaseDAO sends it, takes the column default from the same sequence
+            em.getTransaction().begin();
+            plainId = ((Number) em.createNativeQuery("INSERT INTO unicorns (unicorn_name, age, color, powerstrength) VALUES ('Plain', 1, 'Grey', 1.0) RETURNING id")
+                    .getSingleResult()).intValue();
+            em.getTransaction().commit();
+        }
+        List<Unicorn> more = dao.createAll(unicorns("Bulk", 10));
+
+        Set<Integer> ids = new HashSet<>();
+        created.forEach(unicorn -> ids.add(unicorn.getId()));
+        more.forEach(unicorn -> ids.add(unicorn.getId()));
+        ids.add(plainId);
+        assertThat(ids, hasSize(131));
+        assertThat(dao.getAll(), hasSize(131));
+    }
+
+    @Test
+    void testUpdateAllAndDeleteAll() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Bulk", 3));
+        created.forEach(unicorn -> unicorn.setColor("Gold"));
+
+        dao.updateAll(created);
+        assertThat(dao.getById(created.get(0).getId()).getColor(), is("Gold"));
+
+        dao.deleteAll(created.subList(0, 2));
+        assertThat(dao.getAll(), contains(hasProperty("id", is(created.get(2).getId()))));
+    }
+
+    @Test
+    void testUpdateAllRollsBackOnMissingEntity() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Bulk", 2));
+        Unicorn missing = new Unicorn("Missing", 1, "Grey", 1.0);
+        missing.setId(created.get(1).getId() + 1000);
+        created.get(0).setColor("Gold");
+
+        assertThrows(DaoException.class, () -> dao.updateAll(List.of(created.get(0), missing)));
+        assertThat(dao.getById(created.get(0).getId()).getColor(), is("White"));
+    }
+}
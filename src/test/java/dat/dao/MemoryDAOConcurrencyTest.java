@@ -0,0 +1,285 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MemoryDAOConcurrencyTest
+{
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+
+    @Test
+    void testConcurrentCreateGeneratesUniqueIds() throws Exception
+    {
+        MemoryDAO<Unicorn> dao = new MemoryDAO<>();
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        runConcurrently(threads, () ->
+        {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++)
+            {
+                dao.create(new Unicorn("Unicorn", 5, "White", 10.0));
+            }
+            return null;
+        });
+
+        List<Unicorn> all = dao.getAll();
+        assertThat(all, hasSize(threads * OPERATIONS_PER_THREAD));
+        Set<Integer> ids = new HashSet<>();
+        all.forEach(u -> ids.add(u.getId()));
+        assertThat(ids, hasSize(threads * OPERATIONS_PER_THREAD));
+    }
+
+    @Test
+    void testConcurrentMixedWorkload() throws Exception
+    {
+        MemoryDAO<Unicorn> dao = new MemoryDAO<>();
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        // Every thread creates, updates and finally deletes every other entity it created
+        runConcurrently(threads, () ->
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Unicorn[] own = new Unicorn[OPERATIONS_PER_THREAD / 10];
+            for (int i = 0; i < own.length; i++)
+            {
+                own[i] = dao.create(new Unicorn("Unicorn" + i, 5, "White", 10.0));
+            }
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++)
+            {
+                Unicorn target = own[random.nextInt(own.length)];
+                Unicorn copy = new Unicorn("Updated", target.getAge() + 1, "Blue", 12.0);
+                copy.setId(target.getId());
+                dao.update(copy);
+                assertThat(dao.getById(target.getId()).getId(), is(target.getId()));
+            }
+            for (int i = 0; i < own.length; i += 2)
+            {
+                dao.delete(own[i]);
+            }
+            return null;
+        });
+
+        assertThat(dao.getAll(), hasSize(threads * (OPERATIONS_PER_THREAD / 10) / 2));
+    }
+
+    @Test
+    void testVersionedUpdatesAreNeverLost() throws Exception
+    {
+        MemoryDAO<Unicorn> dao = new MemoryDAO<>();
+        int id = dao.create(new Unicorn("Counter", 0, "White", 10.0)).getId();
+        int threads = 4;
+        int incrementsPerThread = 2_000;
+
+        // Read-modify-write on copies, retrying on conflict, like writers holding detached entities
+        runConcurrently(threads, () ->
+        {
+            for (int i = 0; i < incrementsPerThread; i++)
+            {
+                while (true)
+                {
+                    Unicorn current = dao.getById(id);
+                    Unicorn copy = new Unicorn(current.getName(), current.getAge() + 1, current.getColor(), current.getPowerStrength());
+                    copy.setId(id);
+                    copy.setVersion(current.getVersion());
+                    try
+                    {
+                        dao.update(copy);
+                        break;
+                    }
+                    catch (OptimisticLockDaoException e)
+                    {
+                        // Lost the race, read the new version and try again
+                    }
+                }
+            }
+            return null;
+        });
+
+        Unicorn result = dao.getById(id);
+        assertThat(result.getAge(), is(threads * incrementsPerThread));
+        assertThat(result.getVersion(), is(threads * incrementsPerThread));
+    }
+
+    @Test
+    void testStaleUpdateIsRejected() throws DaoException
+    {
+        MemoryDAO<Unicorn> dao = new MemoryDAO<>();
+        Unicorn created = dao.create(new Unicorn("Stale", 1, "White", 10.0));
+        Unicorn first = new Unicorn("First", 2, "White", 10.0);
+        first.setId(created.getId());
+        first.setVersion(0);
+        Unicorn second = new Unicorn("Second", 3, "White", 10.0);
+        second.setId(created.getId());
+        second.setVersion(0);
+
+        dao.update(first);
+
+        OptimisticLockDaoException e = assertThrows(OptimisticLockDaoException.class, () -> dao.update(second));
+        assertThat(e.getMessage(), containsString("version 0 is now 1"));
+        assertThat(dao.getById(created.getId()).getName(), is("First"));
+    }
+
+    @Test
+    void testRejectedInsertLeavesEntityUnchanged() throws DaoException
+    {
+        MemoryDAO<Unicorn> dao = new MemoryDAO<>();
+        Unicorn stored = dao.create(new Unicorn("Stored", 1, "White", 10.0));
+        Unicorn duplicate = new Unicorn("Duplicate", 2, "Black", 5.0);
+        duplicate.setId(stored.getId());
+        duplicate.setVersion(7);
+
+        assertThrows(DaoException.class, () -> dao.insert(duplicate));
+        assertThat(duplicate.getVersion(), is(7));
+        assertThat(dao.getById(stored.getId()), samePropertyValuesAs(stored));
+    }
+
+    @Test
+    void testConcurrentPatchesAddUp() throws Exception
+    {
+        MemoryDAO<Unicorn> dao = new MemoryDAO<>();
+        int id = dao.create(new Unicorn("Patched", 1, "White", 0.0)).getId();
+        int threads = 4;
+
+        runConcurrently(threads, () ->
+        {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++)
+            {
+                dao.updatePowerStrength(id, 1.0);
+            }
+            return null;
+        });
+
+        Unicorn result = dao.getById(id);
+        assertThat(result.getPowerStrength(), is((double) threads * OPERATIONS_PER_THREAD));
+        assertThat(result.getVersion(), is(threads * OPERATIONS_PER_THREAD));
+    }
+
+    @Test
+    void testPatchLeavesEntitiesAlreadyReadUnchanged() throws DaoException
+    {
+        MemoryDAO<Unicorn> dao = new MemoryDAO<>();
+        int id = dao.create(new Unicorn("Patched", 1, "White", 1.0)).getId();
+        Unicorn read = dao.getById(id);
+
+        Unicorn patched = dao.updatePowerStrength(id, 2.0);
+
+        assertThat(patched, is(not(sameInstance(read))));
+        assertThat(read.getPowerStrength(), is(1.0));
+        assertThat(read.getVersion(), is(0));
+        assertThat(dao.getById(id).getPowerStrength(), is(3.0));
+    }
+
+    @Test
+    void testConcurrentReadModifyWriteLosesNoUpdate() throws Exception
+    {
+        MemoryDAO<Unicorn> dao = new MemoryDAO<>();
+        int id = dao.create(new Unicorn("Original", 1, "White", 1.0)).getId();
+        CyclicBarrier bothRead = new CyclicBarrier(2);
+        AtomicInteger thread = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(2, () ->
+        {
+            Unicorn unicorn = dao.getById(id);
+            unicorn.setName("Writer" + thread.incrementAndGet());
+            await(bothRead);
+            try
+            {
+                dao.update(unicorn);
+            }
+            catch (OptimisticLockDaoException e)
+            {
+                rejected.incrementAndGet();
+            }
+            return null;
+        });
+
+        assertThat(rejected.get(), is(1));
+        assertThat(dao.getById(id).getVersion(), is(1));
+    }
+
+    @Test
+    void testPatchKeepsSubtype() throws DaoException
+    {
+        MemoryDAO<Pegasus> dao = new MemoryDAO<>(Pegasus::new);
+        int id = dao.create(new Pegasus()).getId();
+
+        assertThat(dao.updatePowerStrength(id, 2.0), is(instanceOf(Pegasus.class)));
+        assertThat(dao.getById(id).getPowerStrength(), is(2.0));
+    }
+
+    private static class Pegasus extends Unicorn
+    {
+        Pegasus()
+        {
+        }
+
+        Pegasus(Pegasus other)
+        {
+            super(other);
+        }
+    }
+
+    private static void await(CyclicBarrier barrier)
+    {
+        try
+        {
+            barrier.await(10, TimeUnit.SECONDS);
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface Work
+    {
+        Void run() throws DaoException;
+    }
+
+    private static void runConcurrently(int threads, Work work) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    start.await();
+                    return work.run();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
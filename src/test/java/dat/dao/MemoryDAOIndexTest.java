@@ -0,0 +1,158 @@
+package dat.dao;
+
+import dat.dao.index.SecondaryIndex;
+import dat.dao.query.Query;
+import dat.dao.query.UnicornFields;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class MemoryDAOIndexTest
+{
+    private static final String[] COLORS = {"White", "Black", "Pink", "Blue"};
+
+    private MemoryDAO<Unicorn> indexed;
+    private MemoryDAO<Unicorn> plain;
+
+    @BeforeEach
+    void setUp() throws DaoException
+    {
+        indexed = new MemoryDAO<Unicorn>()
+                .withIndex(SecondaryIndex.hash(UnicornFields.COLOR))
+                .withIndex(SecondaryIndex.hash(UnicornFields.NAME))
+                .withIndex(SecondaryIndex.sorted(UnicornFields.AGE))
+                .withIndex(SecondaryIndex.sorted(UnicornFields.POWER_STRENGTH));
+        plain = new MemoryDAO<>();
+        for (int i = 0; i < 1_000; i++)
+        {
+            indexed.create(new Unicorn("Unicorn" + (i % 50), i % 20, COLORS[i % COLORS.length], i % 100 / 4.0));
+            plain.create(new Unicorn("Unicorn" + (i % 50), i % 20, COLORS[i % COLORS.length], i % 100 / 4.0));
+        }
+    }
+
+    @Test
+    void testIndexedFindMatchesScan() throws DaoException
+    {
+        List<Query<Unicorn>> queries = List.of(
+                UnicornFields.query().where(UnicornFields.COLOR, Query.Operator.EQ, "Pink"),
+                UnicornFields.query().where(UnicornFields.NAME, Query.Operator.EQ, "Unicorn7").orderBy(UnicornFields.AGE, Query.Direction.DESC),
+                UnicornFields.query().where(UnicornFields.AGE, Query.Operator.GE, 15).where(UnicornFields.COLOR, Query.Operator.EQ, "Blue"),
+                UnicornFields.query().where(UnicornFields.AGE, Query.Operator.LT, 3).limit(10),
+                UnicornFields.query().where(UnicornFields.POWER_STRENGTH, Query.Operator.GT, 20.0).where(UnicornFields.POWER_STRENGTH, Query.Operator.LE, 22.5),
+                UnicornFields.query().where(UnicornFields.COLOR, Query.Operator.NE, "Pink").limit(25));
+        for (Query<Unicorn> query : queries)
+        {
+            assertThat(indexed.find(query), is(plain.find(query)));
+        }
+    }
+
+    @Test
+    void testUpdateMovesBetweenBuckets() throws DaoException
+    {
+        Query<Unicorn> gold = UnicornFields.query().where(UnicornFields.COLOR, Query.Operator.EQ, "Gold");
+        Query<Unicorn> old = UnicornFields.query().where(UnicornFields.AGE, Query.Operator.EQ, 100);
+
+        Unicorn unicorn = indexed.getById(1);
+        unicorn.setColor("Gold");
+        unicorn.setAge(100);
+        indexed.update(unicorn);
+        assertThat(indexed.find(gold), contains(unicorn));
+        assertThat(indexed.find(old), contains(unicorn));
+        assertThat(indexed.find(UnicornFields.query().where(UnicornFields.COLOR, Query.Operator.EQ, "White")), not(hasItem(unicorn)));
+
+        indexed.delete(unicorn);
+        assertThat(indexed.find(gold), is(empty()));
+        assertThat(indexed.find(old), is(empty()));
+    }
+
+    @Test
+    void testConcurrentUpdatesKeepIndexesConsistent() throws Exception
+    {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 10_000; i++)
+                    {
+                        Unicorn changed = new Unicorn("Moved", random.nextInt(20), COLORS[random.nextInt(COLORS.length)], random.nextInt(100));
+                        changed.setId(random.nextInt(1_000) + 1);
+                        indexed.update(changed);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        for (String color : COLORS)
+        {
+            Query<Unicorn> byColor = UnicornFields.query().where(UnicornFields.COLOR, Query.Operator.EQ, color);
+            List<Unicorn> expected = indexed.getAll().stream().filter(byColor::matches).sorted(byColor.comparator()).toList();
+            assertThat(indexed.find(byColor), is(expected));
+        }
+        Query<Unicorn> young = UnicornFields.query().where(UnicornFields.AGE, Query.Operator.LE, 4);
+        assertThat(indexed.find(young), is(indexed.getAll().stream().filter(young::matches).sorted(young.comparator()).toList()));
+    }
+
+    @Test
+    void testRangeFindNeverListsAMovingEntityTwice() throws Exception
+    {
+        Query<Unicorn> everyAge = UnicornFields.query().where(UnicornFields.AGE, Query.Operator.GE, 0);
+        AtomicBoolean moving = new AtomicBoolean(true);
+        Thread mover = new Thread(() ->
+        {
+            for (int i = 0; moving.get(); i++)
+            {
+                Unicorn changed = new Unicorn("Moved", i % 2 == 0 ? 0 : 19, "White", 1.0);
+                changed.setId(1);
+                try
+                {
+                    indexed.update(changed);
+                }
+                catch (DaoException e)
+                {
+                    return;
+                }
+            }
+        });
+        mover.start();
+        try
+        {
+            for (int i = 0; i < 2_000; i++)
+            {
+                List<Unicorn> found = indexed.find(everyAge);
+                assertThat(found.stream().map(Unicorn::getId).distinct().count(), is((long) found.size()));
+            }
+        }
+        finally
+        {
+            moving.set(false);
+            mover.join();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dat.dao;
+
+import dat.config.ConnectionPool;
+import dat.config.HibernateConfig;
+import dat.config.PoolSettings;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static dat.dao.UnicornFixtures.copy;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/***
+ * Runs against the schema Hibernate creates, so the JDBC backend sees the same version column as JPA.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class OptimisticLockTest
+{
+    private static EntityManagerFactory emf;
+    private static ConnectionPool pool;
+
+    @BeforeAll
+    static void setUpBackends()
+    {
+        emf = HibernateConfig.getEntityManagerFactoryForTest();
+        pool = ConnectionPool.getInstance("optimistic-lock-test", PoolSettings.defaults(), "test", "test", "jdbc:tc:postgresql:16.2:///%s", "test_db");
+    }
+
+    @BeforeEach
+    void clear()
+    {
+        try (EntityManager em = emf.createEntityManager())
+        {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Unicorn").executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc", "jpa"})
+    void testStaleUpdateIsRejected(String backend) throws DaoException
+    {
+        ICrudDAO<Unicorn> dao = dao(backend);
+        Unicorn created = dao.create(new Unicorn("Original", 1, "White", 10.0));
+        assertThat(created.getVersion(), is(0));
+
+        Unicorn first = copy(created, "First");
+        Unicorn second = copy(created, "Second");
+        assertThat(dao.update(first).getVersion(), is(1));
+
+        assertThrows(OptimisticLockDaoException.class, () -> dao.update(second));
+        assertThrows(OptimisticLockDaoException.class, () -> dao.updateAll(List.of(copy(created, "Third"))));
+        assertThat(dao.getById(created.getId()).getName(), is("First"));
+
+        // Without a version the update is applied regardless
+        Unicorn unversioned = copy(created, "Unversioned");
+        unversioned.setVersion(null);
+        dao.update(unversioned);
+        assertThat(dao.getById(created.getId()).getVersion(), is(2));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc", "jpa"})
+    void testConcurrentPatchesAddUp(String backend) throws Exception
+    {
+        ICrudDAO<Unicorn> dao = dao(backend);
+        int id = dao.create(new Unicorn("Patched", 1, "White", 0.0)).getId();
+        int threads = 4;
+        int patchesPerThread = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    for (int i = 0; i < patchesPerThread; i++)
+                    {
+                        ((IPatchDAO<Unicorn>) dao).updatePowerStrength(id, 1.0);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        Unicorn result = dao.getById(id);
+        assertThat(result.getPowerStrength(), is((double) threads * patchesPerThread));
+        assertThat(result.getVersion(), is(threads * patchesPerThread));
+    }
+
+    private static ICrudDAO<Unicorn> dao(String backend)
+    {
+        return "jdbc".equals(backend) ? new DatabaseDAO(pool) : new EntityManagerDAO(emf);
+    }
+}
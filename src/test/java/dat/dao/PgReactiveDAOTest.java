@@ -0,0 +1,208 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+import io.vertx.pgclient.PgConnectOptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/***
+ * Needs the container's host and port for the non-blocking client, so it starts its own container instead of
+ * a jdbc:tc URL, and creates the table the Unicorn entity maps.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class PgReactiveDAOTest
+{
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.2");
+
+    private static PgReactiveDAO dao;
+
+    @BeforeAll
+    static void setUp() throws SQLException
+    {
+        execute("CREATE SEQUENCE unicorns_pooled_seq INCREMENT BY 50",
+                "CREATE TABLE unicorns (id integer PRIMARY KEY DEFAULT nextval('unicorns_pooled_seq'), unicorn_name varchar(255), "
+                        + "age integer, color varchar(255), powerstrength float8, version integer NOT NULL DEFAULT 0)");
+        PgConnectOptions options = new PgConnectOptions()
+                .setHost(postgres.getHost())
+                .setPort(postgres.getFirstMappedPort())
+                .setDatabase(postgres.getDatabaseName())
+                .setUser(postgres.getUsername())
+                .setPassword(postgres.getPassword());
+        dao = new PgReactiveDAO(options, ReactiveSettings.defaults().withConnections(2, 256).withStreams(1, 10));
+    }
+
+    @AfterAll
+    static void tearDown()
+    {
+        if (dao != null)
+        {
+            dao.close();
+        }
+    }
+
+    @BeforeEach
+    void clear() throws SQLException
+    {
+        execute("DELETE FROM unicorns");
+    }
+
+    @Test
+    void testCrudRoundTrip()
+    {
+        Unicorn created = join(dao.create(new Unicorn("Sparkle", 5, "White", 10.0)));
+        assertThat(created.getId(), is(notNullValue()));
+        assertThat(created.getVersion(), is(0));
+
+        Unicorn stale = join(dao.getById(created.getId()));
+        created.setName("Renamed");
+        assertThat(join(dao.update(created)).getVersion(), is(1));
+        assertThat(join(dao.getById(created.getId())).getName(), is("Renamed"));
+        assertThat(cause(dao.update(stale)), instanceOf(OptimisticLockDaoException.class));
+
+        join(dao.delete(created));
+        DaoException missing = cause(dao.getById(created.getId()));
+        assertThat(missing.getCause(), is(nullValue()));
+        assertThat(join(dao.getAll()), is(empty()));
+    }
+
+    @Test
+    void testThousandsOfLookupsInFlightOnTwoConnections()
+    {
+        int id = join(dao.create(new Unicorn("Lookup", 1, "Blue", 1.0))).getId();
+
+        List<CompletableFuture<Unicorn>> lookups = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            lookups.add(dao.getById(id).toCompletableFuture());
+        }
+        CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new)).orTimeout(60, TimeUnit.SECONDS).join();
+
+        assertThat(lookups.stream().map(lookup -> lookup.join().getName()).distinct().toList(), contains("Lookup"));
+    }
+
+    @Test
+    void testStreamDeliversOnlyRequestedRows() throws Exception
+    {
+        for (int i = 0; i < 25; i++)
+        {
+            join(dao.create(new Unicorn("Streamed" + i, i, "Green", (double) i)));
+        }
+        Recorder recorder = new Recorder();
+        dao.streamAll().subscribe(recorder);
+
+        recorder.subscription.request(7);
+        recorder.await(7);
+        Thread.sleep(200);
+        assertThat(recorder.rows, hasSize(7));
+
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertTrue(recorder.completed.await(10, TimeUnit.SECONDS));
+        assertThat(recorder.rows, hasSize(25));
+    }
+
+    @Test
+    void testNullColumnsStayNull() throws Exception
+    {
+        execute("INSERT INTO unicorns (id, unicorn_name, color) VALUES (1, 'Blank', 'Grey')");
+
+        Unicorn blank = join(dao.getById(1));
+        assertThat(blank.getAge(), is(nullValue()));
+        assertThat(blank.getPowerStrength(), is(nullValue()));
+
+        Recorder recorder = new Recorder();
+        dao.streamAll().subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertTrue(recorder.completed.await(10, TimeUnit.SECONDS));
+        assertThat(recorder.rows.get(0).getName(), is("Blank"));
+    }
+
+    private static <R> R join(CompletionStage<R> stage)
+    {
+        return stage.toCompletableFuture().orTimeout(30, TimeUnit.SECONDS).join();
+    }
+
+    private static DaoException cause(CompletionStage<?> stage)
+    {
+        CompletionException exception = assertThrows(CompletionException.class, () -> join(stage));
+        assertThat(exception.getCause(), instanceOf(DaoException.class));
+        return (DaoException) exception.getCause();
+    }
+
+    private static void execute(String... statements) throws SQLException
+    {
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement())
+        {
+            for (String sql : statements)
+            {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private static class Recorder implements Flow.Subscriber<Unicorn>
+    {
+        final List<Unicorn> rows = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Unicorn item)
+        {
+            rows.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+        }
+
+        @Override
+        public void onComplete()
+        {
+            completed.countDown();
+        }
+
+        void await(int count) throws InterruptedException
+        {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (rows.size() < count && System.nanoTime() < deadline)
+            {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package dat.dao;
+
+import dat.dao.query.Query;
+import dat.dao.query.UnicornFields;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+
+import static dat.dao.UnicornFixtures.unicorns;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardedDAOTest
+{
+    private List<FlakyMemoryDAO> shards;
+    private ShardedDAO<Unicorn> dao;
+
+    @BeforeEach
+    void setUp()
+    {
+        shards = List.of(new FlakyMemoryDAO(), new FlakyMemoryDAO(), new FlakyMemoryDAO());
+        dao = new ShardedDAO<>(shards, IdAllocator.local(0));
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        dao.close();
+    }
+
+    @Test
+    void testEntitiesAreSpreadAndRoutedById() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Shard", 300));
+        created.add(dao.create(new Unicorn("Single", 1, "Gold", 1.0)));
+
+        for (Unicorn unicorn : created)
+        {
+            int shard = ShardedDAO.shardIndex(unicorn.getId(), shards.size());
+            assertThat(shards.get(shard).getIfPresent(unicorn.getId()), samePropertyValuesAs(unicorn));
+            assertThat(dao.getById(unicorn.getId()), is(unicorn));
+        }
+        for (FlakyMemoryDAO shard : shards)
+        {
+            assertThat(shard.size(), is(both(greaterThan(70)).and(lessThan(130))));
+        }
+        assertThat(created.stream().map(Unicorn::getId).distinct().count(), is(301L));
+    }
+
+    @Test
+    void testGetAllAndFindMergeAllShards() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Shard", 60));
+
+        assertThat(dao.getAll(), containsInAnyOrder(created.toArray()));
+
+        Query<Unicorn> query = UnicornFields.query()
+                .where(UnicornFields.AGE, Query.Operator.GE, 5)
+                .orderBy(UnicornFields.POWER_STRENGTH, Query.Direction.DESC)
+                .limit(7);
+        List<Unicorn> expected = created.stream()
+                .filter(unicorn -> unicorn.getAge() >= 5)
+                .sorted(Comparator.comparing(Unicorn::getPowerStrength).thenComparing(Unicorn::getId).reversed())
+                .limit(7)
+                .toList();
+        assertThat(dao.find(query), is(expected));
+    }
+
+    @Test
+    void testUpdateAndDeleteGoToTheOwningShard() throws DaoException
+    {
+        List<Unicorn> created = dao.createAll(unicorns("Shard", 10));
+        Unicorn first = created.get(0);
+        first.setColor("Gold");
+        dao.update(first);
+        dao.deleteAll(created.subList(1, 10));
+
+        assertThat(dao.getAll(), contains(first));
+        assertThat(dao.getById(first.getId()).getColor(), is("Gold"));
+    }
+
+    @Test
+    void testFailingShardIsMarkedUnavailable() throws DaoException
+    {
+        dao.createAll(unicorns("Shard", 30));
+        FlakyMemoryDAO broken = shards.get(1);
+        broken.failing = true;
+
+        for (int i = 0; i < ShardedDAO.FAILURE_THRESHOLD; i++)
+        {
+            assertThrows(DaoException.class, () -> dao.getAll());
+        }
+        int callsBefore = broken.calls;
+        DaoException failFast = assertThrows(DaoException.class, () -> dao.getAll());
+
+        assertThat(failFast.getMessage(), containsString("Shard is unavailable"));
+        assertThat(broken.calls, is(callsBefore));
+        List<ShardedDAO.ShardHealth> health = dao.getHealth();
+        assertThat(health.get(1).available(), is(false));
+        assertThat(health.get(1).lastError(), containsString("connection refused"));
+        assertThat(health.get(0).available(), is(true));
+    }
+
+    @Test
+    void testMissingEntityDoesNotCountAsFailure()
+    {
+        for (int i = 0; i < ShardedDAO.FAILURE_THRESHOLD + 1; i++)
+        {
+            assertThrows(DaoException.class, () -> dao.getById(12345));
+        }
+        assertThat(dao.getHealth().stream().allMatch(ShardedDAO.ShardHealth::available), is(true));
+    }
+
+    private static class FlakyMemoryDAO extends MemoryDAO<Unicorn>
+    {
+        volatile boolean failing;
+        volatile int calls;
+
+        @Override
+        public List<Unicorn> getAll() throws DaoException
+        {
+            calls++;
+            if (failing)
+            {
+                throw new DaoException("Error fetching all entities: connection refused", new SQLException("connection refused"));
+            }
+            return super.getAll();
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.exceptions.OptimisticLockDaoException;
+import dat.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static dat.dao.UnicornFixtures.copy;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TieredDAOTest
+{
+    private GatedDAO backend;
+    private MetricsRegistry registry;
+    private TieredDAO dao;
+
+    @BeforeEach
+    void setUp()
+    {
+        Map<Integer, Unicorn> unicorns = new HashMap<>();
+        for (int id = 1; id <= 4; id++)
+        {
+            Unicorn unicorn = new Unicorn("Unicorn" + id, id, "White", 0.0);
+            unicorn.setId(id);
+            unicorn.setVersion(0);
+            unicorns.put(id, unicorn);
+        }
+        backend = new GatedDAO(unicorns);
+        registry = new MetricsRegistry();
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        backend.open.countDown();
+        if (dao != null)
+        {
+            dao.close();
+        }
+    }
+
+    @Test
+    void testWritesAreVisibleAtOnceAndReachTheBackend() throws DaoException
+    {
+        dao = tiered(TierSettings.of(10));
+        backend.open.countDown();
+
+        Unicorn renamed = copy(dao.getById(1), "Renamed");
+        dao.update(renamed);
+        dao.updatePowerStrength(2, 5.0);
+        dao.delete(dao.getById(3));
+
+        assertThat(dao.getById(1).getName(), is("Renamed"));
+        assertThat(dao.getById(2).getPowerStrength(), is(5.0));
+        assertThrows(DaoException.class, () -> dao.getById(3));
+
+        dao.flush();
+        assertThat(backend.getById(1).getName(), is("Renamed"));
+        assertThat(backend.getById(2).getPowerStrength(), is(5.0));
+        assertThrows(DaoException.class, () -> backend.getById(3));
+        assertThat(registry.counter("tiered.writes.flushed").sum(), is(3L));
+    }
+
+    @Test
+    void testChangingAReadEntityLeavesMemoryUnchanged() throws DaoException
+    {
+        dao = tiered(TierSettings.of(10));
+        backend.open.countDown();
+
+        dao.getById(1).setName("Loaded");
+        dao.getById(1).setName("Resident");
+
+        assertThat(dao.getById(1).getName(), is("Unicorn1"));
+    }
+
+    @Test
+    void testWritesOfAnIdReachTheBackendInOrder() throws DaoException
+    {
+        dao = tiered(TierSettings.of(10).withBatchSize(2));
+        backend.open.countDown();
+
+        for (int i = 0; i < 500; i++)
+        {
+            dao.updatePowerStrength(1 + i % 2, 1.0);
+        }
+        dao.flush();
+
+        assertThat(backend.getById(1).getPowerStrength(), is(250.0));
+        assertThat(backend.getById(2).getPowerStrength(), is(250.0));
+        // Coalescing may skip states, but the backend never goes back to an older one
+        List<Double> written = backend.powerStrengthsWritten(1);
+        for (int i = 1; i < written.size(); i++)
+        {
+            assertThat(written.get(i), greaterThan(written.get(i - 1)));
+        }
+    }
+
+    @Test
+    void testFullQueueRejectsWrites() throws Exception
+    {
+        dao = tiered(TierSettings.of(10).withQueue(2, Duration.ofMillis(50)));
+
+        dao.updatePowerStrength(1, 1.0);
+        dao.updatePowerStrength(2, 1.0);
+        assertThat(registry.snapshot().get("tiered.queue.depth"), is(2L));
+
+        DaoException exception = assertThrows(DaoException.class, () -> dao.updatePowerStrength(3, 1.0));
+        assertThat(exception.getMessage(), is("Error queueing write: Write queue is full"));
+        assertThat(dao.getById(3).getPowerStrength(), is(0.0));
+
+        backend.open.countDown();
+        dao.flush();
+        dao.updatePowerStrength(3, 1.0);
+        dao.flush();
+        assertThat(backend.getById(3).getPowerStrength(), is(1.0));
+    }
+
+    @Test
+    void testPendingWritesAreNotEvicted() throws DaoException
+    {
+        dao = tiered(TierSettings.of(1));
+
+        dao.updatePowerStrength(1, 1.0);
+        dao.updatePowerStrength(2, 2.0);
+        dao.getById(3);
+        dao.getById(4);
+
+        // 3 and 4 made room in turn, 1 and 2 stay until their writes reached the backend
+        assertThat(dao.size(), is(2));
+        assertThat(dao.getById(1).getPowerStrength(), is(1.0));
+        assertThat(backend.getById(1).getPowerStrength(), is(0.0));
+
+        backend.open.countDown();
+        dao.flush();
+        dao.getById(3);
+        assertThat(dao.size(), is(1));
+        assertThat(dao.getById(2).getPowerStrength(), is(2.0));
+    }
+
+    @Test
+    void testCloseFlushesQueuedWrites() throws Exception
+    {
+        dao = tiered(TierSettings.of(10));
+        dao.updatePowerStrength(1, 3.0);
+
+        new Thread(() ->
+        {
+            sleep(100);
+            backend.open.countDown();
+        }).start();
+        dao.close();
+
+        assertThat(dao.pendingWrites(), is(0));
+        assertThat(backend.getById(1).getPowerStrength(), is(3.0));
+        assertThrows(DaoException.class, () -> dao.updatePowerStrength(1, 1.0));
+    }
+
+    @Test
+    void testBackendKeepsTheVersionOfTheMemoryTier() throws DaoException
+    {
+        dao = tiered(TierSettings.of(1));
+
+        dao.updatePowerStrength(1, 1.0);
+        Unicorn stale = copy(dao.getById(1), "Stale");
+        dao.updatePowerStrength(1, 1.0);
+        backend.open.countDown();
+        dao.flush();
+        assertThat(backend.getById(1).getVersion(), is(2));
+
+        // Evicted and reloaded, the entity still has the version of its last update
+        dao.getById(2);
+        dao.getById(3);
+        assertThat(dao.getById(1).getVersion(), is(2));
+        assertThrows(OptimisticLockDaoException.class, () -> dao.update(stale));
+    }
+
+    @Test
+    void testFlushDoesNotWaitForLaterWrites() throws Exception
+    {
+        dao = tiered(TierSettings.of(10).withBatchSize(1).withFlushTimeout(Duration.ofSeconds(5)));
+        backend.open.countDown();
+        backend.delayMillis = 2;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread traffic = new Thread(() ->
+        {
+            while (writing.get())
+            {
+                try
+                {
+                    dao.updatePowerStrength(1, 1.0);
+                }
+                catch (DaoException e)
+                {
+                    return;
+                }
+            }
+        });
+        traffic.start();
+        try
+        {
+            sleep(50);
+            dao.updatePowerStrength(2, 1.0);
+            dao.flush();
+            assertThat(backend.getById(2).getPowerStrength(), is(1.0));
+            assertThat(traffic.isAlive(), is(true));
+        }
+        finally
+        {
+            writing.set(false);
+            traffic.join();
+        }
+    }
+
+    @Test
+    void testPermanentlyFailingWriteIsDeadLettered() throws DaoException
+    {
+        dao = tiered(TierSettings.of(10));
+        backend.failing.put(1, "22003");
+
+        dao.updatePowerStrength(1, 1.0);
+        dao.updatePowerStrength(2, 1.0);
+        backend.open.countDown();
+        dao.flush();
+
+        assertThat(backend.getById(2).getPowerStrength(), is(1.0));
+        assertThat(registry.counter("tiered.writes.dropped").sum(), is(1L));
+        assertThat(registry.counter("tiered.writes.flushed").sum(), is(1L));
+        assertThat(registry.counter("tiered.writes.retried").sum(), is(0L));
+        // The dropped state is gone from memory as well
+        assertThat(dao.getById(1).getPowerStrength(), is(0.0));
+    }
+
+    @Test
+    void testFailingWriteIsDeadLetteredAfterMaxAttempts() throws DaoException
+    {
+        dao = tiered(TierSettings.of(10).withMaxAttempts(2));
+        backend.failing.put(1, "08006");
+
+        dao.updatePowerStrength(1, 1.0);
+        backend.open.countDown();
+        dao.flush();
+
+        assertThat(registry.counter("tiered.writes.retried").sum(), is(1L));
+        assertThat(registry.counter("tiered.writes.dropped").sum(), is(1L));
+        assertThat(registry.counter("tiered.writes.flushed").sum(), is(0L));
+        assertThat(dao.pendingWrites(), is(0));
+    }
+
+    private TieredDAO tiered(TierSettings settings)
+    {
+        return new TieredDAO(backend, settings, "tiered", registry);
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /***
+     * Holds batched writes until opened, records the power strengths written per ID and fails writes of the
+     * IDs in failing with a database error of the given SQLState.
+     */
+    private static class GatedDAO extends MemoryDAO<Unicorn>
+    {
+        final CountDownLatch open = new CountDownLatch(1);
+        final List<Unicorn> written = new CopyOnWriteArrayList<>();
+        final Map<Integer, String> failing = new ConcurrentHashMap<>();
+        volatile long delayMillis;
+
+        GatedDAO(Map<Integer, Unicorn> unicorns)
+        {
+            super(unicorns);
+        }
+
+        @Override
+        public void writeAll(Collection<Unicorn> entities) throws DaoException
+        {
+            await();
+            sleep(delayMillis);
+            for (Unicorn entity : entities)
+            {
+                String sqlState = failing.get(entity.getId());
+                if (sqlState != null)
+                {
+                    throw new DaoException("Error writing entities: Failing", new SQLException("Failing", sqlState));
+                }
+            }
+            written.addAll(entities);
+            super.writeAll(entities);
+        }
+
+        @Override
+        public void deleteAll(Collection<Unicorn> entities) throws DaoException
+        {
+            await();
+            super.deleteAll(entities);
+        }
+
+        List<Double> powerStrengthsWritten(int id)
+        {
+            List<Double> values = new ArrayList<>();
+            written.stream().filter(unicorn -> unicorn.getId() == id).forEach(unicorn -> values.add(unicorn.getPowerStrength()));
+            return values;
+        }
+
+        private void await() throws DaoException
+        {
+            try
+            {
+                if (!open.await(10, TimeUnit.SECONDS))
+                {
+                    throw new DaoException("Backend gate timed out");
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new DaoException("Interrupted", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package dat.dao;
+
+import dat.entities.Unicorn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Test data shared by the DAO tests.
+ */
+public final class UnicornFixtures
+{
+    private UnicornFixtures()
+    {
+    }
+
+    /***
+     * @return count new white unicorns without IDs, named prefix + index
+     */
+    public static List<Unicorn> unicorns(String prefix, int count)
+    {
+        return unicorns(prefix, "White", count);
+    }
+
+    public static List<Unicorn> unicorns(String prefix, String color, int count)
+    {
+        List<Unicorn> unicorns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            unicorns.add(new Unicorn(prefix + i, i % 10, color, i / 2.0));
+        }
+        return unicorns;
+    }
+
+    /***
+     * @return a renamed copy with the same ID and version, e.g. to update as a concurrent client would
+     */
+    public static Unicorn copy(Unicorn unicorn, String name)
+    {
+        Unicorn copy = new Unicorn(unicorn);
+        copy.setName(name);
+        return copy;
+    }
+}
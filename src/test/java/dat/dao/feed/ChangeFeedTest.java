@@ -0,0 +1,178 @@
+package dat.dao.feed;
+
+import dat.dao.MemoryDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeFeedTest
+{
+    private final ChangeFeed feed = new ChangeFeed(8);
+
+    @AfterEach
+    void tearDown()
+    {
+        feed.close();
+    }
+
+    @Test
+    void testDaoWritesArePublishedInOrder() throws Exception
+    {
+        ChangeFeedDAO dao = new ChangeFeedDAO(new MemoryDAO<>(new HashMap<>()), feed);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        feed.subscribe(recorder);
+
+        Unicorn created = dao.create(new Unicorn("Sparkle", 5, "White", 10.0));
+        dao.updatePowerStrength(created.getId(), 2.5);
+        assertThrows(DaoException.class, () -> dao.getById(created.getId() + 1));
+        dao.delete(created);
+
+        recorder.await(3);
+        assertThat(recorder.events.stream().map(ChangeEvent::sequence).toList(), contains(1L, 2L, 3L));
+        assertThat(recorder.events.stream().map(ChangeEvent::type).toList(),
+                contains(ChangeEvent.Type.CREATED, ChangeEvent.Type.UPDATED, ChangeEvent.Type.DELETED));
+        assertThat(recorder.events.get(1).unicorn().getPowerStrength(), is(12.5));
+        assertThat(recorder.events.get(2).unicorn(), is(nullValue()));
+    }
+
+    @Test
+    void testWritesWithoutIdAreRejected()
+    {
+        ChangeFeedDAO dao = new ChangeFeedDAO(new MemoryDAO<>(new HashMap<>()), feed);
+
+        assertThrows(DaoException.class, () -> dao.update(null));
+        assertThrows(DaoException.class, () -> dao.delete(null));
+        assertThrows(DaoException.class, () -> dao.update(new Unicorn("Sparkle", 5, "White", 10.0)));
+    }
+
+    @Test
+    void testDeliveryFollowsDemand() throws Exception
+    {
+        Recorder recorder = new Recorder(2);
+        feed.subscribe(recorder);
+        for (int id = 1; id <= 5; id++)
+        {
+            feed.publish(ChangeEvent.Type.DELETED, id, null);
+        }
+
+        recorder.await(2);
+        Thread.sleep(100);
+        assertThat(recorder.events, hasSize(2));
+
+        recorder.subscription.request(3);
+        recorder.await(5);
+        assertThat(recorder.events.stream().map(ChangeEvent::id).toList(), contains(1, 2, 3, 4, 5));
+    }
+
+    @Test
+    void testSubscriberResumesFromSequence() throws Exception
+    {
+        for (int id = 1; id <= 6; id++)
+        {
+            feed.publish(ChangeEvent.Type.DELETED, id, null);
+        }
+
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        feed.subscribe(recorder, 4);
+        feed.publish(ChangeEvent.Type.DELETED, 7, null);
+
+        recorder.await(4);
+        assertThat(recorder.events.stream().map(ChangeEvent::sequence).toList(), contains(4L, 5L, 6L, 7L));
+    }
+
+    @Test
+    void testSubscribingAheadOfTheFeedFails() throws Exception
+    {
+        feed.publish(ChangeEvent.Type.DELETED, 1, null);
+
+        // E.g. a consumer that kept its position across a restart of the feed
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        feed.subscribe(recorder, 5);
+        feed.publish(ChangeEvent.Type.DELETED, 2, null);
+
+        assertTrue(recorder.terminated.await(5, TimeUnit.SECONDS));
+        assertThat(recorder.error, instanceOf(IllegalArgumentException.class));
+        assertThat(recorder.events, is(empty()));
+        assertThat(feed.getSubscriberCount(), is(0));
+    }
+
+    @Test
+    void testLappedSubscriberGetsGapError() throws Exception
+    {
+        Recorder recorder = new Recorder(1);
+        feed.subscribe(recorder);
+        for (int id = 1; id <= 20; id++)
+        {
+            feed.publish(ChangeEvent.Type.DELETED, id, null);
+        }
+
+        assertTrue(recorder.terminated.await(5, TimeUnit.SECONDS));
+        assertThat(recorder.error, instanceOf(ChangeFeed.GapException.class));
+        // The gap may be noticed while publishing is still going on, before the buffer has moved on to 13
+        assertThat(((ChangeFeed.GapException) recorder.error).getOldestSequence(), is(both(greaterThan(2L)).and(lessThanOrEqualTo(13L))));
+        assertThat(feed.getSubscriberCount(), is(0));
+    }
+
+    private static class Recorder implements Flow.Subscriber<ChangeEvent>
+    {
+        final List<ChangeEvent> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch terminated = new CountDownLatch(1);
+        final long initialDemand;
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        Recorder(long initialDemand)
+        {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(ChangeEvent item)
+        {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            terminated.countDown();
+        }
+
+        void await(int count) throws InterruptedException
+        {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (events.size() < count && System.nanoTime() < deadline)
+            {
+                Thread.sleep(10);
+            }
+            assertThat(events.size(), greaterThanOrEqualTo(count));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package dat.load;
+
+import dat.dao.MemoryDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import dat.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LoadGeneratorTest
+{
+    @Test
+    void testSettingsParse()
+    {
+        LoadSettings settings = LoadSettings.parse(new String[]{"backend=jdbc", "reads=0.5", "distribution=Zipfian", "duration=500ms", "warmup=0"});
+
+        assertThat(settings.backend(), is("jdbc"));
+        assertThat(settings.readRatio(), is(0.5));
+        assertThat(settings.distribution(), is("zipfian"));
+        assertThat(settings.duration(), is(Duration.ofMillis(500)));
+        assertThat(settings.warmup(), is(Duration.ZERO));
+        assertThat(settings.rate(), is(LoadSettings.defaults().rate()));
+        assertThrows(IllegalArgumentException.class, () -> LoadSettings.parse(new String[]{"backend=mongo"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadSettings.parse(new String[]{"threads=4"}));
+    }
+
+    @Test
+    void testZipfianFavoursLowIndexes()
+    {
+        KeyDistribution distribution = KeyDistribution.zipfian(1000, 0.99);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] counts = new int[1000];
+        for (int i = 0; i < 100_000; i++)
+        {
+            counts[distribution.next(random)]++;
+        }
+
+        // With theta 0.99 the hottest key gets about 1 / zeta(1000) of the picks, some 13%
+        assertThat(counts[0], is(both(greaterThan(10_000)).and(lessThan(16_000))));
+        assertThat(counts[0], greaterThan(counts[1]));
+        assertThat(counts[1], greaterThan(counts[10]));
+        assertThat(counts[10], greaterThan(counts[999]));
+    }
+
+    @Test
+    void testStallCountsForEveryOperationItHeldBack() throws Exception
+    {
+        StallingDAO dao = new StallingDAO();
+        LoadSettings settings = new LoadSettings("memory", 1.0, 10, "uniform", 0.99, 1000, 1, Duration.ofMillis(500), Duration.ZERO);
+
+        LoadReport report = new LoadGenerator(dao, new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, settings, new MetricsRegistry()).run();
+
+        assertThat(report.operations(), is(500L));
+        assertThat(report.errors(), is(0L));
+        // The 200 ms stall is one slow service time, but about 200 operations scheduled during it started late
+        assertThat(report.service().getValueAtPercentile(90), lessThan(Duration.ofMillis(10).toNanos()));
+        assertThat(report.reads().getValueAtPercentile(90), greaterThan(Duration.ofMillis(50).toNanos()));
+        assertThat(report.format(), containsString("Throughput:"));
+    }
+
+    private static class StallingDAO extends MemoryDAO<Unicorn>
+    {
+        private final AtomicBoolean stalled = new AtomicBoolean();
+
+        StallingDAO()
+        {
+            super(unicorns());
+        }
+
+        @Override
+        public Unicorn getById(int id) throws DaoException
+        {
+            if (stalled.compareAndSet(false, true))
+            {
+                try
+                {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getById(id);
+        }
+
+        private static Map<Integer, Unicorn> unicorns()
+        {
+            Map<Integer, Unicorn> unicorns = new HashMap<>();
+            for (int id = 1; id <= 10; id++)
+            {
+                Unicorn unicorn = new Unicorn("Unicorn" + id, id, "White", 0.0);
+                unicorn.setId(id);
+                unicorns.put(id, unicorn);
+            }
+            return unicorns;
+        }
+    }
+}
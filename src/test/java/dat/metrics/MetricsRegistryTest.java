@@ -0,0 +1,62 @@
+package dat.metrics;
+
+import dat.dao.ICrudDAO;
+import dat.dao.InstrumentedDAO;
+import dat.dao.MemoryDAO;
+import dat.entities.Unicorn;
+import dat.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MetricsRegistryTest
+{
+    @Test
+    void testHistogramPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++)
+        {
+            histogram.record(value * 1_000);
+        }
+
+        assertThat(histogram.getCount(), is(100_000L));
+        assertThat((double) histogram.getValueAtPercentile(50), closeTo(50_000_000, 50_000_000 * 0.02));
+        assertThat((double) histogram.getValueAtPercentile(99), closeTo(99_000_000, 99_000_000 * 0.02));
+        assertThat(histogram.getValueAtPercentile(100), is(100_000_000L));
+        assertThat(histogram.getMean(), closeTo(50_000_500, 1));
+    }
+
+    @Test
+    void testHistogramSmallValuesAreExact()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+
+        assertThat(histogram.getValueAtPercentile(50), is(3L));
+        assertThat(histogram.getValueAtPercentile(100), is(7L));
+    }
+
+    @Test
+    void testInstrumentedDAORecordsLatencyAndErrors() throws DaoException
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        ICrudDAO<Unicorn> dao = new InstrumentedDAO<>(new MemoryDAO<>(), "dao.memory", registry);
+
+        Unicorn created = dao.create(new Unicorn("Sprinkles", 5, "Pink", 10.0));
+        dao.getById(created.getId());
+        assertThrows(DaoException.class, () -> dao.getById(999));
+
+        Map<String, Number> snapshot = registry.snapshot();
+        assertThat(snapshot.get("dao.memory.create.count"), is(1L));
+        assertThat(snapshot.get("dao.memory.getById.count"), is(2L));
+        assertThat(snapshot.get("dao.memory.getById.errors"), is(1L));
+        assertThat(snapshot, hasKey("dao.memory.getById.p99_us"));
+        assertThat(registry.dump(), containsString("dao.memory.create.count 1"));
+    }
+}
@@ -0,0 +1,90 @@
+package dat.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConfigSnapshotTest
+{
+    @Test
+    void testEnvironmentOverridesFile() throws IOException
+    {
+        ConfigSnapshot snapshot = parse("DB_NAME = unicorns \nDB_POOL_MAX_SIZE=12\n", Map.of("DB_NAME", "override"));
+
+        assertThat(snapshot.get("DB_NAME"), is("override"));
+        assertThat(snapshot.getInt("DB_POOL_MAX_SIZE", 5), is(12));
+        assertThat(snapshot.getLong("DB_POOL_IDLE_TIMEOUT_MS", 30_000L), is(30_000L));
+        assertThat(snapshot.getBoolean("DB_POOL_ADAPTIVE", false), is(false));
+        assertThat(snapshot.get("MISSING"), is(nullValue()));
+    }
+
+    @Test
+    void testTypedGettersReportBadValues() throws IOException
+    {
+        ConfigSnapshot snapshot = parse("DB_POOL_MAX_SIZE=lots\n", Map.of());
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> snapshot.getInt("DB_POOL_MAX_SIZE", 5));
+        assertThat(exception.getMessage(), is("Property DB_POOL_MAX_SIZE in test.properties is not a number: lots"));
+        assertThrows(IllegalStateException.class, () -> snapshot.require("MISSING"));
+    }
+
+    @Test
+    void testWatcherReloadsChangedFile(@TempDir Path dir) throws Exception
+    {
+        Path file = dir.resolve("watched.properties");
+        Files.writeString(file, "DB_POOL_MAX_SIZE=4\n");
+        LinkedBlockingQueue<ConfigSnapshot> reloads = new LinkedBlockingQueue<>();
+
+        try (ConfigWatcher watcher = new ConfigWatcher("watched.properties", file, reloads::add))
+        {
+            assertThat(watcher.reload().getInt("DB_POOL_MAX_SIZE", 0), is(4));
+            reloads.clear();
+
+            Files.writeString(file, "DB_POOL_MAX_SIZE=8\n");
+
+            ConfigSnapshot reloaded = reloads.poll(10, TimeUnit.SECONDS);
+            assertThat(reloaded, is(notNullValue()));
+            assertThat(reloaded.getInt("DB_POOL_MAX_SIZE", 0), is(8));
+            assertThat(PropertyReader.getConfig("watched.properties").getInt("DB_POOL_MAX_SIZE", 0), is(8));
+        }
+    }
+
+    @Test
+    void testWatcherRejectsEmptyOrIncompleteFile(@TempDir Path dir) throws Exception
+    {
+        Path file = dir.resolve("partial.properties");
+        Files.writeString(file, "DB_POOL_MAX_SIZE=4\nDB_POOL_MIN_IDLE=2\n");
+        LinkedBlockingQueue<ConfigSnapshot> reloads = new LinkedBlockingQueue<>();
+
+        try (ConfigWatcher watcher = new ConfigWatcher("partial.properties", file, reloads::add))
+        {
+            Files.writeString(file, "");
+            assertThrows(IOException.class, watcher::reload);
+            Files.writeString(file, "DB_POOL_MAX_SIZE=8\n");
+            IOException exception = assertThrows(IOException.class, watcher::reload);
+            assertThat(exception.getMessage(), endsWith("lacks the keys [DB_POOL_MIN_IDLE]"));
+
+            Files.writeString(file, "DB_POOL_MAX_SIZE=8\nDB_POOL_MIN_IDLE=2\n");
+            assertThat(watcher.reload().getInt("DB_POOL_MAX_SIZE", 0), is(8));
+            // Only the complete file made it to the listener, the watch thread may have applied it as well
+            assertThat(reloads.take().getInt("DB_POOL_MAX_SIZE", 0), is(8));
+        }
+    }
+
+    private static ConfigSnapshot parse(String content, Map<String, String> env) throws IOException
+    {
+        return ConfigSnapshot.parse("test.properties", new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1)), env::get);
+    }
+}